@@ -101,4 +101,16 @@ public class AppVerifyClient extends RestClient {
         super(customerId, apiKey, restEndpoint, connectTimeout, readTimeout, writeTimeout, proxy, proxyUsername, proxyPassword, source, sdkVersionOrigin, sdkVersionDependency);
     }
 
+    /**
+     * Constructor for an AppVerifyClient that sends requests on behalf of a tenant through the connection pool of another
+     * client.
+     * @param transport
+     *          The client whose connection pool and dispatcher are shared.
+     * @param tenant
+     *          The tenant to send requests on behalf of, from a TenantRegistry.
+     */
+    public AppVerifyClient(RestClient transport, TenantRegistry.Tenant tenant) {
+        super(transport, tenant);
+    }
+
 }
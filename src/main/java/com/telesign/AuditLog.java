@@ -0,0 +1,497 @@
+package com.telesign;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An audit log of every message and call, installed with RestClient.setAuditLog, recording the phone number,
+ * message type, reference_id and status of each send without slowing it down.
+ * <p>
+ * The request path only hands each record to a bounded lock-free ring buffer; a background writer thread drains it
+ * into rolling JSONL files named audit-NNNNNN.jsonl, one JSON object per line, starting a new file once one reaches
+ * maxFileSize. Message text is never recorded, and the phone number and other fields can be redacted with a
+ * Redactor before they are written. When the buffer is full, a record is either dropped and counted, or the sender
+ * waits for room, depending on the Overflow policy.
+ */
+public class AuditLog {
+
+    /**
+     * What to do with a record when the ring buffer is full.
+     */
+    public enum Overflow {
+        /**
+         * Drop the record and count it in getDroppedCount, so auditing never delays a send.
+         */
+        DROP,
+        /**
+         * Wait for the writer to make room, so no record is lost.
+         */
+        BLOCK
+    }
+
+    /**
+     * Redacts a field of a record before it is written. A record whose redaction throws is not written, and is
+     * counted in getFailedCount.
+     */
+    public interface Redactor {
+
+        /**
+         * @param field
+         *            The name of the field, e.g. "phone_number".
+         * @param value
+         *            The value of the field, not null.
+         * @return The value to write, or null to leave the field out.
+         */
+        String redact(String field, String value);
+    }
+
+    /**
+     * Writes every field as is.
+     */
+    public static final Redactor NO_REDACTION = new Redactor() {
+        @Override
+        public String redact(String field, String value) {
+            return value;
+        }
+    };
+
+    /**
+     * Returns a redactor that masks all but the last digits of the phone number, e.g. "*******5555".
+     *
+     * @param visibleDigits
+     *            The number of trailing digits kept.
+     * @return The redactor.
+     */
+    public static Redactor maskPhoneNumber(final int visibleDigits) {
+        return new Redactor() {
+            @Override
+            public String redact(String field, String value) {
+                if (!field.equals("phone_number") || value.length() <= visibleDigits) {
+                    return value;
+                }
+                StringBuilder masked = new StringBuilder(value.length());
+                for (int i = 0; i < value.length() - visibleDigits; i++) {
+                    masked.append('*');
+                }
+                return masked.append(value, value.length() - visibleDigits, value.length()).toString();
+            }
+        };
+    }
+
+    private static final String FILE_PREFIX = "audit-";
+    private static final String FILE_SUFFIX = ".jsonl";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final File directory;
+    private final long maxFileSize;
+    private final Overflow overflow;
+    private volatile Redactor redactor = NO_REDACTION;
+
+    // A bounded multi-producer, single-consumer ring buffer: a slot may be filled at position p once its sequence
+    // is p, and read once it is p + 1, after which the reader sets it to p + capacity.
+    private final int mask;
+    private final AtomicReferenceArray<Record> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile long flushed;
+
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // Only used by the writer thread.
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    private BufferedWriter out;
+    private int fileIndex;
+    private long fileSize;
+
+    /**
+     * Constructor for AuditLog, buffering up to 8192 records, dropping records when the buffer is full and rolling
+     * files at 64 MB.
+     *
+     * @param directory
+     *            The directory the files are written to, created if needed.
+     * @throws IOException if the directory cannot be created.
+     */
+    public AuditLog(File directory) throws IOException {
+        this(directory, 8192, 64 * 1024 * 1024, Overflow.DROP);
+    }
+
+    /**
+     * Constructor for AuditLog.
+     *
+     * @param directory
+     *            The directory the files are written to, created if needed.
+     * @param capacity
+     *            The number of records the ring buffer holds, rounded up to a power of two.
+     * @param maxFileSize
+     *            The size in bytes after which a new file is started.
+     * @param overflow
+     *            What to do with a record when the ring buffer is full.
+     * @throws IOException if the directory cannot be created.
+     */
+    public AuditLog(File directory, int capacity, long maxFileSize, Overflow overflow) throws IOException {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        this.directory = directory;
+        this.maxFileSize = maxFileSize;
+        this.overflow = overflow;
+        this.timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+
+        // Continue after the newest existing file rather than appending to one written by an earlier run.
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+                    try {
+                        int index = Integer.parseInt(name.substring(FILE_PREFIX.length(),
+                                name.length() - FILE_SUFFIX.length()));
+                        this.fileIndex = Math.max(this.fileIndex, index);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours.
+                    }
+                }
+            }
+        }
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "TeleSign audit log writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * A send, as handed from the request path to the writer.
+     */
+    private static class Record {
+
+        final long timeMillis;
+        final String kind;
+        final String phoneNumber;
+        final String messageType;
+        final String referenceId;
+        final int statusCode;
+        final String error;
+
+        Record(long timeMillis, String kind, String phoneNumber, String messageType, String referenceId,
+               int statusCode, String error) {
+            this.timeMillis = timeMillis;
+            this.kind = kind;
+            this.phoneNumber = phoneNumber;
+            this.messageType = messageType;
+            this.referenceId = referenceId;
+            this.statusCode = statusCode;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Sets the redactor fields are passed through before they are written, NO_REDACTION by default.
+     *
+     * @param redactor
+     *            The redactor to use.
+     */
+    public void setRedactor(Redactor redactor) {
+        this.redactor = redactor == null ? NO_REDACTION : redactor;
+    }
+
+    /**
+     * @return The redactor fields are passed through before they are written.
+     */
+    public Redactor getRedactor() {
+        return this.redactor;
+    }
+
+    /**
+     * Records a send that got a response.
+     *
+     * @param kind
+     *            What was sent, "message" or "call", or "duplicate" for a message answered by the duplicate
+     *            suppressor without being sent.
+     * @param phoneNumber
+     *            The phone number it was sent to.
+     * @param messageType
+     *            The message type it was sent with.
+     * @param response
+     *            The response.
+     */
+    void record(String kind, String phoneNumber, String messageType, RestClient.TelesignResponse response) {
+        String referenceId = null;
+        if (response.json != null) {
+            JsonElement element = response.json.get("reference_id");
+            if (element != null && element.isJsonPrimitive()) {
+                referenceId = element.getAsString();
+            }
+        }
+        this.offer(new Record(System.currentTimeMillis(), kind, phoneNumber, messageType, referenceId,
+                response.statusCode, null));
+    }
+
+    /**
+     * Records a send that failed without a response.
+     */
+    void recordFailure(String kind, String phoneNumber, String messageType, Throwable error) {
+        this.offer(new Record(System.currentTimeMillis(), kind, phoneNumber, messageType, null, 0,
+                error.getClass().getName()));
+    }
+
+    private void offer(Record record) {
+        if (this.closed) {
+            this.dropped.increment();
+            return;
+        }
+        while (true) {
+            long position = this.tail.get();
+            int index = (int) position & this.mask;
+            long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.slots.lazySet(index, record);
+                    this.sequences.set(index, position + 1);
+                    return;
+                }
+            } else if (difference < 0) {
+                // Full.
+                if (this.overflow == Overflow.DROP || this.closed || !this.writer.isAlive()) {
+                    this.dropped.increment();
+                    return;
+                }
+                LockSupport.unpark(this.writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+    }
+
+    /**
+     * Waits until every record handed over before this call has been written and flushed to its file.
+     *
+     * @param timeout
+     *            The longest time to wait.
+     * @param unit
+     *            The unit of timeout.
+     * @return True if the records were flushed in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long target = this.tail.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (this.flushed < target && this.writer.isAlive()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(this.writer);
+            Thread.sleep(1);
+        }
+        return this.flushed >= target;
+    }
+
+    /**
+     * @return The number of records written to the files.
+     */
+    public long getWrittenCount() {
+        return this.written.get();
+    }
+
+    /**
+     * @return The number of records dropped because the buffer was full or the log closed.
+     */
+    public long getDroppedCount() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * @return The number of records lost because a file could not be written or the redactor threw.
+     */
+    public long getFailedCount() {
+        return this.failed.get();
+    }
+
+    /**
+     * Writes the records handed over so far and closes the current file. Records handed over afterwards are
+     * dropped.
+     *
+     * @throws InterruptedException if interrupted while waiting for the writer.
+     */
+    public void close() throws InterruptedException {
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        this.writer.join();
+    }
+
+    private void drain() {
+        while (true) {
+            boolean closing = this.closed;
+            int drained = 0;
+            Record record;
+            while ((record = this.poll()) != null) {
+                this.write(record);
+                drained++;
+            }
+            if (drained > 0 || closing) {
+                this.flushFile();
+                this.flushed = this.head;
+            }
+            if (closing) {
+                this.closeFile();
+                return;
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private Record poll() {
+        long position = this.head;
+        int index = (int) position & this.mask;
+        if (this.sequences.get(index) != position + 1) {
+            return null;
+        }
+        Record record = this.slots.get(index);
+        this.slots.lazySet(index, null);
+        this.sequences.set(index, position + this.mask + 1);
+        this.head = position + 1;
+        return record;
+    }
+
+    private void write(Record record) {
+        try {
+            if (this.out == null || this.fileSize >= this.maxFileSize) {
+                this.closeFile();
+                this.fileIndex++;
+                File file = new File(this.directory, String.format("%s%06d%s", FILE_PREFIX, this.fileIndex,
+                        FILE_SUFFIX));
+                this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+                        StandardCharsets.UTF_8));
+                this.fileSize = file.length();
+            }
+
+            StringBuilder line = new StringBuilder(160);
+            JsonWriter json = new JsonWriter(new StringBuilderWriter(line));
+            Redactor redactor = this.redactor;
+            json.beginObject();
+            json.name("time").value(this.timeFormat.format(new Date(record.timeMillis)));
+            json.name("kind").value(record.kind);
+            writeField(json, redactor, "phone_number", record.phoneNumber);
+            writeField(json, redactor, "message_type", record.messageType);
+            writeField(json, redactor, "reference_id", record.referenceId);
+            json.name("status").value(record.statusCode);
+            writeField(json, redactor, "error", record.error);
+            json.endObject();
+            json.flush();
+            line.append('\n');
+
+            this.out.append(line);
+            // Close enough for rolling; most of a line is ASCII.
+            this.fileSize += line.length();
+            this.written.incrementAndGet();
+        } catch (IOException e) {
+            this.failed.incrementAndGet();
+            this.closeFile();
+        } catch (RuntimeException e) {
+            // Thrown by the redactor before anything was appended to the file.
+            this.failed.incrementAndGet();
+        }
+    }
+
+    private static void writeField(JsonWriter json, Redactor redactor, String field, String value)
+            throws IOException {
+        if (value == null) {
+            return;
+        }
+        String redacted = redactor.redact(field, value);
+        if (redacted != null) {
+            json.name(field).value(redacted);
+        }
+    }
+
+    private void flushFile() {
+        if (this.out != null) {
+            try {
+                this.out.flush();
+            } catch (IOException e) {
+                this.closeFile();
+            }
+        }
+    }
+
+    private void closeFile() {
+        if (this.out != null) {
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                // The records were counted as written; nothing more can be done.
+            }
+            this.out = null;
+        }
+    }
+
+    /**
+     * Appends to a StringBuilder without the synchronization of StringWriter.
+     */
+    private static class StringBuilderWriter extends Writer {
+
+        private final StringBuilder builder;
+
+        StringBuilderWriter(StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            this.builder.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            this.builder.append(string, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.telesign;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolated execution lanes, each with its own concurrency cap and wait queue, so a slowdown of one product cannot
+ * take every slot away from another.
+ * <p>
+ * Lanes are matched against the resource template of a request, e.g. a lane for "/v1/voice" covers both "/v1/voice"
+ * and "/v1/voice/{}". Requests whose template matches no lane share the default lane. A single Bulkhead is typically
+ * shared by all the clients of an application through RestClient.setBulkhead.
+ * <p>
+ * Within a lane, queued requests are admitted in priority order, and a number of slots can be reserved so that
+ * INTERACTIVE traffic, such as OTP sends, is never blocked entirely by BULK or BACKGROUND traffic.
+ */
+public class Bulkhead {
+
+    /**
+     * The priority a client's requests are queued with.
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BULK,
+        BACKGROUND
+    }
+
+    private static final String DEFAULT_LANE = "";
+
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+
+    /**
+     * Thrown when a lane is full, or a queued request was not admitted within maxWait.
+     */
+    public static class BulkheadFullException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new BulkheadFullException.
+         *
+         * @param message
+         *            The detail message.
+         */
+        public BulkheadFullException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Constructor for Bulkhead.
+     *
+     * @param defaultMaxConcurrent
+     *            The number of requests that may be in flight in the default lane.
+     * @param defaultMaxQueued
+     *            The number of requests that may wait for a slot in the default lane.
+     * @param maxWait
+     *            How long a queued request may wait for a slot before it is rejected.
+     * @param unit
+     *            The unit of maxWait.
+     */
+    public Bulkhead(int defaultMaxConcurrent, int defaultMaxQueued, long maxWait, TimeUnit unit) {
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.lanes.put(DEFAULT_LANE, new Lane(DEFAULT_LANE, defaultMaxConcurrent, defaultMaxQueued, 0));
+    }
+
+    /**
+     * Adds or replaces the lane for a resource template prefix.
+     *
+     * @param resourcePrefix
+     *            The resource template prefix the lane covers, e.g. "/v1/voice" or "/intelligence".
+     * @param maxConcurrent
+     *            The number of requests that may be in flight in the lane.
+     * @param maxQueued
+     *            The number of requests that may wait for a slot in the lane.
+     * @param reservedForInteractive
+     *            The number of slots only INTERACTIVE requests may use.
+     */
+    public void setLane(String resourcePrefix, int maxConcurrent, int maxQueued, int reservedForInteractive) {
+        if (maxConcurrent < 1 || maxQueued < 0 || reservedForInteractive < 0 || reservedForInteractive >= maxConcurrent) {
+            throw new IllegalArgumentException("lane must allow at least one non-reserved request");
+        }
+        this.lanes.put(resourcePrefix, new Lane(resourcePrefix, maxConcurrent, maxQueued, reservedForInteractive));
+    }
+
+    /**
+     * Waits for a slot in the lane matching the resource template.
+     *
+     * @param resourceTemplate
+     *            The resource template of the request.
+     * @param priority
+     *            The priority of the request.
+     * @return The slot, which must be released exactly once when the request completes.
+     * @throws BulkheadFullException if the lane is full or no slot became available in time.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public Slot acquire(String resourceTemplate, Priority priority) throws IOException {
+        return this.acquire(resourceTemplate, priority, null);
+    }
+
+    /**
+     * Waits for a slot no longer than a deadline allows.
+     *
+     * @throws IOException if the lane is full, no slot became available in time, or the deadline passed or was
+     *         cancelled while waiting.
+     */
+    Slot acquire(String resourceTemplate, Priority priority, Deadline deadline) throws IOException {
+        Lane lane = laneFor(resourceTemplate);
+        lane.acquire(priority, resourceTemplate, deadline);
+        return new Slot(lane);
+    }
+
+    /**
+     * @param resourcePrefix
+     *            The prefix the lane was added with, or "" for the default lane.
+     * @return The number of requests in flight in the lane.
+     */
+    public int getInFlight(String resourcePrefix) {
+        Lane lane = this.lanes.get(resourcePrefix);
+        return lane == null ? 0 : lane.getInFlight();
+    }
+
+    /**
+     * @param resourcePrefix
+     *            The prefix the lane was added with, or "" for the default lane.
+     * @return The number of requests waiting for a slot in the lane.
+     */
+    public int getQueued(String resourcePrefix) {
+        Lane lane = this.lanes.get(resourcePrefix);
+        return lane == null ? 0 : lane.getQueued();
+    }
+
+    Lane laneFor(String resourceTemplate) {
+        Lane match = this.lanes.get(DEFAULT_LANE);
+        int matchLength = -1;
+        for (Map.Entry<String, Lane> entry : this.lanes.entrySet()) {
+            String prefix = entry.getKey();
+            if (prefix.length() > matchLength && !prefix.isEmpty()
+                    && (resourceTemplate.equals(prefix) || resourceTemplate.startsWith(prefix + "/"))) {
+                match = entry.getValue();
+                matchLength = prefix.length();
+            }
+        }
+        return match;
+    }
+
+    /**
+     * A slot in a lane, held for the duration of one request.
+     */
+    public static class Slot {
+
+        private final Lane lane;
+        private boolean released;
+
+        Slot(Lane lane) {
+            this.lane = lane;
+        }
+
+        /**
+         * Returns the slot to its lane.
+         */
+        public void release() {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            this.lane.release();
+        }
+    }
+
+    private static class Waiter {
+        boolean admitted;
+    }
+
+    private class Lane {
+
+        private final String name;
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final int reservedForInteractive;
+        private final List<ArrayDeque<Waiter>> waiters;
+        private int inFlight;
+        private int queued;
+
+        Lane(String name, int maxConcurrent, int maxQueued, int reservedForInteractive) {
+            this.name = name.isEmpty() ? "default" : name;
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.reservedForInteractive = reservedForInteractive;
+            this.waiters = new ArrayList<>(Priority.values().length);
+            for (int i = 0; i < Priority.values().length; i++) {
+                this.waiters.add(new ArrayDeque<Waiter>());
+            }
+        }
+
+        synchronized int getInFlight() {
+            return this.inFlight;
+        }
+
+        synchronized int getQueued() {
+            return this.queued;
+        }
+
+        private boolean hasCapacity(Priority priority) {
+            int cap = priority == Priority.INTERACTIVE ? this.maxConcurrent
+                    : this.maxConcurrent - this.reservedForInteractive;
+            return this.inFlight < cap;
+        }
+
+        private boolean hasWaitersAtOrAbove(Priority priority) {
+            for (int i = 0; i <= priority.ordinal(); i++) {
+                if (!this.waiters.get(i).isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void acquire(Priority priority, String resourceTemplate, Deadline deadline) throws IOException {
+            if (hasCapacity(priority) && !hasWaitersAtOrAbove(priority)) {
+                this.inFlight++;
+                return;
+            }
+            if (this.queued >= this.maxQueued || maxWaitNanos <= 0) {
+                throw new BulkheadFullException(String.format("%s lane is full (%d in flight, %d queued)",
+                        this.name, this.inFlight, this.queued));
+            }
+
+            Waiter waiter = new Waiter();
+            this.waiters.get(priority.ordinal()).add(waiter);
+            this.queued++;
+
+            long remaining = deadline != null ? deadline.waitNanos(maxWaitNanos) : maxWaitNanos;
+            long end = System.nanoTime() + remaining;
+            if (deadline != null) {
+                deadline.awaiting(this);
+            }
+            try {
+                while (!waiter.admitted && remaining > 0 && (deadline == null || !deadline.isCancelled())) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = end - System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                abandon(waiter, priority);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for the " + this.name + " lane");
+            } finally {
+                if (deadline != null) {
+                    deadline.awaited(this);
+                }
+            }
+            if (deadline != null && (deadline.isCancelled() || deadline.isExpired())) {
+                abandon(waiter, priority);
+                deadline.check(resourceTemplate);
+            }
+            if (!waiter.admitted) {
+                abandon(waiter, priority);
+                throw new BulkheadFullException(String.format("timed out waiting for the %s lane", this.name));
+            }
+        }
+
+        private void abandon(Waiter waiter, Priority priority) {
+            if (waiter.admitted) {
+                release();
+            } else {
+                this.waiters.get(priority.ordinal()).remove(waiter);
+                this.queued--;
+            }
+        }
+
+        synchronized void release() {
+            this.inFlight--;
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Waiter> queue = this.waiters.get(priority.ordinal());
+                while (!queue.isEmpty() && hasCapacity(priority)) {
+                    queue.poll().admitted = true;
+                    this.queued--;
+                    this.inFlight++;
+                }
+            }
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.telesign;
+
+import okhttp3.Dns;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory DNS cache for the TeleSign REST API endpoints, installed with RestClient.setDns.
+ * <p>
+ * Resolved addresses are kept for a fixed TTL and refreshed in the background once refreshAhead of it has elapsed,
+ * so requests only wait on DNS the first time a hostname is seen. Concurrent lookups of a hostname that is not cached
+ * share a single resolution rather than each querying DNS. Failures are cached for a shorter negative TTL,
+ * and a stale entry keeps being served if a background refresh fails. Hostnames such as rest-api.telesign.com can
+ * also be pinned to static addresses.
+ * <p>
+ * Addresses are returned interleaved by family, IPv6 and IPv4 alternating, as recommended by RFC 8305 (Happy
+ * Eyeballs). CachingDns only orders the addresses and does not connect itself. Racing the connection attempts needs
+ * OkHttp 5, which starts the attempt to the next address if the previous one has not connected within 250 ms. With
+ * OkHttp 4 the addresses are tried one at a time, so a stalled IPv6 route still waits for the full connect timeout
+ * before the next address, of the other family, is tried.
+ */
+public class CachingDns implements Dns {
+
+    private final Dns delegate;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long refreshAfterNanos;
+
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, List<InetAddress>> pinned = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Entry>> resolving = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder resolutionNanos = new LongAdder();
+    private final AtomicLong maxResolutionNanos = new AtomicLong();
+
+    private volatile ExecutorService refresher;
+
+    /**
+     * Constructor for CachingDns, caching system DNS results for 60 seconds and failures for 5 seconds.
+     */
+    public CachingDns() {
+        this(Dns.SYSTEM, 60, 5, TimeUnit.SECONDS, 0.75);
+    }
+
+    /**
+     * Constructor for CachingDns.
+     *
+     * @param delegate
+     *            The resolver to cache, typically Dns.SYSTEM.
+     * @param ttl
+     *            How long resolved addresses are kept.
+     * @param negativeTtl
+     *            How long a failed resolution is kept.
+     * @param unit
+     *            The unit of ttl and negativeTtl.
+     * @param refreshAhead
+     *            The fraction of the TTL, between 0 and 1, after which an entry is refreshed in the background.
+     */
+    public CachingDns(Dns delegate, long ttl, long negativeTtl, TimeUnit unit, double refreshAhead) {
+        if (refreshAhead <= 0 || refreshAhead > 1) {
+            throw new IllegalArgumentException("refreshAhead must be between 0 and 1");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.refreshAfterNanos = (long) (this.ttlNanos * refreshAhead);
+    }
+
+    /**
+     * Pins a hostname to static addresses, bypassing DNS entirely for it.
+     *
+     * @param hostname
+     *            The hostname to pin, e.g. "rest-api.telesign.com".
+     * @param addresses
+     *            The addresses to connect to, or none to remove the pin.
+     */
+    public void pin(String hostname, InetAddress... addresses) {
+        if (addresses.length == 0) {
+            this.pinned.remove(hostname);
+        } else {
+            this.pinned.put(hostname, interleave(Arrays.asList(addresses)));
+        }
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        List<InetAddress> pinnedAddresses = this.pinned.get(hostname);
+        if (pinnedAddresses != null) {
+            this.hits.increment();
+            return pinnedAddresses;
+        }
+
+        long now = System.nanoTime();
+        Entry entry = this.cache.get(hostname);
+        if (entry != null && now - entry.resolvedAt < (entry.addresses != null ? this.ttlNanos : this.negativeTtlNanos)) {
+            this.hits.increment();
+            if (entry.addresses != null && now - entry.resolvedAt >= this.refreshAfterNanos) {
+                refreshInBackground(hostname, entry);
+            }
+            return entry.get(hostname);
+        }
+
+        this.misses.increment();
+        return resolveOnce(hostname, entry).get(hostname);
+    }
+
+    /**
+     * @return The number of lookups answered from the cache or a pin.
+     */
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that had to wait for a resolution.
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return The number of background refreshes performed.
+     */
+    public long getRefreshCount() {
+        return this.refreshes.sum();
+    }
+
+    /**
+     * @return The number of resolutions that failed.
+     */
+    public long getFailureCount() {
+        return this.failures.sum();
+    }
+
+    /**
+     * @return The total time spent resolving hostnames, in nanoseconds.
+     */
+    public long getTotalResolutionNanos() {
+        return this.resolutionNanos.sum();
+    }
+
+    /**
+     * @return The longest time a single resolution took, in nanoseconds.
+     */
+    public long getMaxResolutionNanos() {
+        return this.maxResolutionNanos.get();
+    }
+
+    /**
+     * Resolves a hostname, or waits for the resolution already in progress for it, if any.
+     */
+    private Entry resolveOnce(String hostname, Entry previous) {
+        CompletableFuture<Entry> created = new CompletableFuture<>();
+        CompletableFuture<Entry> pending = this.resolving.putIfAbsent(hostname, created);
+        if (pending != null) {
+            return pending.join();
+        }
+        try {
+            Entry entry = this.cache.get(hostname);
+            if (entry == previous) {
+                entry = resolve(hostname, previous);
+            }
+            // Otherwise another resolution completed since previous was read.
+            created.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.resolving.remove(hostname, created);
+        }
+    }
+
+    private Entry resolve(String hostname, Entry previous) {
+        long start = System.nanoTime();
+        Entry entry;
+        try {
+            entry = new Entry(interleave(this.delegate.lookup(hostname)), null, System.nanoTime());
+        } catch (UnknownHostException e) {
+            this.failures.increment();
+            // Keep serving the last known addresses rather than failing requests on a transient DNS error.
+            entry = previous != null && previous.addresses != null
+                    ? new Entry(previous.addresses, null,
+                            System.nanoTime() - this.refreshAfterNanos + this.negativeTtlNanos)
+                    : new Entry(null, e, System.nanoTime());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        this.resolutionNanos.add(elapsed);
+        long max = this.maxResolutionNanos.get();
+        while (elapsed > max && !this.maxResolutionNanos.compareAndSet(max, elapsed)) {
+            max = this.maxResolutionNanos.get();
+        }
+
+        this.cache.put(hostname, entry);
+        return entry;
+    }
+
+    private void refreshInBackground(final String hostname, final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher().execute(new Runnable() {
+            @Override
+            public void run() {
+                refreshes.increment();
+                resolveOnce(hostname, entry);
+            }
+        });
+    }
+
+    private ExecutorService refresher() {
+        ExecutorService executor = this.refresher;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.refresher;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "TeleSign DNS refresh");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    this.refresher = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Orders addresses alternating between families, starting with the family of the first address.
+     */
+    static List<InetAddress> interleave(List<InetAddress> addresses) {
+        List<InetAddress> ipv6 = new ArrayList<>();
+        List<InetAddress> ipv4 = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            (address instanceof Inet6Address ? ipv6 : ipv4).add(address);
+        }
+        if (ipv6.isEmpty() || ipv4.isEmpty()) {
+            return Collections.unmodifiableList(new ArrayList<>(addresses));
+        }
+
+        List<InetAddress> first = addresses.get(0) instanceof Inet6Address ? ipv6 : ipv4;
+        List<InetAddress> second = first == ipv6 ? ipv4 : ipv6;
+        List<InetAddress> interleaved = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                interleaved.add(first.get(i));
+            }
+            if (i < second.size()) {
+                interleaved.add(second.get(i));
+            }
+        }
+        return Collections.unmodifiableList(interleaved);
+    }
+
+    private static class Entry {
+
+        final List<InetAddress> addresses;
+        final UnknownHostException failure;
+        final long resolvedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(List<InetAddress> addresses, UnknownHostException failure, long resolvedAt) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.resolvedAt = resolvedAt;
+        }
+
+        List<InetAddress> get(String hostname) throws UnknownHostException {
+            if (this.addresses == null) {
+                UnknownHostException e = new UnknownHostException(hostname);
+                e.initCause(this.failure);
+                throw e;
+            }
+            return this.addresses;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.telesign;
+
+import okhttp3.Request;
+
+/**
+ * Hooks for connecting TeleSign calls to distributed traces, installed with RestClient.setCallTracer.
+ * <p>
+ * begin is called on the thread making the call, before the request is signed, so it can start a span as a child of
+ * the thread's current one and inject headers such as traceparent into the request; those headers are kept when the
+ * request is resent to a fallback endpoint, with rotated credentials or as a hedge. end is called exactly once for
+ * every begin, with the status and timings of the call, whether the call got a response or failed.
+ * <p>
+ * Calls the SDK runs on its own threads, such as the parallel checks of a FraudScreen, are submitted through wrap,
+ * which a tracer can override to carry the submitting thread's context to the thread the call runs on. A client
+ * without a tracer makes none of these calls and allocates nothing for them.
+ */
+public interface CallTracer {
+
+    /**
+     * Called when a call begins.
+     *
+     * @param method
+     *            The HTTP method.
+     * @param resourceTemplate
+     *            The template of the resource, e.g. "/v1/messaging/{}".
+     * @param request
+     *            The request, to add headers to.
+     * @return The span of the call, or any other object, passed on to end.
+     */
+    Object begin(String method, String resourceTemplate, Request.Builder request);
+
+    /**
+     * Called when a call ends.
+     *
+     * @param span
+     *            The object returned by begin.
+     * @param method
+     *            The HTTP method.
+     * @param resourceTemplate
+     *            The template of the resource, e.g. "/v1/messaging/{}".
+     * @param statusCode
+     *            The HTTP status of the response, or 0 if the call failed.
+     * @param error
+     *            The exception the call failed with, or null if it got a response.
+     * @param signingNanos
+     *            The time spent signing the request.
+     * @param queueNanos
+     *            The time spent waiting for a bulkhead slot or concurrency limiter permit.
+     * @param durationNanos
+     *            The total time of the call.
+     */
+    void end(Object span, String method, String resourceTemplate, int statusCode, Throwable error, long signingNanos,
+             long queueNanos, long durationNanos);
+
+    /**
+     * Called on the submitting thread when the SDK hands a task that makes calls to another thread. By default the
+     * task is returned as is.
+     *
+     * @param task
+     *            The task.
+     * @return The task to run instead, e.g. one that restores the submitting thread's context while it runs.
+     */
+    default Runnable wrap(Runnable task) {
+        return task;
+    }
+}
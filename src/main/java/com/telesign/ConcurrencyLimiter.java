@@ -0,0 +1,269 @@
+package com.telesign;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An adaptive limit on the number of in-flight requests, tracked separately for every endpoint.
+ * <p>
+ * The limit follows an AIMD scheme driven by observed round-trip times and errors: it grows by one request per
+ * limit's worth of fast, successful responses, and shrinks multiplicatively whenever a request fails, is throttled,
+ * or takes longer than rttTolerance times the recent minimum RTT. Requests above the limit wait up to maxWait for a
+ * permit and are otherwise rejected with a LimitExceededException, so excess work fails fast instead of queueing
+ * behind a slow upstream.
+ */
+public class ConcurrencyLimiter {
+
+    private static final int BASELINE_WINDOW = 100;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final long maxWaitNanos;
+
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * Thrown when no permit became available within maxWait.
+     */
+    public static class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new LimitExceededException.
+         *
+         * @param message
+         *            The detail message.
+         */
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Constructor for ConcurrencyLimiter, starting at 20 in-flight requests per endpoint, bounded between 1 and 200,
+     * that rejects excess requests immediately.
+     */
+    public ConcurrencyLimiter() {
+        this(20, 1, 200, 0.9, 2.0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor for ConcurrencyLimiter.
+     *
+     * @param initialLimit
+     *            The limit every endpoint starts at.
+     * @param minLimit
+     *            The lowest the limit may shrink to.
+     * @param maxLimit
+     *            The highest the limit may grow to.
+     * @param backoffRatio
+     *            The factor, between 0 and 1, the limit is multiplied by on an error or slow response.
+     * @param rttTolerance
+     *            How many times the recent minimum RTT a response may take before it counts as slow.
+     * @param maxWait
+     *            How long a request may wait for a permit, 0 rejects excess requests immediately.
+     * @param unit
+     *            The unit of maxWait.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                              double rttTolerance, long maxWait, TimeUnit unit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    /**
+     * Acquires a permit to send a request to the given endpoint, waiting up to maxWait for one to become available.
+     *
+     * @param endpoint
+     *            The endpoint the request is sent to, typically its method and resource template.
+     * @return The permit, which must be released exactly once when the request completes.
+     * @throws LimitExceededException if no permit became available in time.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public Permit acquire(String endpoint) throws IOException {
+        return this.acquire(endpoint, null);
+    }
+
+    /**
+     * Waits for a permit no longer than a deadline allows.
+     *
+     * @throws IOException if no permit became available in time, or the deadline passed or was cancelled while
+     *         waiting.
+     */
+    Permit acquire(String endpoint, Deadline deadline) throws IOException {
+        Limit limit = this.limits.get(endpoint);
+        if (limit == null) {
+            Limit created = new Limit(this.initialLimit);
+            limit = this.limits.putIfAbsent(endpoint, created);
+            if (limit == null) {
+                limit = created;
+            }
+        }
+        limit.acquire(endpoint, deadline);
+        return new Permit(limit);
+    }
+
+    /**
+     * @param endpoint
+     *            The endpoint to look up.
+     * @return The current limit for the endpoint.
+     */
+    public int getLimit(String endpoint) {
+        Limit limit = this.limits.get(endpoint);
+        return limit == null ? this.initialLimit : limit.getLimit();
+    }
+
+    /**
+     * @param endpoint
+     *            The endpoint to look up.
+     * @return The number of requests currently in flight to the endpoint.
+     */
+    public int getInFlight(String endpoint) {
+        Limit limit = this.limits.get(endpoint);
+        return limit == null ? 0 : limit.getInFlight();
+    }
+
+    /**
+     * @return The current limit of every endpoint seen so far.
+     */
+    public Map<String, Integer> getLimits() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Limit> entry : this.limits.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().getLimit());
+        }
+        return snapshot;
+    }
+
+    /**
+     * A permission to send one request, carrying the time it was granted so the RTT can be measured on release.
+     */
+    public static class Permit {
+
+        private final Limit limit;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        Permit(Limit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Releases the permit after a response was received.
+         *
+         * @param statusCode
+         *            The HTTP status code of the response; 429 and 5xx count as overload.
+         */
+        public void onResponse(int statusCode) {
+            release(statusCode == 429 || statusCode >= 500);
+        }
+
+        /**
+         * Releases the permit after the request failed without a response.
+         */
+        public void onError() {
+            release(true);
+        }
+
+        private void release(boolean dropped) {
+            if (this.released) {
+                return;
+            }
+            this.released = true;
+            this.limit.release(System.nanoTime() - this.startNanos, dropped);
+        }
+    }
+
+    private class Limit {
+
+        private double limit;
+        private int inFlight;
+        private long baselineRtt;
+        private long windowMinRtt = Long.MAX_VALUE;
+        private int windowSamples;
+
+        Limit(int initialLimit) {
+            this.limit = initialLimit;
+        }
+
+        synchronized int getLimit() {
+            return (int) this.limit;
+        }
+
+        synchronized int getInFlight() {
+            return this.inFlight;
+        }
+
+        synchronized void acquire(String endpoint, Deadline deadline) throws IOException {
+            if (this.inFlight >= (int) this.limit && maxWaitNanos > 0) {
+                long remaining = deadline != null ? deadline.waitNanos(maxWaitNanos) : maxWaitNanos;
+                long end = System.nanoTime() + remaining;
+                if (deadline != null) {
+                    deadline.awaiting(this);
+                }
+                try {
+                    while (this.inFlight >= (int) this.limit && remaining > 0
+                            && (deadline == null || !deadline.isCancelled())) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        remaining = end - System.nanoTime();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for a permit to " + endpoint);
+                } finally {
+                    if (deadline != null) {
+                        deadline.awaited(this);
+                    }
+                }
+                if (deadline != null) {
+                    deadline.check(endpoint);
+                }
+            }
+            if (this.inFlight >= (int) this.limit) {
+                throw new LimitExceededException(String.format("concurrency limit of %d reached for %s",
+                        (int) this.limit, endpoint));
+            }
+            this.inFlight++;
+        }
+
+        synchronized void release(long rtt, boolean dropped) {
+            boolean saturated = this.inFlight * 2 >= (int) this.limit;
+            this.inFlight--;
+
+            if (!dropped) {
+                this.windowMinRtt = Math.min(this.windowMinRtt, rtt);
+                if (++this.windowSamples >= BASELINE_WINDOW || this.baselineRtt == 0) {
+                    this.baselineRtt = this.windowMinRtt;
+                    this.windowMinRtt = Long.MAX_VALUE;
+                    this.windowSamples = 0;
+                }
+                dropped = rtt > this.baselineRtt * rttTolerance;
+            }
+
+            if (dropped) {
+                this.limit = Math.max(minLimit, this.limit * backoffRatio);
+            } else if (saturated) {
+                this.limit = Math.min(maxLimit, this.limit + 1.0 / this.limit);
+            }
+            notifyAll();
+        }
+    }
+}
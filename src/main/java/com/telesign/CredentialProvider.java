@@ -0,0 +1,177 @@
+package com.telesign;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the customer ID and API key a RestClient signs its requests with, so they can be rotated without rebuilding
+ * the client and its connection pool.
+ * <p>
+ * The credentials are read once per request, and their decoded HMAC key is cached, so signing never decodes the API
+ * key again. After a rotation the previous credentials stay available for an overlap period: a request rejected with
+ * 401 Unauthorized while the new key is still propagating is signed again with the previous key and resent once.
+ * A single CredentialProvider can be shared by all the clients of an account.
+ */
+public class CredentialProvider {
+
+    private final AtomicReference<State> state;
+
+    /**
+     * Constructor for CredentialProvider.
+     *
+     * @param customerId
+     *            Your account customer_id.
+     * @param apiKey
+     *            Your account api_key.
+     */
+    public CredentialProvider(String customerId, String apiKey) {
+        this.state = new AtomicReference<>(new State(new Credentials(customerId, apiKey), null, 0, 0));
+    }
+
+    /**
+     * Replaces the credentials, keeping the previous ones until retirePrevious is called.
+     *
+     * @param customerId
+     *            The new customer_id.
+     * @param apiKey
+     *            The new api_key.
+     */
+    public void rotate(String customerId, String apiKey) {
+        rotate(customerId, apiKey, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Replaces the credentials, keeping the previous ones for the given overlap period.
+     *
+     * @param customerId
+     *            The new customer_id.
+     * @param apiKey
+     *            The new api_key.
+     * @param overlap
+     *            How long the previous credentials may still be used, 0 to retire them immediately.
+     * @param unit
+     *            The unit of overlap.
+     */
+    public void rotate(String customerId, String apiKey, long overlap, TimeUnit unit) {
+        rotate(customerId, apiKey, unit.toNanos(overlap), System.nanoTime());
+    }
+
+    void rotate(String customerId, String apiKey, long overlapNanos, long now) {
+        Credentials next = new Credentials(customerId, apiKey);
+        State current;
+        do {
+            current = this.state.get();
+        } while (!this.state.compareAndSet(current,
+                new State(next, overlapNanos > 0 ? current.current : null, now, overlapNanos)));
+    }
+
+    /**
+     * Stops using the previous credentials, e.g. once the old API key has been revoked.
+     */
+    public void retirePrevious() {
+        State current;
+        do {
+            current = this.state.get();
+            if (current.previous == null) {
+                return;
+            }
+        } while (!this.state.compareAndSet(current, new State(current.current, null, 0, 0)));
+    }
+
+    /**
+     * @return The credentials requests are signed with.
+     */
+    public Credentials getCurrent() {
+        return this.state.get().current;
+    }
+
+    /**
+     * @return The credentials in use before the last rotation, or null if they have been retired.
+     */
+    public Credentials getPrevious() {
+        return getPrevious(System.nanoTime());
+    }
+
+    Credentials getPrevious(long now) {
+        State current = this.state.get();
+        // Compared as elapsed time, which unlike an end time cannot overflow for an unbounded overlap.
+        if (current.previous == null || now - current.rotatedAt > current.overlapNanos) {
+            return null;
+        }
+        return current.previous;
+    }
+
+    /**
+     * An immutable customer ID and API key pair, with the decoded key cached.
+     */
+    public static class Credentials {
+
+        private final String customerId;
+        private final String apiKey;
+        private volatile SecretKeySpec hmacKey;
+        private volatile String basicAuthorization;
+
+        /**
+         * Creates a new Credentials instance.
+         *
+         * @param customerId
+         *            Your account customer_id.
+         * @param apiKey
+         *            Your account api_key.
+         */
+        public Credentials(String customerId, String apiKey) {
+            this.customerId = customerId;
+            this.apiKey = apiKey;
+        }
+
+        /**
+         * @return The customer_id.
+         */
+        public String getCustomerId() {
+            return this.customerId;
+        }
+
+        /**
+         * @return The api_key.
+         */
+        public String getApiKey() {
+            return this.apiKey;
+        }
+
+        SecretKeySpec hmacKey() {
+            SecretKeySpec key = this.hmacKey;
+            if (key == null) {
+                key = new SecretKeySpec(RestClient.parseBase64(this.apiKey), "HmacSHA256");
+                this.hmacKey = key;
+            }
+            return key;
+        }
+
+        String basicAuthorization() {
+            String authorization = this.basicAuthorization;
+            if (authorization == null) {
+                String credentials = this.customerId + ":" + this.apiKey;
+                authorization = "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes());
+                this.basicAuthorization = authorization;
+            }
+            return authorization;
+        }
+    }
+
+    private static class State {
+
+        final Credentials current;
+        final Credentials previous;
+        final long rotatedAt;
+        final long overlapNanos;
+
+        State(Credentials current, Credentials previous, long rotatedAt, long overlapNanos) {
+            this.current = current;
+            this.previous = previous;
+            this.rotatedAt = rotatedAt;
+            this.overlapNanos = overlapNanos;
+        }
+    }
+}
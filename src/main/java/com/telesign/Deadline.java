@@ -0,0 +1,323 @@
+package com.telesign;
+
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time budget for TeleSign calls, and a handle to cancel them, applied to every call made within run, whichever
+ * product method makes it.
+ * <p>
+ * Each HTTP call made under a deadline gets an OkHttp call timeout of the budget that remains when it starts, so the
+ * budget carries through a resend to a fallback endpoint, a resend with rotated credentials and a hedged copy
+ * rather than each getting the client-wide timeouts afresh. Waits for a tenant cap or bulkhead slot or a concurrency
+ * limiter permit are limited to the budget too. A call that would start with no budget left is not sent and fails
+ * with ExceededException. cancel, from any thread, cancels the calls in flight under the deadline, whose connections
+ * are released at once, wakes those still waiting to be sent, and fails them and any later call with
+ * CancelledException.
+ * <p>
+ * For example, to send an OTP with what remains of an 800 ms budget:
+ *
+ * <pre>
+ * Deadline deadline = Deadline.after(800, TimeUnit.MILLISECONDS);
+ * TelesignResponse response = deadline.run(new Deadline.Task&lt;TelesignResponse&gt;() {
+ *     public TelesignResponse run() throws IOException, GeneralSecurityException {
+ *         return messagingClient.message(phoneNumber, message, "OTP", null);
+ *     }
+ * });
+ * </pre>
+ */
+public class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private final List<Call> calls = new ArrayList<>();
+    private final List<Object> monitors = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * Thrown when a call is abandoned because its deadline passed.
+     */
+    public static class ExceededException extends InterruptedIOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new ExceededException.
+         *
+         * @param message
+         *            The detail message.
+         */
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when a call is abandoned because its deadline was cancelled.
+     */
+    public static class CancelledException extends InterruptedIOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new CancelledException.
+         *
+         * @param message
+         *            The detail message.
+         */
+        public CancelledException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The calls made under a deadline.
+     *
+     * @param <T>
+     *            The type of the result.
+     */
+    public interface Task<T> {
+
+        /**
+         * Makes the calls.
+         *
+         * @return The result.
+         * @throws IOException if an HTTP request fails.
+         * @throws GeneralSecurityException if there is a security exception.
+         */
+        T run() throws IOException, GeneralSecurityException;
+    }
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Creates a deadline the given time from now.
+     *
+     * @param timeout
+     *            The time budget.
+     * @param unit
+     *            The unit of timeout.
+     * @return The deadline.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @return The deadline the calling thread's calls are made under, or null if none.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs a task, applying this deadline to every TeleSign call it makes on the calling thread, and on the threads
+     * the SDK itself hands calls to, such as those of a FraudScreen. A deadline already applying to the calling
+     * thread is replaced for the duration of the task.
+     *
+     * @param task
+     *            The task.
+     * @param <T>
+     *            The type of the result.
+     * @return The result of the task.
+     * @throws IOException if an HTTP request fails, or the deadline passed or was cancelled.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public <T> T run(Task<T> task) throws IOException, GeneralSecurityException {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Returns a task that runs under the calling thread's deadline, if any, e.g. to hand calls to another thread.
+     *
+     * @param task
+     *            The task.
+     * @return The task, wrapped if the calling thread has a deadline.
+     */
+    static Runnable propagate(final Runnable task) {
+        final Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                Deadline previous = CURRENT.get();
+                CURRENT.set(deadline);
+                try {
+                    task.run();
+                } finally {
+                    if (previous == null) {
+                        CURRENT.remove();
+                    } else {
+                        CURRENT.set(previous);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the budget that remains.
+     *
+     * @param unit
+     *            The unit of the result.
+     * @return The remaining time, negative once the deadline passed.
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(this.deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return True once the deadline passed.
+     */
+    public boolean isExpired() {
+        return this.deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return True once cancel was called.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Cancels the calls in flight under this deadline, wakes those waiting to be sent, and fails any later call made
+     * under it.
+     */
+    public void cancel() {
+        List<Call> inFlight;
+        List<Object> waiting;
+        synchronized (this.calls) {
+            this.cancelled = true;
+            inFlight = new ArrayList<>(this.calls);
+            waiting = new ArrayList<>(this.monitors);
+        }
+        for (Call call : inFlight) {
+            call.cancel();
+        }
+        for (Object monitor : waiting) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Limits a wait for a slot or permit to the remaining budget.
+     *
+     * @param maxWaitNanos
+     *            The longest the wait may take otherwise.
+     * @return The longest the wait may take, 0 or less if it may not wait at all.
+     */
+    long waitNanos(long maxWaitNanos) {
+        return Math.min(maxWaitNanos, this.deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Registers a monitor the calling thread is about to wait on, holding its lock, to be notified on cancel. The
+     * waiter must check isCancelled after registering and before each wait.
+     */
+    void awaiting(Object monitor) {
+        synchronized (this.calls) {
+            this.monitors.add(monitor);
+        }
+    }
+
+    /**
+     * Stops notifying a monitor registered with awaiting once the wait on it is over.
+     */
+    void awaited(Object monitor) {
+        synchronized (this.calls) {
+            this.monitors.remove(monitor);
+        }
+    }
+
+    /**
+     * Checks that a call can still be started.
+     *
+     * @param resource
+     *            The resource being called, for the exception message.
+     * @throws IOException if the deadline passed or was cancelled.
+     */
+    void check(String resource) throws IOException {
+        if (this.cancelled) {
+            throw new CancelledException("call to " + resource + " cancelled");
+        }
+        if (this.isExpired()) {
+            throw new ExceededException("deadline exceeded before calling " + resource);
+        }
+    }
+
+    /**
+     * Limits a call that is about to start to the remaining budget, and tracks it to be cancelled with the
+     * deadline until it is detached.
+     *
+     * @param call
+     *            The call, not yet started.
+     * @throws IOException if the deadline passed or was cancelled.
+     */
+    void attach(Call call) throws IOException {
+        String resource = call.request().url().encodedPath();
+        this.check(resource);
+        call.timeout().timeout(Math.max(1, this.deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        synchronized (this.calls) {
+            if (this.cancelled) {
+                throw new CancelledException("call to " + resource + " cancelled");
+            }
+            this.calls.add(call);
+        }
+    }
+
+    /**
+     * Stops tracking a call that completed.
+     */
+    void detach(Call call) {
+        synchronized (this.calls) {
+            this.calls.remove(call);
+        }
+    }
+
+    /**
+     * Returns the exception a call failed with, or the reason it was abandoned if it failed because the deadline
+     * passed or was cancelled.
+     *
+     * @param e
+     *            The exception the call failed with.
+     * @param resource
+     *            The resource called.
+     * @return The exception to throw.
+     */
+    IOException abandoned(IOException e, String resource) {
+        IOException abandoned;
+        if (this.cancelled) {
+            abandoned = new CancelledException("call to " + resource + " cancelled");
+        } else if (this.isExpired()) {
+            abandoned = new ExceededException("deadline exceeded calling " + resource);
+        } else {
+            return e;
+        }
+        abandoned.initCause(e);
+        return abandoned;
+    }
+}
@@ -0,0 +1,238 @@
+package com.telesign;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suppresses duplicate sends of the same message to the same phone number within a time window, installed with
+ * MessagingClient.setDuplicateSuppressor.
+ * <p>
+ * Every send is identified by an idempotency key derived deterministically from the phone number and a hash of the
+ * message content and parameters, which is also sent in the Idempotency-Key header. A send whose key was seen within
+ * the window returns the original TelesignResponse without another request; if the original is still in flight,
+ * the duplicate waits for it, for no longer than the calling thread's Deadline allows. Only successful responses
+ * are remembered, so a failed send can be retried.
+ * <p>
+ * Keys are kept as 64-bit fingerprints in a fixed-size open-addressed table, so memory use is bounded by capacity
+ * no matter how many messages are sent. When the table is full, the entry closest to expiring is evicted.
+ */
+public class DuplicateSuppressor {
+
+    /**
+     * The HTTP header the idempotency key is sent in.
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final int MAX_PROBES = 8;
+
+    private final long windowNanos;
+    private final int mask;
+    private final long[] fingerprints;
+    private final long[] expiries;
+    private final Object[] results;
+
+    private final AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * A send to deduplicate.
+     */
+    interface Send {
+        RestClient.TelesignResponse send() throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Constructor for DuplicateSuppressor, remembering up to 65536 sends for 5 minutes.
+     */
+    public DuplicateSuppressor() {
+        this(5, TimeUnit.MINUTES, 65536);
+    }
+
+    /**
+     * Constructor for DuplicateSuppressor.
+     *
+     * @param window
+     *            How long a send is remembered.
+     * @param unit
+     *            The unit of window.
+     * @param capacity
+     *            The number of sends that can be remembered at once, rounded up to a power of two.
+     */
+    public DuplicateSuppressor(long window, TimeUnit unit, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Math.max(MAX_PROBES, Integer.highestOneBit(capacity - 1) << 1);
+        this.windowNanos = unit.toNanos(window);
+        this.mask = size - 1;
+        this.fingerprints = new long[size];
+        this.expiries = new long[size];
+        this.results = new Object[size];
+    }
+
+    /**
+     * Derives the idempotency key of a send from its phone number and parameters, independently of their order.
+     *
+     * @param phoneNumber
+     *            The phone number the message is sent to.
+     * @param params
+     *            The parameters of the request, including the message.
+     * @return The idempotency key, formatted as a UUID.
+     */
+    public static String idempotencyKey(String phoneNumber, Map<String, ? extends Object> params) {
+        MessageDigest digest = sha256();
+        digest.update(phoneNumber.getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, ? extends Object> entry : new TreeMap<>(params).entrySet()) {
+            if (entry.getKey().equals("phone_number")) {
+                continue;
+            }
+            digest.update((byte) 0);
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '=');
+            digest.update(String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+        return format(digest.digest());
+    }
+
+    /**
+     * Derives the idempotency key of a send whose body is already encoded, such as one from a MessageTemplate.
+     */
+    static String idempotencyKey(String phoneNumber, byte[] body) {
+        MessageDigest digest = sha256();
+        digest.update(phoneNumber.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(body);
+        return format(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String format(byte[] hash) {
+        StringBuilder key = new StringBuilder(36);
+        for (int i = 0; i < 16; i++) {
+            if (i == 4 || i == 6 || i == 8 || i == 10) {
+                key.append('-');
+            }
+            key.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return The number of sends that were suppressed as duplicates.
+     */
+    public long getSuppressedCount() {
+        return this.suppressed.get();
+    }
+
+    RestClient.TelesignResponse send(String idempotencyKey, Send send) throws IOException, GeneralSecurityException {
+        long fingerprint = fingerprint(idempotencyKey);
+        while (true) {
+            CompletableFuture<RestClient.TelesignResponse> mine = new CompletableFuture<>();
+            CompletableFuture<RestClient.TelesignResponse> original = this.putIfAbsent(fingerprint, mine);
+
+            if (original == null) {
+                RestClient.TelesignResponse response;
+                try {
+                    response = send.send();
+                } catch (Throwable e) {
+                    // Including Errors, which would otherwise leave every duplicate waiting for the original.
+                    this.remove(fingerprint, mine);
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+                if (!response.ok) {
+                    this.remove(fingerprint, mine);
+                }
+                mine.complete(response);
+                return response;
+            }
+
+            Deadline deadline = Deadline.current();
+            RestClient.TelesignResponse response;
+            try {
+                if (deadline == null) {
+                    response = original.get();
+                } else {
+                    if (deadline.isCancelled()) {
+                        throw new Deadline.CancelledException("cancelled waiting for the original send");
+                    }
+                    response = original.get(Math.max(0, deadline.remaining(TimeUnit.NANOSECONDS)),
+                            TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException e) {
+                throw new Deadline.ExceededException("deadline exceeded waiting for the original send");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for the original send");
+            } catch (ExecutionException e) {
+                // The original failed and was forgotten, so try again.
+                continue;
+            }
+            if (response.ok) {
+                this.suppressed.incrementAndGet();
+                return response;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized CompletableFuture<RestClient.TelesignResponse> putIfAbsent(
+            long fingerprint, CompletableFuture<RestClient.TelesignResponse> result) {
+        long now = System.nanoTime();
+        int start = (int) fingerprint & this.mask;
+        int free = -1;
+        int oldest = start;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & this.mask;
+            boolean live = this.results[slot] != null && this.expiries[slot] - now > 0;
+            if (live && this.fingerprints[slot] == fingerprint) {
+                return (CompletableFuture<RestClient.TelesignResponse>) this.results[slot];
+            }
+            if (!live) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (this.expiries[slot] - this.expiries[oldest] < 0) {
+                oldest = slot;
+            }
+        }
+        int victim = free >= 0 ? free : oldest;
+        this.fingerprints[victim] = fingerprint;
+        this.expiries[victim] = now + this.windowNanos;
+        this.results[victim] = result;
+        return null;
+    }
+
+    private synchronized void remove(long fingerprint, CompletableFuture<RestClient.TelesignResponse> result) {
+        int start = (int) fingerprint & this.mask;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (start + i) & this.mask;
+            if (this.results[slot] == result) {
+                this.results[slot] = null;
+                return;
+            }
+        }
+    }
+
+    private static long fingerprint(String idempotencyKey) {
+        // The key is a hex SHA-256 prefix, so its first 16 hex digits are already uniformly distributed.
+        return Long.parseUnsignedLong(idempotencyKey.replace("-", "").substring(0, 16), 16);
+    }
+}
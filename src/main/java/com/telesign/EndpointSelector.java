@@ -0,0 +1,251 @@
+package com.telesign;
+
+import okhttp3.HttpUrl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads requests over several equivalent endpoints of a product, such as regional TeleSign REST API endpoints,
+ * installed with RestClient.setEndpointSelector.
+ * <p>
+ * Every endpoint tracks an exponentially weighted moving average (EWMA) of its latency, its number of in-flight
+ * requests, and a health score that is an EWMA of its success rate. Each request picks two healthy endpoints at
+ * random and uses the one with the lower cost, latency times load divided by health ("power of two choices"), which
+ * keeps the fastest route preferred without stampeding it.
+ * <p>
+ * An endpoint that fails failureThreshold times in a row, by connection errors or 5xx responses, is ejected for
+ * ejectionTime, doubled on every consecutive ejection up to 32 times as long. It is re-admitted once that time has
+ * passed, and ejected again as soon as it fails once more. When every endpoint is ejected, the one due back first
+ * is used.
+ */
+public class EndpointSelector {
+
+    private static final double LATENCY_DECAY = 0.3;
+    private static final double HEALTH_DECAY = 0.1;
+    private static final double MIN_HEALTH = 0.01;
+    private static final int MAX_EJECTION_DOUBLINGS = 5;
+
+    private final List<Endpoint> endpoints;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+
+    /**
+     * Constructor for EndpointSelector, ejecting an endpoint for 10 seconds after 5 consecutive failures.
+     *
+     * @param endpoints
+     *            The base URLs of the endpoints, e.g. "https://rest-api.telesign.com".
+     */
+    public EndpointSelector(List<String> endpoints) {
+        this(endpoints, 5, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructor for EndpointSelector.
+     *
+     * @param endpoints
+     *            The base URLs of the endpoints, e.g. "https://rest-api.telesign.com".
+     * @param failureThreshold
+     *            The number of consecutive failures after which an endpoint is ejected.
+     * @param ejectionTime
+     *            How long an endpoint is ejected for the first time.
+     * @param unit
+     *            The unit of ejectionTime.
+     */
+    public EndpointSelector(List<String> endpoints, int failureThreshold, long ejectionTime, TimeUnit unit) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("at least one endpoint is required");
+        }
+        List<Endpoint> parsed = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            parsed.add(new Endpoint(endpoint));
+        }
+        this.endpoints = Collections.unmodifiableList(parsed);
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = unit.toNanos(ejectionTime);
+    }
+
+    /**
+     * @return Every endpoint, in the order they were given.
+     */
+    public List<Endpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    /**
+     * Picks the endpoint for the next request.
+     *
+     * @param exclude
+     *            (optional) An endpoint that must not be picked, e.g. one that just refused a connection.
+     * @return The endpoint to use, or null if exclude was the only endpoint.
+     */
+    public Endpoint select(Endpoint exclude) {
+        long now = System.nanoTime();
+        Random random = ThreadLocalRandom.current();
+
+        List<Endpoint> candidates = new ArrayList<>(this.endpoints.size());
+        Endpoint dueFirst = null;
+        for (Endpoint endpoint : this.endpoints) {
+            if (endpoint == exclude) {
+                continue;
+            }
+            if (endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+            } else if (dueFirst == null || endpoint.ejectedUntil() < dueFirst.ejectedUntil()) {
+                dueFirst = endpoint;
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return dueFirst;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = candidates.get(first);
+        Endpoint b = candidates.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * An endpoint and the statistics it is selected by.
+     */
+    public class Endpoint {
+
+        private final String url;
+        private final HttpUrl baseUrl;
+        private final List<String> basePath = new ArrayList<>();
+
+        private double latencyEwma;
+        private double health = 1.0;
+        private int inFlight;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntil;
+        private boolean ejected;
+
+        Endpoint(String url) {
+            this.url = url.replaceAll("/$", "");
+            this.baseUrl = HttpUrl.parse(this.url);
+            if (this.baseUrl == null) {
+                throw new IllegalArgumentException("invalid endpoint " + url);
+            }
+            for (String segment : this.baseUrl.encodedPathSegments()) {
+                if (!segment.isEmpty()) {
+                    this.basePath.add(segment);
+                }
+            }
+        }
+
+        /**
+         * @return The base URL of the endpoint.
+         */
+        public String getUrl() {
+            return this.url;
+        }
+
+        /**
+         * @return The moving average of the endpoint's latency, in nanoseconds.
+         */
+        public synchronized long getLatencyEwmaNanos() {
+            return (long) this.latencyEwma;
+        }
+
+        /**
+         * @return The moving average of the endpoint's success rate, between 0 and 1.
+         */
+        public synchronized double getHealth() {
+            return this.health;
+        }
+
+        /**
+         * @return True if the endpoint is currently ejected.
+         */
+        public synchronized boolean isEjected() {
+            return this.ejected && System.nanoTime() - this.ejectedUntil < 0;
+        }
+
+        /**
+         * Moves a URL built on another endpoint's base URL, including any base path such as that of a gateway, onto
+         * this endpoint's base URL, keeping the resource path and query.
+         */
+        HttpUrl rebase(HttpUrl url, Endpoint from) {
+            List<String> segments = url.encodedPathSegments();
+            HttpUrl.Builder builder = url.newBuilder().scheme(this.baseUrl.scheme()).host(this.baseUrl.host())
+                    .port(this.baseUrl.port()).encodedPath("/");
+            for (String segment : this.basePath) {
+                builder.addEncodedPathSegment(segment);
+            }
+            for (int i = from.basePath.size(); i < segments.size(); i++) {
+                builder.addEncodedPathSegment(segments.get(i));
+            }
+            return builder.build();
+        }
+
+        synchronized boolean isAvailable(long now) {
+            return !this.ejected || now - this.ejectedUntil >= 0;
+        }
+
+        synchronized long ejectedUntil() {
+            return this.ejectedUntil;
+        }
+
+        synchronized double cost() {
+            return (this.latencyEwma + 1) * (this.inFlight + 1) / Math.max(MIN_HEALTH, this.health);
+        }
+
+        synchronized void onStart() {
+            this.inFlight++;
+        }
+
+        synchronized void onResponse(long latencyNanos, int statusCode) {
+            if (statusCode >= 500) {
+                onError();
+                return;
+            }
+            this.inFlight--;
+            this.latencyEwma = this.latencyEwma == 0 ? latencyNanos
+                    : this.latencyEwma + LATENCY_DECAY * (latencyNanos - this.latencyEwma);
+            this.health += HEALTH_DECAY * (1.0 - this.health);
+            this.consecutiveFailures = 0;
+            if (this.ejected) {
+                this.ejected = false;
+                this.ejections = 0;
+            }
+        }
+
+        /**
+         * Records a request that was abandoned because its deadline passed or was cancelled, which says nothing about
+         * the endpoint's health.
+         */
+        synchronized void onAbandoned() {
+            this.inFlight--;
+        }
+
+        synchronized void onError() {
+            this.inFlight--;
+            this.health -= HEALTH_DECAY * this.health;
+            this.consecutiveFailures++;
+
+            long now = System.nanoTime();
+            // A re-admitted endpoint is ejected again on its first failure.
+            boolean probation = this.ejected && now - this.ejectedUntil >= 0;
+            if (probation || this.consecutiveFailures >= failureThreshold) {
+                this.ejected = true;
+                this.ejectedUntil = now + (ejectionNanos << Math.min(this.ejections, MAX_EJECTION_DOUBLINGS));
+                this.ejections++;
+                this.consecutiveFailures = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.telesign;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The JFR event types behind TelesignEvents, which only loads this class once it has found Flight Recorder.
+ */
+final class FlightRecorderEvents {
+
+    private static final EventType CALL_TYPE = EventType.getEventType(CallEvent.class);
+
+    private static final Set<RestClient> CLIENTS = Collections.newSetFromMap(new WeakHashMap<RestClient, Boolean>());
+
+    static {
+        FlightRecorder.addPeriodicEvent(ClientStateEvent.class, new Runnable() {
+            @Override
+            public void run() {
+                List<RestClient> clients;
+                synchronized (CLIENTS) {
+                    clients = new ArrayList<>(CLIENTS);
+                }
+                for (RestClient client : clients) {
+                    OkHttpClient httpClient = client.httpClient();
+                    Dispatcher dispatcher = httpClient.dispatcher();
+
+                    ClientStateEvent event = new ClientStateEvent();
+                    event.client = Integer.toHexString(System.identityHashCode(client));
+                    event.connectionCount = httpClient.connectionPool().connectionCount();
+                    event.idleConnectionCount = httpClient.connectionPool().idleConnectionCount();
+                    event.runningCalls = dispatcher.runningCallsCount();
+                    event.queuedCalls = dispatcher.queuedCallsCount();
+                    event.maxRequests = dispatcher.getMaxRequests();
+                    event.commit();
+                }
+            }
+        });
+    }
+
+    private FlightRecorderEvents() {
+    }
+
+    static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    static TelesignEvents.Call begin(String method, String resourceTemplate) {
+        if (!CALL_TYPE.isEnabled()) {
+            return null;
+        }
+        CallEvent event = new CallEvent();
+        event.method = method;
+        event.resource = resourceTemplate;
+        event.begin();
+        return event;
+    }
+
+    static void track(RestClient client) {
+        synchronized (CLIENTS) {
+            CLIENTS.add(client);
+        }
+    }
+
+    @Name("com.telesign.Call")
+    @Label("TeleSign Call")
+    @Description("A request to the TeleSign REST API, from encoding its body to reading its response")
+    @Category("TeleSign")
+    @StackTrace(false)
+    static class CallEvent extends Event implements TelesignEvents.Call {
+
+        @Label("Method")
+        String method;
+
+        @Label("Resource")
+        @Description("Template of the resource, with {} for each path argument")
+        String resource;
+
+        @Label("Status Code")
+        @Description("HTTP status of the response, or 0 if the call failed")
+        int statusCode;
+
+        @Label("Bytes Sent")
+        @DataAmount(DataAmount.BYTES)
+        long bytesSent;
+
+        @Label("Bytes Received")
+        @DataAmount(DataAmount.BYTES)
+        long bytesReceived;
+
+        @Label("Signing Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long signingTime;
+
+        @Label("Queue Time")
+        @Description("Time spent waiting for a bulkhead slot or concurrency limiter permit")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueTime;
+
+        @Label("Error")
+        String error;
+
+        @Override
+        public void signed(long nanos) {
+            this.signingTime += nanos;
+        }
+
+        @Override
+        public void queued(long nanos) {
+            this.queueTime += nanos;
+        }
+
+        @Override
+        public void commit(int statusCode, long bytesSent, long bytesReceived) {
+            this.statusCode = statusCode;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.commit();
+        }
+
+        @Override
+        public void fail(long bytesSent, Throwable error) {
+            this.bytesSent = bytesSent;
+            this.error = error.getClass().getName();
+            this.commit();
+        }
+    }
+
+    @Name("com.telesign.ClientState")
+    @Label("TeleSign Client State")
+    @Description("Connection pool and dispatcher state of a TeleSign client")
+    @Category("TeleSign")
+    @Period("1 s")
+    @StackTrace(false)
+    static class ClientStateEvent extends Event {
+
+        @Label("Client")
+        String client;
+
+        @Label("Connections")
+        int connectionCount;
+
+        @Label("Idle Connections")
+        int idleConnectionCount;
+
+        @Label("Running Calls")
+        int runningCalls;
+
+        @Label("Queued Calls")
+        int queuedCalls;
+
+        @Label("Max Requests")
+        int maxRequests;
+    }
+}
@@ -0,0 +1,317 @@
+package com.telesign;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-destination rate limits for messages and calls, installed with RestClient.setFloodProtector, that stop SMS
+ * and voice pumping through signup or password reset flows before any request is signed or sent.
+ * <p>
+ * A limit applies either to each full phone number or to each prefix of a given number of digits, e.g. 6 digits
+ * for a country and area code, which catches a flood spread over a range of premium numbers. Numbers are keyed by
+ * their E.164 digits as a primitive long, and counted with a sliding window approximated from the counts of the
+ * current and previous windows, the previous one decaying linearly as the current one elapses. Numbers that cannot
+ * be parsed are all counted under one shared key, so that they cannot bypass the limits.
+ * <p>
+ * Counters live in fixed-size open-addressed tables split into lock stripes, so memory use is bounded by capacity
+ * and concurrent sends to different numbers rarely contend. When a stripe is full, its least recently active
+ * counter is reused.
+ */
+public class FloodProtector {
+
+    private static final int STRIPES = 64;
+    private static final int MAX_PROBES = 8;
+
+    /**
+     * The key every number that cannot be parsed is counted under. No E.164 number is 0.
+     */
+    private static final long UNPARSEABLE = 0;
+
+    private final int capacity;
+    private final List<Limit> limits = new CopyOnWriteArrayList<>();
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * Thrown when a send would exceed a limit.
+     */
+    public static class FloodLimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new FloodLimitExceededException.
+         *
+         * @param message
+         *            The detail message.
+         */
+        public FloodLimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Constructor for FloodProtector, tracking up to 65536 numbers or prefixes per limit.
+     */
+    public FloodProtector() {
+        this(65536);
+    }
+
+    /**
+     * Constructor for FloodProtector.
+     *
+     * @param capacity
+     *            The number of numbers or prefixes each limit tracks at once.
+     */
+    public FloodProtector(int capacity) {
+        if (capacity < STRIPES) {
+            throw new IllegalArgumentException("capacity must be at least " + STRIPES);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Limits the number of sends to each phone number.
+     *
+     * @param maxRequests
+     *            The number of sends allowed per window.
+     * @param window
+     *            The length of the sliding window.
+     * @param unit
+     *            The unit of window.
+     */
+    public void addDestinationLimit(int maxRequests, long window, TimeUnit unit) {
+        this.addPrefixLimit(0, maxRequests, window, unit);
+    }
+
+    /**
+     * Limits the number of sends to all the phone numbers sharing a prefix.
+     *
+     * @param prefixDigits
+     *            The number of leading digits of the E.164 number that form the prefix, or 0 for the whole number.
+     * @param maxRequests
+     *            The number of sends allowed per window.
+     * @param window
+     *            The length of the sliding window.
+     * @param unit
+     *            The unit of window.
+     */
+    public void addPrefixLimit(int prefixDigits, int maxRequests, long window, TimeUnit unit) {
+        if (prefixDigits < 0 || maxRequests < 1 || window <= 0) {
+            throw new IllegalArgumentException("limit must allow at least one request per positive window");
+        }
+        this.limits.add(new Limit(prefixDigits, maxRequests, unit.toNanos(window), this.capacity));
+    }
+
+    /**
+     * Counts a send to a phone number against every limit.
+     *
+     * @param phoneNumber
+     *            The phone number, in E.164 format with or without a leading "+" and separators.
+     * @throws FloodLimitExceededException if a limit is exceeded, in which case nothing must be sent.
+     */
+    public void acquire(String phoneNumber) throws FloodLimitExceededException {
+        long number = parseE164(phoneNumber);
+        if (number < 0) {
+            // Counted under one shared key rather than let through, so odd formatting cannot bypass the limits.
+            number = UNPARSEABLE;
+        }
+        long now = System.nanoTime();
+        List<Limit> acquired = new ArrayList<>(this.limits.size());
+        for (Limit limit : this.limits) {
+            if (!limit.tryAcquire(number, now)) {
+                // A blocked send is not counted against the limits it passed.
+                for (Limit passed : acquired) {
+                    passed.release(number, now);
+                }
+                this.blocked.incrementAndGet();
+                String message;
+                if (number == UNPARSEABLE) {
+                    message = "too many requests to unparseable numbers";
+                } else if (limit.prefixDigits == 0) {
+                    message = String.format("too many requests to %d", number);
+                } else {
+                    message = String.format("too many requests to prefix %d", limit.prefixOf(number));
+                }
+                throw new FloodLimitExceededException(message);
+            }
+            acquired.add(limit);
+        }
+    }
+
+    /**
+     * @return The number of sends that were blocked.
+     */
+    public long getBlockedCount() {
+        return this.blocked.get();
+    }
+
+    /**
+     * Parses the digits of a phone number, ignoring a leading "+" and separators. Without a "+", a "00" or "011"
+     * international prefix is dropped, and leading zeros are dropped in any case, since no country code starts
+     * with 0.
+     *
+     * @return The number, or -1 if it has no significant digits or more than the 15 E.164 allows.
+     */
+    static long parseE164(String phoneNumber) {
+        if (phoneNumber == null) {
+            return -1;
+        }
+        StringBuilder digits = new StringBuilder(phoneNumber.length());
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char ch = phoneNumber.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits.append(ch);
+            }
+        }
+        int start = 0;
+        if (!phoneNumber.trim().startsWith("+")) {
+            if (digits.indexOf("011") == 0) {
+                start = 3;
+            } else if (digits.indexOf("00") == 0) {
+                start = 2;
+            }
+        }
+        while (start < digits.length() && digits.charAt(start) == '0') {
+            start++;
+        }
+        if (start == digits.length() || digits.length() - start > 15) {
+            return -1;
+        }
+        return Long.parseLong(digits.substring(start));
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static class Limit {
+
+        final int prefixDigits;
+        final int maxRequests;
+        final long windowNanos;
+        final Stripe[] stripes = new Stripe[STRIPES];
+
+        Limit(int prefixDigits, int maxRequests, long windowNanos, int capacity) {
+            this.prefixDigits = prefixDigits;
+            this.maxRequests = maxRequests;
+            this.windowNanos = windowNanos;
+            int stripeSize = Integer.highestOneBit(Math.max(MAX_PROBES, capacity / STRIPES - 1)) << 1;
+            for (int i = 0; i < STRIPES; i++) {
+                this.stripes[i] = new Stripe(stripeSize);
+            }
+        }
+
+        long prefixOf(long number) {
+            if (this.prefixDigits == 0) {
+                return number;
+            }
+            int digits = Long.toString(number).length();
+            for (int i = digits; i > this.prefixDigits; i--) {
+                number /= 10;
+            }
+            return number;
+        }
+
+        boolean tryAcquire(long number, long now) {
+            long key = this.prefixOf(number);
+            long hash = mix(key);
+            Stripe stripe = this.stripes[(int) hash & (STRIPES - 1)];
+            long window = Math.floorDiv(now, this.windowNanos);
+            double elapsed = (double) Math.floorMod(now, this.windowNanos) / this.windowNanos;
+            synchronized (stripe) {
+                return stripe.tryAcquire(key, (int) (hash >>> 32), window, elapsed, this.maxRequests);
+            }
+        }
+
+        void release(long number, long now) {
+            long key = this.prefixOf(number);
+            long hash = mix(key);
+            Stripe stripe = this.stripes[(int) hash & (STRIPES - 1)];
+            synchronized (stripe) {
+                stripe.release(key, (int) (hash >>> 32), Math.floorDiv(now, this.windowNanos));
+            }
+        }
+    }
+
+    /**
+     * Counters for a share of the keys: the key, the index of its current window, and its counts in the current and
+     * previous windows. Keys are stored with the sign bit set so that 0 marks an empty slot.
+     */
+    private static class Stripe {
+
+        final int mask;
+        final long[] keys;
+        final long[] windows;
+        final int[] current;
+        final int[] previous;
+
+        Stripe(int size) {
+            this.mask = size - 1;
+            this.keys = new long[size];
+            this.windows = new long[size];
+            this.current = new int[size];
+            this.previous = new int[size];
+        }
+
+        boolean tryAcquire(long key, int hash, long window, double elapsed, int maxRequests) {
+            long stored = key | Long.MIN_VALUE;
+            int slot = -1;
+            int reusable = -1;
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int probe = (hash + i) & this.mask;
+                if (this.keys[probe] == stored) {
+                    slot = probe;
+                    break;
+                }
+                if (reusable < 0 || this.keys[probe] == 0
+                        || (this.keys[reusable] != 0 && this.windows[probe] < this.windows[reusable])) {
+                    reusable = probe;
+                }
+            }
+
+            if (slot < 0) {
+                slot = reusable;
+                this.keys[slot] = stored;
+                this.windows[slot] = window;
+                this.current[slot] = 0;
+                this.previous[slot] = 0;
+            } else if (this.windows[slot] != window) {
+                this.previous[slot] = this.windows[slot] == window - 1 ? this.current[slot] : 0;
+                this.current[slot] = 0;
+                this.windows[slot] = window;
+            }
+
+            double estimate = this.previous[slot] * (1.0 - elapsed) + this.current[slot];
+            if (estimate + 1 > maxRequests) {
+                return false;
+            }
+            this.current[slot]++;
+            return true;
+        }
+
+        /**
+         * Takes back a send counted in the given window, unless its counter has since been reused.
+         */
+        void release(long key, int hash, long window) {
+            long stored = key | Long.MIN_VALUE;
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int probe = (hash + i) & this.mask;
+                if (this.keys[probe] == stored) {
+                    if (this.windows[probe] == window && this.current[probe] > 0) {
+                        this.current[probe]--;
+                    } else if (this.windows[probe] == window + 1 && this.previous[probe] > 0) {
+                        this.previous[probe]--;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.telesign;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes request parameters as an application/x-www-form-urlencoded body, percent-encoding each character straight
+ * into a reusable per-thread byte buffer with a lookup table instead of building a FormBody and reading it back.
+ * <p>
+ * Letters, digits and "*-._" are written as is, a space as "+", and every other character as the percent-encoded
+ * bytes of its UTF-8 encoding, with "?" standing in for an unpaired surrogate. This is the form encoding of the HTML
+ * standard. A server decodes it to the same parameters as OkHttp's FormBody, but the bytes may differ, since which
+ * punctuation FormBody escapes varies between OkHttp versions. Values may be any CharSequence or boxed primitive;
+ * integers are written without being converted to a String first, and other objects by their toString.
+ */
+final class FormEncoder {
+
+    static final MediaType CONTENT_TYPE = MediaType.parse("application/x-www-form-urlencoded");
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    /**
+     * For each ASCII character, the byte it is written as, or 0 if it is percent-encoded.
+     */
+    private static final byte[] PLAIN = new byte[128];
+
+    static {
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            PLAIN[ch] = (byte) ch;
+        }
+        for (char ch = 'A'; ch <= 'Z'; ch++) {
+            PLAIN[ch] = (byte) ch;
+        }
+        for (char ch = '0'; ch <= '9'; ch++) {
+            PLAIN[ch] = (byte) ch;
+        }
+        PLAIN['*'] = '*';
+        PLAIN['-'] = '-';
+        PLAIN['.'] = '.';
+        PLAIN['_'] = '_';
+        PLAIN[' '] = '+';
+    }
+
+    private static final ThreadLocal<FormEncoder> ENCODERS = new ThreadLocal<FormEncoder>() {
+        @Override
+        protected FormEncoder initialValue() {
+            return new FormEncoder();
+        }
+    };
+
+    // Buffers that grew past this are not kept, so one huge request does not pin memory to the thread.
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    private byte[] buffer = new byte[1024];
+    private int size;
+
+    private FormEncoder() {
+    }
+
+    /**
+     * A form body whose encoded bytes are available for signing.
+     */
+    static final class Body extends RequestBody {
+
+        private final byte[] bytes;
+
+        private Body(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return The encoded body, which must not be modified.
+         */
+        byte[] bytes() {
+            return this.bytes;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public long contentLength() {
+            return this.bytes.length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            sink.write(this.bytes);
+        }
+    }
+
+    /**
+     * Encodes parameters in the map's iteration order.
+     *
+     * @param params
+     *            The parameters, none of whose values may be null.
+     * @return The form body.
+     */
+    static Body encode(Map<String, ? extends Object> params) {
+        FormEncoder encoder = begin();
+        for (Map.Entry<String, ? extends Object> entry : params.entrySet()) {
+            encoder.field(entry.getKey(), entry.getValue());
+        }
+        return encoder.finish();
+    }
+
+    /**
+     * Percent-encodes a single name or value, e.g. to splice into bodies later with appendEncoded.
+     *
+     * @param value
+     *            The name or value.
+     * @return The encoded bytes.
+     */
+    static byte[] encodeComponent(CharSequence value) {
+        FormEncoder encoder = new FormEncoder();
+        encoder.writeEncoded(value);
+        return Arrays.copyOf(encoder.buffer, encoder.size);
+    }
+
+    /**
+     * @return The calling thread's encoder, emptied, to build a body with and then finish.
+     */
+    static FormEncoder begin() {
+        FormEncoder encoder = ENCODERS.get();
+        encoder.size = 0;
+        return encoder;
+    }
+
+    /**
+     * Appends a name and value, preceded by "&amp;" unless it is the first field.
+     */
+    FormEncoder field(String name, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("value of %s is null", name));
+        }
+        if (this.size > 0) {
+            this.write((byte) '&');
+        }
+        this.writeEncoded(name);
+        this.write((byte) '=');
+        return this.appendValue(value);
+    }
+
+    /**
+     * Appends a value, percent-encoded.
+     */
+    FormEncoder appendValue(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value is null");
+        }
+        if (value instanceof CharSequence) {
+            this.writeEncoded((CharSequence) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            this.writeDecimal(((Number) value).longValue());
+        } else {
+            this.writeEncoded(String.valueOf(value));
+        }
+        return this;
+    }
+
+    /**
+     * Appends bytes that are already encoded.
+     */
+    FormEncoder appendEncoded(byte[] encoded) {
+        this.ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, this.buffer, this.size, encoded.length);
+        this.size += encoded.length;
+        return this;
+    }
+
+    /**
+     * @return The body appended so far.
+     */
+    Body finish() {
+        Body body = new Body(Arrays.copyOf(this.buffer, this.size));
+        if (this.buffer.length > MAX_RETAINED) {
+            this.buffer = new byte[1024];
+        }
+        return body;
+    }
+
+    private void writeEncoded(CharSequence value) {
+        int length = value.length();
+        // Room for every character to take 3 bytes; a non-ASCII character makes room for the rest again.
+        this.ensureCapacity(length * 3);
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch < 0x80) {
+                byte plain = PLAIN[ch];
+                if (plain != 0) {
+                    this.buffer[this.size++] = plain;
+                } else {
+                    this.writePercent(ch);
+                }
+            } else if (ch < 0x800) {
+                this.ensureCapacity(6 + (length - i - 1) * 3);
+                this.writePercent(0xC0 | (ch >> 6));
+                this.writePercent(0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(ch, value.charAt(++i));
+                this.ensureCapacity(12 + (length - i - 1) * 3);
+                this.writePercent(0xF0 | (codePoint >> 18));
+                this.writePercent(0x80 | ((codePoint >> 12) & 0x3F));
+                this.writePercent(0x80 | ((codePoint >> 6) & 0x3F));
+                this.writePercent(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(ch)) {
+                this.writePercent('?');
+            } else {
+                this.ensureCapacity(9 + (length - i - 1) * 3);
+                this.writePercent(0xE0 | (ch >> 12));
+                this.writePercent(0x80 | ((ch >> 6) & 0x3F));
+                this.writePercent(0x80 | (ch & 0x3F));
+            }
+        }
+    }
+
+    private void writeDecimal(long value) {
+        if (value == Long.MIN_VALUE) {
+            this.writeEncoded(Long.toString(value));
+            return;
+        }
+        this.ensureCapacity(20);
+        if (value < 0) {
+            this.buffer[this.size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = this.size + digits - 1; i >= this.size; i--) {
+            this.buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.size += digits;
+    }
+
+    private void writePercent(int b) {
+        this.buffer[this.size++] = '%';
+        this.buffer[this.size++] = HEX_DIGITS[(b >> 4) & 0xF];
+        this.buffer[this.size++] = HEX_DIGITS[b & 0xF];
+    }
+
+    private void write(byte b) {
+        this.ensureCapacity(1);
+        this.buffer[this.size++] = b;
+    }
+
+    /**
+     * Makes room for at least the given number of bytes past the current size.
+     */
+    private void ensureCapacity(int bytes) {
+        if (this.size + bytes > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + bytes));
+        }
+    }
+}
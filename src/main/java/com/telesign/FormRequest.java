@@ -0,0 +1,57 @@
+package com.telesign;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable form-encoded request, whose body is encoded once, the first time it is sent, and reused by every send
+ * of it from any thread.
+ */
+abstract class FormRequest {
+
+    private final Map<String, String> params;
+    private volatile FormEncoder.Body body;
+
+    FormRequest(Map<String, String> params) {
+        this.params = Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * @return All the parameters of the request, including the required ones, which cannot be modified.
+     */
+    public Map<String, String> getParams() {
+        return this.params;
+    }
+
+    FormEncoder.Body body() {
+        FormEncoder.Body body = this.body;
+        if (body == null) {
+            // Two threads may both encode it the first time; either copy is the same.
+            body = FormEncoder.encode(this.params);
+            this.body = body;
+        }
+        return body;
+    }
+
+    /**
+     * Copies the additional parameters and sets the required ones over them.
+     */
+    static Map<String, String> merge(Map<String, String> params, String... required) {
+        // The order of the fields does not matter to TeleSign or the signature, but the client tests compare bodies
+        // byte for byte, and putAll would size the table differently and so change the order they are encoded in.
+        Map<String, String> merged = new HashMap<>();
+        if (params != null) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (int i = 0; i < required.length; i += 2) {
+            if (required[i + 1] == null) {
+                throw new IllegalArgumentException(String.format("%s is required", required[i]));
+            }
+            merged.put(required[i], required[i + 1]);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,559 @@
+package com.telesign;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * A fraud check run before a message is sent, e.g. an OTP: PhoneID and Score are requested for the phone number at
+ * the same time instead of one after the other, their responses are checked against rules, and the message is only
+ * sent if no rule blocks it.
+ * <p>
+ * A rule that blocks on the first response to arrive decides without waiting for the other. Successful responses are
+ * cached per phone number for a TTL, so a user who asks for a second code within it costs a single request. The
+ * latency saved over making the two requests sequentially is reported per screening and in total.
+ *
+ * <pre>
+ * FraudScreen screen = new FraudScreen(phoneIdClient, scoreClient, messagingClient);
+ * screen.blockPhoneTypes("VOIP");
+ * screen.blockRiskLevels("high");
+ * FraudScreen.Verdict verdict = screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+ * </pre>
+ */
+public class FraudScreen {
+
+    private static final int CACHE_SIZE = 10000;
+
+    private final PhoneIdClient phoneIdClient;
+    private final ScoreClient scoreClient;
+    private final MessagingClient messagingClient;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    private final List<Rule> phoneIdRules = new CopyOnWriteArrayList<>();
+    private final List<Rule> scoreRules = new CopyOnWriteArrayList<>();
+    private final Map<String, Cached> phoneIdCache = lruCache();
+    private final Map<String, Cached> scoreCache = lruCache();
+    private volatile long cacheTtlNanos = TimeUnit.MINUTES.toNanos(5);
+    private volatile boolean failOpen;
+
+    private final AtomicLong screened = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong latencySavedNanos = new AtomicLong();
+
+    /**
+     * A check of a PhoneID or Score response.
+     */
+    public interface Rule {
+
+        /**
+         * @param response
+         *            The successful response to check.
+         * @return The reason the message must not be sent, or null if the response passes.
+         */
+        String check(RestClient.TelesignResponse response);
+    }
+
+    /**
+     * The outcome of a screening, and of the send if it passed.
+     */
+    public static class Verdict {
+
+        private final String reason;
+        private final RestClient.TelesignResponse phoneIdResponse;
+        private final RestClient.TelesignResponse scoreResponse;
+        private final long elapsedNanos;
+        private final long latencySavedNanos;
+        private RestClient.TelesignResponse messageResponse;
+
+        Verdict(String reason, RestClient.TelesignResponse phoneIdResponse, RestClient.TelesignResponse scoreResponse,
+                long elapsedNanos, long latencySavedNanos) {
+            this.reason = reason;
+            this.phoneIdResponse = phoneIdResponse;
+            this.scoreResponse = scoreResponse;
+            this.elapsedNanos = elapsedNanos;
+            this.latencySavedNanos = latencySavedNanos;
+        }
+
+        /**
+         * @return True if a rule blocked the message.
+         */
+        public boolean isBlocked() {
+            return this.reason != null;
+        }
+
+        /**
+         * @return The reason the message was blocked, or null if it was not.
+         */
+        public String getReason() {
+            return this.reason;
+        }
+
+        /**
+         * @return The PhoneID response, or null if the screening was decided before it arrived.
+         */
+        public RestClient.TelesignResponse getPhoneIdResponse() {
+            return this.phoneIdResponse;
+        }
+
+        /**
+         * @return The Score response, or null if the screening was decided before it arrived.
+         */
+        public RestClient.TelesignResponse getScoreResponse() {
+            return this.scoreResponse;
+        }
+
+        /**
+         * @return The response to the message, or null if it was blocked or only screened.
+         */
+        public RestClient.TelesignResponse getMessageResponse() {
+            return this.messageResponse;
+        }
+
+        /**
+         * @return How long the screening took, excluding the send.
+         */
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         * @return How much longer the screening would have taken with the requests made one after the other.
+         */
+        public long getLatencySavedNanos() {
+            return this.latencySavedNanos;
+        }
+    }
+
+    /**
+     * Constructor for FraudScreen, making the requests on threads of its own.
+     *
+     * @param phoneIdClient
+     *            The client PhoneID is requested with.
+     * @param scoreClient
+     *            The client Score is requested with.
+     * @param messagingClient
+     *            The client messages are sent with.
+     */
+    public FraudScreen(PhoneIdClient phoneIdClient, ScoreClient scoreClient, MessagingClient messagingClient) {
+        this(phoneIdClient, scoreClient, messagingClient, null);
+    }
+
+    /**
+     * Constructor for FraudScreen.
+     *
+     * @param phoneIdClient
+     *            The client PhoneID is requested with.
+     * @param scoreClient
+     *            The client Score is requested with.
+     * @param messagingClient
+     *            The client messages are sent with.
+     * @param executor
+     *            (optional) The executor PhoneID and Score are requested on, which should allow two requests per
+     *            concurrent screening.
+     */
+    public FraudScreen(PhoneIdClient phoneIdClient, ScoreClient scoreClient, MessagingClient messagingClient,
+                       Executor executor) {
+        this.phoneIdClient = phoneIdClient;
+        this.scoreClient = scoreClient;
+        this.messagingClient = messagingClient;
+        if (executor == null) {
+            this.ownedExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TeleSign fraud screen " + this.count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.executor = this.ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Blocks phone numbers whose PhoneID phone_type description is one of the given ones, e.g. "VOIP" or "PAYPHONE".
+     *
+     * @param phoneTypes
+     *            The phone types to block, compared ignoring case.
+     */
+    public void blockPhoneTypes(String... phoneTypes) {
+        this.phoneIdRules.add(fieldRule("phone_type", "description", "phone type", phoneTypes));
+    }
+
+    /**
+     * Blocks phone numbers whose Score risk level is one of the given ones, e.g. "high".
+     *
+     * @param riskLevels
+     *            The risk levels to block, compared ignoring case.
+     */
+    public void blockRiskLevels(String... riskLevels) {
+        this.scoreRules.add(fieldRule("risk", "level", "risk level", riskLevels));
+    }
+
+    /**
+     * @param rule
+     *            A rule to check successful PhoneID responses with.
+     */
+    public void addPhoneIdRule(Rule rule) {
+        this.phoneIdRules.add(rule);
+    }
+
+    /**
+     * @param rule
+     *            A rule to check successful Score responses with.
+     */
+    public void addScoreRule(Rule rule) {
+        this.scoreRules.add(rule);
+    }
+
+    /**
+     * Sets how long successful PhoneID and Score responses are reused for the same phone number, 5 minutes by
+     * default.
+     *
+     * @param ttl
+     *            The time to live, or 0 to disable caching.
+     * @param unit
+     *            The unit of ttl.
+     */
+    public void setCacheTtl(long ttl, TimeUnit unit) {
+        this.cacheTtlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Sets whether a message is sent when PhoneID or Score fails, false by default so that an outage of either
+     * blocks messages rather than letting them through unchecked.
+     *
+     * @param failOpen
+     *            Whether to treat a failed check as passed.
+     */
+    public void setFailOpen(boolean failOpen) {
+        this.failOpen = failOpen;
+    }
+
+    /**
+     * Screens a phone number without sending anything.
+     *
+     * @param phoneNumber
+     *            The phone number to screen.
+     * @param accountLifecycleEvent
+     *            The action the phone number is being used for, passed to Score, e.g. "create" or "sign-in".
+     * @return The verdict.
+     * @throws IOException if a request fails and the screen does not fail open, or the calling thread's Deadline
+     *             passes before the screen decides.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public Verdict screen(final String phoneNumber, final String accountLifecycleEvent)
+            throws IOException, GeneralSecurityException {
+        long start = System.nanoTime();
+        this.screened.incrementAndGet();
+
+        final CompletableFuture<Timed> phoneId = this.lookup(this.phoneIdCache, phoneNumber, this.phoneIdClient,
+                new Lookup() {
+                    @Override
+                    public RestClient.TelesignResponse request() throws IOException, GeneralSecurityException {
+                        return phoneIdClient.phoneid(phoneNumber, new HashMap<String, String>());
+                    }
+                });
+        final CompletableFuture<Timed> score = this.lookup(this.scoreCache, phoneNumber + '\0' + accountLifecycleEvent,
+                this.scoreClient, new Lookup() {
+                    @Override
+                    public RestClient.TelesignResponse request() throws IOException, GeneralSecurityException {
+                        return scoreClient.score(phoneNumber, accountLifecycleEvent, null);
+                    }
+                });
+
+        final CompletableFuture<String> decision = new CompletableFuture<>();
+        final CompletableFuture<String> phoneIdReason = this.evaluate(phoneId, this.phoneIdRules, "phoneid", decision);
+        final CompletableFuture<String> scoreReason = this.evaluate(score, this.scoreRules, "score", decision);
+        CompletableFuture.allOf(phoneIdReason, scoreReason).whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void ignored, Throwable error) {
+                if (error != null) {
+                    decision.completeExceptionally(error);
+                } else {
+                    String reason = phoneIdReason.join();
+                    decision.complete(reason != null ? reason : scoreReason.join());
+                }
+            }
+        });
+
+        String reason = await(decision);
+        long elapsed = System.nanoTime() - start;
+
+        // Only requests that finished before the decision count; one still in flight after a block was not waited on.
+        Timed phoneIdTimed = phoneId.isDone() && !phoneId.isCompletedExceptionally() ? phoneId.join() : null;
+        Timed scoreTimed = score.isDone() && !score.isCompletedExceptionally() ? score.join() : null;
+        long sequential = (phoneIdTimed == null ? 0 : phoneIdTimed.nanos) + (scoreTimed == null ? 0 : scoreTimed.nanos);
+        long saved = Math.max(0, sequential - elapsed);
+        this.latencySavedNanos.addAndGet(saved);
+        if (reason != null) {
+            this.blocked.incrementAndGet();
+        }
+
+        return new Verdict(reason, phoneIdTimed == null ? null : phoneIdTimed.response,
+                scoreTimed == null ? null : scoreTimed.response, elapsed, saved);
+    }
+
+    /**
+     * Screens a phone number and, if no rule blocks it, sends it a message with MessagingClient.message.
+     *
+     * @param phoneNumber
+     *            The phone number to screen and send the message to.
+     * @param accountLifecycleEvent
+     *            The action the phone number is being used for, passed to Score, e.g. "create" or "sign-in".
+     * @param message
+     *            Text of the message to be sent to the end user.
+     * @param messageType
+     *            This parameter specifies the traffic type being sent in the message.
+     * @param params
+     *            Additional parameters for the message.
+     * @return The verdict, holding the response to the message if it was sent.
+     * @throws IOException if a request fails.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public Verdict message(String phoneNumber, String accountLifecycleEvent, String message, String messageType,
+                           Map<String, String> params) throws IOException, GeneralSecurityException {
+        Verdict verdict = this.screen(phoneNumber, accountLifecycleEvent);
+        if (!verdict.isBlocked()) {
+            verdict.messageResponse = this.messagingClient.message(phoneNumber, message, messageType, params);
+        }
+        return verdict;
+    }
+
+    /**
+     * @return The number of phone numbers screened.
+     */
+    public long getScreenedCount() {
+        return this.screened.get();
+    }
+
+    /**
+     * @return The number of screenings a rule blocked.
+     */
+    public long getBlockedCount() {
+        return this.blocked.get();
+    }
+
+    /**
+     * @return The number of PhoneID and Score responses reused from the cache.
+     */
+    public long getCacheHits() {
+        return this.cacheHits.get();
+    }
+
+    /**
+     * @return The total latency saved over making the requests of every screening one after the other.
+     */
+    public long getLatencySavedNanos() {
+        return this.latencySavedNanos.get();
+    }
+
+    /**
+     * Stops the threads the screen made for itself, if any.
+     */
+    public void close() {
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    private interface Lookup {
+        RestClient.TelesignResponse request() throws IOException, GeneralSecurityException;
+    }
+
+    private static class Timed {
+
+        final RestClient.TelesignResponse response;
+        final long nanos;
+
+        Timed(RestClient.TelesignResponse response, long nanos) {
+            this.response = response;
+            this.nanos = nanos;
+        }
+    }
+
+    private static class Cached {
+
+        final RestClient.TelesignResponse response;
+        final long expiry;
+
+        Cached(RestClient.TelesignResponse response, long expiry) {
+            this.response = response;
+            this.expiry = expiry;
+        }
+    }
+
+    private CompletableFuture<Timed> lookup(final Map<String, Cached> cache, final String key, RestClient client,
+                                            final Lookup lookup) {
+        Cached cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.expiry - System.nanoTime() > 0) {
+            this.cacheHits.incrementAndGet();
+            return CompletableFuture.completedFuture(new Timed(cached.response, 0));
+        }
+
+        final CompletableFuture<Timed> result = new CompletableFuture<>();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    RestClient.TelesignResponse response = lookup.request();
+                    long end = System.nanoTime();
+                    long ttl = cacheTtlNanos;
+                    if (response.ok && ttl > 0) {
+                        synchronized (cache) {
+                            cache.put(key, new Cached(response, end + ttl));
+                        }
+                    }
+                    result.complete(new Timed(response, end - start));
+                } catch (Throwable e) {
+                    // Including Errors, which would otherwise leave the screen waiting for the lookup forever.
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+        // Carry the caller's deadline and trace context to the thread the lookup runs on.
+        Runnable propagated = Deadline.propagate(task);
+        CallTracer tracer = client.getCallTracer();
+        this.executor.execute(tracer != null ? tracer.wrap(propagated) : propagated);
+        return result;
+    }
+
+    /**
+     * Checks a response as soon as it arrives, completing the decision early if it blocks.
+     */
+    private CompletableFuture<String> evaluate(CompletableFuture<Timed> lookup, final List<Rule> rules,
+                                               final String name, final CompletableFuture<String> decision) {
+        return lookup.handle(new BiFunction<Timed, Throwable, String>() {
+            @Override
+            public String apply(Timed timed, Throwable error) {
+                String reason;
+                if (error != null) {
+                    if (!failOpen) {
+                        throw error instanceof CompletionException
+                                ? (CompletionException) error : new CompletionException(error);
+                    }
+                    reason = null;
+                } else if (!timed.response.ok) {
+                    reason = failOpen ? null
+                            : String.format("%s request failed with status %d", name, timed.response.statusCode);
+                } else {
+                    reason = null;
+                    for (Rule rule : rules) {
+                        reason = rule.check(timed.response);
+                        if (reason != null) {
+                            break;
+                        }
+                    }
+                }
+                if (reason != null) {
+                    decision.complete(reason);
+                }
+                return reason;
+            }
+        });
+    }
+
+    private static String await(CompletableFuture<String> decision) throws IOException, GeneralSecurityException {
+        Deadline deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                return decision.get();
+            }
+            if (deadline.isCancelled()) {
+                throw new Deadline.CancelledException("cancelled waiting for the fraud screen");
+            }
+            return decision.get(Math.max(0, deadline.remaining(TimeUnit.NANOSECONDS)), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new Deadline.ExceededException("deadline exceeded waiting for the fraud screen");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the fraud screen");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static Rule fieldRule(final String object, final String member, final String label, String... values) {
+        final String[] blocked = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            blocked[i] = values[i].toLowerCase(Locale.ROOT);
+        }
+        return new Rule() {
+            @Override
+            public String check(RestClient.TelesignResponse response) {
+                JsonObject json = response.json;
+                if (json == null || !json.has(object) || !json.get(object).isJsonObject()) {
+                    return null;
+                }
+                JsonElement value = json.getAsJsonObject(object).get(member);
+                if (value == null || !value.isJsonPrimitive()) {
+                    return null;
+                }
+                String actual = value.getAsString().toLowerCase(Locale.ROOT);
+                for (String candidate : blocked) {
+                    if (candidate.equals(actual)) {
+                        return String.format("blocked %s %s", label, value.getAsString());
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private static Map<String, Cached> lruCache() {
+        return new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return this.size() > CACHE_SIZE;
+            }
+        };
+    }
+}
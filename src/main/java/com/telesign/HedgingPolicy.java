@@ -0,0 +1,206 @@
+package com.telesign;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controls request hedging for idempotent GET requests such as MessagingClient.status and VoiceClient.status.
+ * <p>
+ * The request is sent on the calling thread. When no response has arrived within the hedge delay, a second, freshly
+ * signed copy of it is sent through the OkHttp dispatcher and whichever response arrives first is used, the other
+ * call being cancelled. The delay is either fixed or follows a percentile of the recently observed latencies of the
+ * original requests of each resource template. Hedges are paid for from a budget that earns budgetRatio of a hedge
+ * per request, which caps the extra load hedging can put on the API.
+ */
+public class HedgingPolicy {
+
+    private static final int SAMPLE_COUNT = 256;
+    private static final int RECOMPUTE_INTERVAL = 64;
+    private static final long BUDGET_UNIT = 1000;
+    private static final long BUDGET_CAPACITY = 10 * BUDGET_UNIT;
+
+    private final long fixedDelayNanos;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long budgetEarnedPerRequest;
+
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final ConcurrentMap<String, LatencySamples> samples = new ConcurrentHashMap<>();
+
+    private HedgingPolicy(long fixedDelayNanos, double percentile, long minDelayNanos, double budgetRatio) {
+        if (budgetRatio < 0 || budgetRatio > 1) {
+            throw new IllegalArgumentException("budgetRatio must be between 0 and 1");
+        }
+        this.fixedDelayNanos = fixedDelayNanos;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelayNanos;
+        this.budgetEarnedPerRequest = Math.round(budgetRatio * BUDGET_UNIT);
+    }
+
+    /**
+     * Creates a policy that hedges requests which have not completed after a fixed delay.
+     *
+     * @param delay
+     *            The time to wait for a response before hedging.
+     * @param unit
+     *            The unit of delay.
+     * @param budgetRatio
+     *            The largest fraction of requests, between 0 and 1, that may be hedged, e.g. 0.05 for 5%.
+     * @return The hedging policy.
+     */
+    public static HedgingPolicy fixedDelay(long delay, TimeUnit unit, double budgetRatio) {
+        return new HedgingPolicy(unit.toNanos(delay), 0, 0, budgetRatio);
+    }
+
+    /**
+     * Creates a policy that hedges requests which have not completed within the given percentile of the recent
+     * latencies of their resource template, e.g. 95 for the p95.
+     *
+     * @param percentile
+     *            The latency percentile to hedge at, between 0 and 100.
+     * @param minDelay
+     *            The shortest delay to hedge at, also used until enough latencies have been observed.
+     * @param unit
+     *            The unit of minDelay.
+     * @param budgetRatio
+     *            The largest fraction of requests, between 0 and 1, that may be hedged, e.g. 0.05 for 5%.
+     * @return The hedging policy.
+     */
+    public static HedgingPolicy percentile(double percentile, long minDelay, TimeUnit unit, double budgetRatio) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        return new HedgingPolicy(-1, percentile, unit.toNanos(minDelay), budgetRatio);
+    }
+
+    /**
+     * @return The number of hedged requests sent.
+     */
+    public long getHedgesSent() {
+        return this.hedgesSent.get();
+    }
+
+    /**
+     * @return The number of hedged requests that answered before the original request.
+     */
+    public long getHedgesWon() {
+        return this.hedgesWon.get();
+    }
+
+    long hedgeDelayNanos(String resourceTemplate) {
+        if (this.fixedDelayNanos >= 0) {
+            return this.fixedDelayNanos;
+        }
+        LatencySamples latencies = this.samples.get(resourceTemplate);
+        return latencies == null ? this.minDelayNanos : Math.max(this.minDelayNanos, latencies.delayNanos);
+    }
+
+    void onRequest() {
+        long current;
+        do {
+            current = this.budget.get();
+            if (current >= BUDGET_CAPACITY) {
+                return;
+            }
+        } while (!this.budget.compareAndSet(current, Math.min(BUDGET_CAPACITY, current + this.budgetEarnedPerRequest)));
+    }
+
+    boolean tryAcquireHedge() {
+        long current;
+        do {
+            current = this.budget.get();
+            if (current < BUDGET_UNIT) {
+                return false;
+            }
+        } while (!this.budget.compareAndSet(current, current - BUDGET_UNIT));
+        this.hedgesSent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gives back the budget of a hedge that was acquired but could not be sent.
+     */
+    void refundHedge() {
+        long current;
+        do {
+            current = this.budget.get();
+        } while (!this.budget.compareAndSet(current, Math.min(BUDGET_CAPACITY, current + BUDGET_UNIT)));
+        this.hedgesSent.decrementAndGet();
+    }
+
+    /**
+     * Starts a hedge once the hedge delay has passed, unless the returned future is cancelled first.
+     */
+    ScheduledFuture<?> schedule(Runnable hedge, long delayNanos) {
+        return Timer.EXECUTOR.schedule(hedge, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void onHedgeWon() {
+        this.hedgesWon.incrementAndGet();
+    }
+
+    void recordLatency(String resourceTemplate, long nanos) {
+        if (this.fixedDelayNanos >= 0) {
+            return;
+        }
+        LatencySamples latencies = this.samples.get(resourceTemplate);
+        if (latencies == null) {
+            LatencySamples created = new LatencySamples();
+            latencies = this.samples.putIfAbsent(resourceTemplate, created);
+            if (latencies == null) {
+                latencies = created;
+            }
+        }
+        latencies.record(nanos, this.percentile);
+    }
+
+    /**
+     * The daemon thread hedges are started from, shared by every policy and only created once a request is hedged.
+     */
+    private static class Timer {
+
+        static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TeleSign hedge timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        static {
+            // Most hedges are cancelled because the original request answered in time, so do not keep them queued.
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * A ring of the most recent latencies, from which the hedge delay is recomputed every RECOMPUTE_INTERVAL
+     * samples.
+     */
+    private static class LatencySamples {
+
+        private final long[] ring = new long[SAMPLE_COUNT];
+        private long count;
+        private volatile long delayNanos = -1;
+
+        synchronized void record(long nanos, double percentile) {
+            this.ring[(int) (this.count++ % SAMPLE_COUNT)] = nanos;
+            if (this.count >= RECOMPUTE_INTERVAL && this.count % RECOMPUTE_INTERVAL == 0) {
+                int size = (int) Math.min(this.count, SAMPLE_COUNT);
+                long[] sorted = Arrays.copyOf(this.ring, size);
+                Arrays.sort(sorted);
+                int rank = (int) Math.ceil(percentile / 100.0 * size) - 1;
+                this.delayNanos = sorted[Math.max(0, Math.min(size - 1, rank))];
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.telesign;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.Map;
+
+/**
+ * Converts request parameters to Gson trees with explicit adapters for the types the SDK sends, so that building a
+ * JSON body needs neither TypeTokens nor Gson's reflective adapters, neither of which work in a native image without
+ * reflection metadata for the types involved.
+ * <p>
+ * Strings, numbers, booleans, characters, maps, iterables, object arrays and Gson elements are converted directly;
+ * map entries with a null value are left out, as Gson does by default. Any other object falls back to Gson's
+ * reflective conversion.
+ */
+final class JsonTree {
+
+    private JsonTree() {
+    }
+
+    /**
+     * Converts a value to a tree.
+     *
+     * @param value
+     *            The value, or null.
+     * @return The tree.
+     */
+    static JsonElement of(Object value) {
+        if (value == null) {
+            return JsonNull.INSTANCE;
+        } else if (value instanceof JsonElement) {
+            return (JsonElement) value;
+        } else if (value instanceof CharSequence) {
+            return new JsonPrimitive(value.toString());
+        } else if (value instanceof Number) {
+            return new JsonPrimitive((Number) value);
+        } else if (value instanceof Boolean) {
+            return new JsonPrimitive((Boolean) value);
+        } else if (value instanceof Character) {
+            return new JsonPrimitive((Character) value);
+        } else if (value instanceof Map) {
+            return object((Map<?, ?>) value);
+        } else if (value instanceof Iterable) {
+            JsonArray array = new JsonArray();
+            for (Object element : (Iterable<?>) value) {
+                array.add(of(element));
+            }
+            return array;
+        } else if (value instanceof Object[]) {
+            JsonArray array = new JsonArray();
+            for (Object element : (Object[]) value) {
+                array.add(of(element));
+            }
+            return array;
+        } else {
+            return new Gson().toJsonTree(value);
+        }
+    }
+
+    /**
+     * Converts a map to a tree in the map's iteration order.
+     *
+     * @param map
+     *            The map.
+     * @return The tree.
+     */
+    static JsonObject object(Map<?, ?> map) {
+        JsonObject object = new JsonObject();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                object.add(String.valueOf(entry.getKey()), of(entry.getValue()));
+            }
+        }
+        return object;
+    }
+}
@@ -0,0 +1,142 @@
+package com.telesign;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message compiled once from text with "%s" placeholders, e.g. "Your code is %s", its message_type and any other
+ * fixed parameters, and sent with MessagingClient.message(MessageTemplate, String, Object...).
+ * <p>
+ * The fixed fields and the text between the placeholders are percent-encoded when the template is compiled, so a send
+ * only encodes the phone number and the placeholder values and splices them in, building no parameter map. Besides
+ * "%s", the text may contain "%%" for a literal "%"; any other "%" is kept as is. Templates are immutable and can be
+ * shared between threads.
+ */
+public final class MessageTemplate {
+
+    private static final byte[] PHONE_NUMBER_FIELD = "phone_number=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MESSAGE_FIELD = "&message=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEPARATOR = {'&'};
+
+    private final String text;
+    private final String messageType;
+    private final byte[][] segments;
+    private final byte[] fixedFields;
+
+    private MessageTemplate(String text, String messageType, byte[][] segments, byte[] fixedFields) {
+        this.text = text;
+        this.messageType = messageType;
+        this.segments = segments;
+        this.fixedFields = fixedFields;
+    }
+
+    /**
+     * Compiles a template with no parameters other than its message_type.
+     *
+     * @param text
+     *            Text of the message, with "%s" for each value filled in per send.
+     * @param messageType
+     *            This parameter specifies the traffic type being sent in the message.
+     * @return The template.
+     */
+    public static MessageTemplate compile(String text, String messageType) {
+        return compile(text, messageType, null);
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param text
+     *            Text of the message, with "%s" for each value filled in per send.
+     * @param messageType
+     *            This parameter specifies the traffic type being sent in the message.
+     * @param params
+     *            (optional) Additional parameters sent with every message, other than phone_number, message and
+     *            message_type.
+     * @return The template.
+     */
+    public static MessageTemplate compile(String text, String messageType, Map<String, ? extends Object> params) {
+        List<byte[]> segments = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '%' && i + 1 < text.length() && text.charAt(i + 1) == 's') {
+                segments.add(FormEncoder.encodeComponent(segment));
+                segment.setLength(0);
+                i++;
+            } else if (ch == '%' && i + 1 < text.length() && text.charAt(i + 1) == '%') {
+                segment.append('%');
+                i++;
+            } else {
+                segment.append(ch);
+            }
+        }
+        segments.add(FormEncoder.encodeComponent(segment));
+
+        FormEncoder fixed = FormEncoder.begin();
+        fixed.field("message_type", messageType);
+        if (params != null) {
+            for (Map.Entry<String, ? extends Object> entry : params.entrySet()) {
+                String name = entry.getKey();
+                if (name.equals("phone_number") || name.equals("message") || name.equals("message_type")) {
+                    throw new IllegalArgumentException(String.format("%s is set per send", name));
+                }
+                fixed.field(name, entry.getValue());
+            }
+        }
+
+        return new MessageTemplate(text, messageType, segments.toArray(new byte[segments.size()][]), fixed.finish().bytes());
+    }
+
+    /**
+     * @return The text the template was compiled from.
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * @return The message_type messages are sent with.
+     */
+    public String getMessageType() {
+        return this.messageType;
+    }
+
+    /**
+     * @return The number of "%s" placeholders in the text.
+     */
+    public int getPlaceholderCount() {
+        return this.segments.length - 1;
+    }
+
+    /**
+     * Encodes the body of a message to a phone number.
+     *
+     * @param phoneNumber
+     *            The phone number to send the message to.
+     * @param values
+     *            The value of each placeholder, in order, each a CharSequence or boxed primitive.
+     * @return The form body.
+     */
+    FormEncoder.Body encode(String phoneNumber, Object... values) {
+        if (values.length != this.segments.length - 1) {
+            throw new IllegalArgumentException(String.format("template takes %d values but got %d",
+                    this.segments.length - 1, values.length));
+        }
+        if (phoneNumber == null) {
+            throw new IllegalArgumentException("value of phone_number is null");
+        }
+        FormEncoder encoder = FormEncoder.begin();
+        encoder.appendEncoded(PHONE_NUMBER_FIELD).appendValue(phoneNumber).appendEncoded(MESSAGE_FIELD)
+                .appendEncoded(this.segments[0]);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                throw new IllegalArgumentException(String.format("value %d is null", i));
+            }
+            encoder.appendValue(values[i]).appendEncoded(this.segments[i + 1]);
+        }
+        return encoder.appendEncoded(SEPARATOR).appendEncoded(this.fixedFields).finish();
+    }
+}
@@ -3,8 +3,9 @@ package com.telesign;
 import java.io.IOException;
 import java.net.Proxy;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * TeleSign's Messaging API allows you to easily send SMS messages. You can send alerts, reminders, and notifications,
@@ -12,8 +13,10 @@ import java.util.Map;
  */
 public class MessagingClient extends RestClient {
 
-    private static final String MESSAGING_RESOURCE = "/v1/messaging";
-    private static final String MESSAGING_STATUS_RESOURCE = "/v1/messaging/%s";
+    private static final ResourceRoute MESSAGING_ROUTE = ResourceRoute.compile("/v1/messaging");
+    private static final ResourceRoute MESSAGING_STATUS_ROUTE = ResourceRoute.compile("/v1/messaging/{}");
+
+    private volatile DuplicateSuppressor duplicateSuppressor;
 
     /**
      * Constructor for MessagingClient.
@@ -108,6 +111,18 @@ public class MessagingClient extends RestClient {
         super(customerId, apiKey, restEndpoint, connectTimeout, readTimeout, writeTimeout, proxy, proxyUsername, proxyPassword, source, sdkVersionOrigin, sdkVersionDependency);
     }
 
+    /**
+     * Constructor for a MessagingClient that sends requests on behalf of a tenant through the connection pool of another
+     * client.
+     * @param transport
+     *          The client whose connection pool and dispatcher are shared.
+     * @param tenant
+     *          The tenant to send requests on behalf of, from a TenantRegistry.
+     */
+    public MessagingClient(RestClient transport, TenantRegistry.Tenant tenant) {
+        super(transport, tenant);
+    }
+
     /**
      * Send a message to the target phone_number.
      * <p>
@@ -127,15 +142,130 @@ public class MessagingClient extends RestClient {
      */
     public TelesignResponse message(String phoneNumber, String message, String messageType, Map<String, String> params) throws IOException, GeneralSecurityException {
 
-        if (params == null) {
-            params = new HashMap<>();
+        return this.message(new MessageRequest.Builder(phoneNumber, message, messageType).params(params).build());
+    }
+
+    /**
+     * Send a message built as an immutable MessageRequest, which may be shared between threads and sent again
+     * without being encoded again.
+     * <p>
+     * See https://developer.telesign.com/docs/messaging-api for detailed API documentation.
+     *
+     * @param request
+     *            The message to send.
+     * @return The TelesignResponse for the request.
+     * @throws IOException if the HTTP request fails.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public TelesignResponse message(MessageRequest request) throws IOException, GeneralSecurityException {
+
+        DuplicateSuppressor duplicateSuppressor = this.duplicateSuppressor;
+        return this.send(request.getPhoneNumber(), request.getMessageType(), request.body(), duplicateSuppressor,
+                duplicateSuppressor != null ? request.idempotencyKey() : null);
+    }
+
+    /**
+     * Send a message with a given idempotency key, e.g. one logged with a queued request so that every attempt to
+     * send it carries the same key.
+     */
+    TelesignResponse message(MessageRequest request, String idempotencyKey) throws IOException, GeneralSecurityException {
+
+        return this.send(request.getPhoneNumber(), request.getMessageType(), request.body(), this.duplicateSuppressor,
+                idempotencyKey);
+    }
+
+    /**
+     * Send a message compiled from a template to the target phone_number, encoding only the phone number and the
+     * template's placeholder values.
+     * <p>
+     * See https://developer.telesign.com/docs/messaging-api for detailed API documentation.
+     *
+     * @param template
+     *            The template of the message.
+     * @param phoneNumber
+     *            The phone number to send the message to.
+     * @param values
+     *            The value of each of the template's placeholders, in order.
+     * @return The TelesignResponse for the request.
+     * @throws IOException if the HTTP request fails.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public TelesignResponse message(MessageTemplate template, String phoneNumber, Object... values) throws IOException, GeneralSecurityException {
+
+        FormEncoder.Body body = template.encode(phoneNumber, values);
+
+        DuplicateSuppressor duplicateSuppressor = this.duplicateSuppressor;
+        return this.send(phoneNumber, template.getMessageType(), body, duplicateSuppressor,
+                duplicateSuppressor != null ? DuplicateSuppressor.idempotencyKey(phoneNumber, body.bytes()) : null);
+    }
+
+    /**
+     * Posts an encoded message, through the duplicate suppressor if one is set, and records it in the audit log if
+     * one is set. A duplicate answered by the suppressor is not counted by the flood protector, and is recorded with
+     * kind "duplicate" rather than as another message.
+     */
+    private TelesignResponse send(final String phoneNumber, String messageType, final FormEncoder.Body body,
+                                  DuplicateSuppressor duplicateSuppressor, String idempotencyKey)
+            throws IOException, GeneralSecurityException {
+
+        final FloodProtector floodProtector = this.getFloodProtector();
+        AuditLog auditLog = this.getAuditLog();
+        TelesignResponse response;
+        final AtomicBoolean sent = new AtomicBoolean();
+        final Map<String, String> headers = idempotencyKey != null
+                ? Collections.singletonMap(DuplicateSuppressor.IDEMPOTENCY_KEY_HEADER, idempotencyKey) : null;
+        try {
+            if (duplicateSuppressor == null) {
+                if (floodProtector != null) {
+                    floodProtector.acquire(phoneNumber);
+                }
+                response = this.post(MESSAGING_ROUTE.path(), body, headers);
+            } else {
+                response = duplicateSuppressor.send(idempotencyKey, new DuplicateSuppressor.Send() {
+                    @Override
+                    public TelesignResponse send() throws IOException, GeneralSecurityException {
+                        if (floodProtector != null) {
+                            floodProtector.acquire(phoneNumber);
+                        }
+                        sent.set(true);
+                        return post(MESSAGING_ROUTE.path(), body, headers);
+                    }
+                });
+            }
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            // Nothing was sent.
+            throw e;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            if (auditLog != null) {
+                boolean duplicate = duplicateSuppressor != null && !sent.get();
+                auditLog.recordFailure(duplicate ? "duplicate" : "message", phoneNumber, messageType, e);
+            }
+            throw e;
         }
 
-        params.put("phone_number", phoneNumber);
-        params.put("message", message);
-        params.put("message_type", messageType);
+        if (auditLog != null) {
+            boolean duplicate = duplicateSuppressor != null && !sent.get();
+            auditLog.record(duplicate ? "duplicate" : "message", phoneNumber, messageType, response);
+        }
+        return response;
+    }
 
-        return this.post(MESSAGING_RESOURCE, params);
+    /**
+     * Sets the suppressor that attaches an idempotency key to every message and returns the original response for
+     * a duplicate of a message sent within its window, or null to send every message.
+     *
+     * @param duplicateSuppressor
+     *            The duplicate suppressor to use.
+     */
+    public void setDuplicateSuppressor(DuplicateSuppressor duplicateSuppressor) {
+        this.duplicateSuppressor = duplicateSuppressor;
+    }
+
+    /**
+     * @return The duplicate suppressor messages are sent through, or null if none is set.
+     */
+    public DuplicateSuppressor getDuplicateSuppressor() {
+        return this.duplicateSuppressor;
     }
 
     /**
@@ -153,6 +283,6 @@ public class MessagingClient extends RestClient {
      */
     public TelesignResponse status(String referenceId, Map<String, String> params) throws IOException, GeneralSecurityException {
 
-        return this.get(String.format(MESSAGING_STATUS_RESOURCE, referenceId), params);
+        return this.get(MESSAGING_STATUS_ROUTE.path(referenceId), params);
     }
 }
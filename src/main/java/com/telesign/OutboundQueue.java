@@ -0,0 +1,676 @@
+package com.telesign;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent queue in front of MessagingClient.message and VoiceClient.call, so that a notification accepted by
+ * the application is not lost when it crashes, and is not sent again once TeleSign has accepted it.
+ * <p>
+ * Every enqueued request is appended to a write-ahead log of memory-mapped segment files and handed to sender
+ * workers. The log is forced to disk every flushInterval, in one batch for all the requests appended since, so
+ * enqueueing costs a memory copy rather than an fsync. When TeleSign accepts a request, or rejects it for good, its
+ * sequence number, status code and reference_id are appended to an acknowledgement log. Requests that fail with a
+ * network error, 429 or 5xx are retried with exponential back-off; any other failure is acknowledged as failed.
+ * <p>
+ * On construction, the logs in the directory are scanned, a torn record at the end of the log is discarded, and
+ * every request without an acknowledgement is sent again. Segments whose requests are all acknowledged are deleted.
+ * <p>
+ * A request whose outcome is unknown, e.g. one that timed out after TeleSign accepted it, or one accepted just
+ * before a crash that lost its acknowledgement, is sent again. So that TeleSign can recognise it as a duplicate,
+ * every request is logged with an idempotency key of its own, sent in the Idempotency-Key header on every attempt.
+ * The key is logged under the reserved parameter name idempotency_key.
+ */
+public class OutboundQueue {
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 1;
+    private static final byte KIND_MESSAGE = 1;
+    private static final byte KIND_CALL = 2;
+    private static final String SEGMENT_PREFIX = "outbound-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ACK_FILE = "acks.log";
+    private static final String IDEMPOTENCY_KEY_FIELD = "idempotency_key";
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Queued once for each worker on close, to wake the workers waiting for a request.
+     */
+    private static final Entry STOP = new Entry(-1, (byte) 0, null, null);
+
+    private final File directory;
+    private final MessagingClient messagingClient;
+    private final VoiceClient voiceClient;
+    private final int segmentSize;
+    private final Gson gson = new Gson();
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private long nextSequence;
+    // Written through RandomAccessFile rather than a FileChannel, which closes when a writing worker is interrupted.
+    private RandomAccessFile ackLog;
+    private volatile boolean dirty;
+    private volatile boolean closed;
+
+    private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * Constructor for OutboundQueue, with 4 sender workers, 64 MB segments and a 10 ms flush interval.
+     *
+     * @param directory
+     *            The directory the logs are kept in, created if needed.
+     * @param messagingClient
+     *            (optional) The client messages are sent with.
+     * @param voiceClient
+     *            (optional) The client calls are placed with.
+     * @throws IOException if the logs cannot be opened or recovered.
+     */
+    public OutboundQueue(File directory, MessagingClient messagingClient, VoiceClient voiceClient)
+            throws IOException {
+        this(directory, messagingClient, voiceClient, 4, 64 * 1024 * 1024, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor for OutboundQueue.
+     *
+     * @param directory
+     *            The directory the logs are kept in, created if needed.
+     * @param messagingClient
+     *            (optional) The client messages are sent with.
+     * @param voiceClient
+     *            (optional) The client calls are placed with.
+     * @param workers
+     *            The number of threads sending requests.
+     * @param segmentSize
+     *            The size in bytes of each log segment file.
+     * @param flushInterval
+     *            How often the logs are forced to disk.
+     * @param unit
+     *            The unit of flushInterval.
+     * @throws IOException if the logs cannot be opened or recovered.
+     */
+    public OutboundQueue(File directory, MessagingClient messagingClient, VoiceClient voiceClient, int workers,
+                         int segmentSize, long flushInterval, TimeUnit unit) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        this.directory = directory;
+        this.messagingClient = messagingClient;
+        this.voiceClient = voiceClient;
+        this.segmentSize = segmentSize;
+
+        this.recover();
+
+        this.scheduler = new ScheduledThreadPoolExecutor(1, daemonThreads("TeleSign outbound queue flush"));
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    // Retried on the next interval; close reports a persistent failure.
+                }
+            }
+        }, flushInterval, flushInterval, unit);
+
+        ThreadFactory workerThreads = daemonThreads("TeleSign outbound queue sender");
+        for (int i = 0; i < workers; i++) {
+            Thread worker = workerThreads.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            });
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Appends a message to the log and queues it to be sent with MessagingClient.message.
+     *
+     * @param phoneNumber
+     *            The phone number to send the message to.
+     * @param message
+     *            The message to send.
+     * @param messageType
+     *            The type of the message.
+     * @param params
+     *            (optional) Additional parameters for the request.
+     * @return The sequence number of the request in the log.
+     * @throws IOException if the request cannot be appended to the log.
+     * @throws IllegalArgumentException if phoneNumber, message or messageType is null.
+     */
+    public long enqueueMessage(String phoneNumber, String message, String messageType, Map<String, String> params)
+            throws IOException {
+        if (this.messagingClient == null) {
+            throw new IllegalStateException("no MessagingClient was given");
+        }
+        return this.enqueue(KIND_MESSAGE, phoneNumber, message, messageType, params);
+    }
+
+    /**
+     * Appends a call to the log and queues it to be placed with VoiceClient.call.
+     *
+     * @param phoneNumber
+     *            The phone number to call.
+     * @param message
+     *            The message to speak.
+     * @param messageType
+     *            The type of the message.
+     * @param params
+     *            (optional) Additional parameters for the request.
+     * @return The sequence number of the request in the log.
+     * @throws IOException if the request cannot be appended to the log.
+     * @throws IllegalArgumentException if phoneNumber, message or messageType is null.
+     */
+    public long enqueueCall(String phoneNumber, String message, String messageType, Map<String, String> params)
+            throws IOException {
+        if (this.voiceClient == null) {
+            throw new IllegalStateException("no VoiceClient was given");
+        }
+        return this.enqueue(KIND_CALL, phoneNumber, message, messageType, params);
+    }
+
+    /**
+     * Forces every appended request and acknowledgement to disk now, rather than at the next flush interval.
+     *
+     * @throws IOException if the logs cannot be written.
+     */
+    public void flush() throws IOException {
+        if (!this.dirty) {
+            return;
+        }
+        this.dirty = false;
+        List<Segment> toForce;
+        RandomAccessFile acks;
+        synchronized (this) {
+            toForce = new ArrayList<>(this.segments.values());
+            acks = this.ackLog;
+        }
+        try {
+            for (Segment segment : toForce) {
+                segment.force();
+            }
+            acks.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            this.dirty = true;
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of requests appended but not yet acknowledged.
+     */
+    public int getPendingCount() {
+        return this.unacknowledged.get();
+    }
+
+    /**
+     * @return The number of requests TeleSign accepted.
+     */
+    public long getSentCount() {
+        return this.sent.get();
+    }
+
+    /**
+     * @return The number of requests TeleSign rejected with a status code that is not retried, or that could not be
+     *         sent at all.
+     */
+    public long getFailedCount() {
+        return this.failed.get();
+    }
+
+    /**
+     * @return The number of unacknowledged requests found in the log on construction.
+     */
+    public long getRecoveredCount() {
+        return this.recovered.get();
+    }
+
+    /**
+     * Stops the sender workers, waiting up to 30 seconds for the requests in flight, and forces the logs to disk.
+     *
+     * @throws IOException if the logs cannot be written.
+     * @see #close(long, TimeUnit)
+     */
+    public void close() throws IOException {
+        close(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the sender workers and forces the logs to disk. No further request is taken off the queue, and the
+     * requests in flight are given the timeout to complete and be acknowledged; a worker still sending after that is
+     * interrupted and no longer waited for, abandoning its request. Requests that were not acknowledged, including
+     * abandoned ones that TeleSign may have accepted, are sent when the queue is next constructed on the same
+     * directory.
+     *
+     * @param timeout
+     *            How long to wait for the requests in flight.
+     * @param unit
+     *            The unit of timeout.
+     * @throws IOException if the logs cannot be written.
+     */
+    public void close(long timeout, TimeUnit unit) throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.scheduler.shutdownNow();
+        for (int i = 0; i < this.workers.size(); i++) {
+            this.pending.add(STOP);
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (Thread worker : this.workers) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Thread worker : this.workers) {
+            // The acknowledgement of a request still in flight fails once the log is closed, so it is sent again.
+            worker.interrupt();
+        }
+        this.dirty = true;
+        this.flush();
+        synchronized (this) {
+            for (Segment segment : this.segments.values()) {
+                segment.close();
+            }
+            this.ackLog.close();
+        }
+    }
+
+    private long enqueue(byte kind, String phoneNumber, String message, String messageType,
+                         Map<String, String> params) throws IOException {
+        if (this.closed) {
+            throw new IllegalStateException("queue is closed");
+        }
+        if (phoneNumber == null || message == null || messageType == null) {
+            throw new IllegalArgumentException("phoneNumber, message and messageType are required");
+        }
+        Map<String, String> request = new LinkedHashMap<>();
+        if (params != null) {
+            request.putAll(params);
+        }
+        request.put("phone_number", phoneNumber);
+        request.put("message", message);
+        request.put("message_type", messageType);
+        request.put(IDEMPOTENCY_KEY_FIELD, UUID.randomUUID().toString());
+        byte[] payload = this.gson.toJson(JsonTree.object(request)).getBytes(StandardCharsets.UTF_8);
+        if (HEADER_SIZE + payload.length > this.segmentSize) {
+            throw new IllegalArgumentException("request does not fit in a log segment");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        Entry entry;
+        synchronized (this) {
+            if (this.active.position + HEADER_SIZE + payload.length > this.segmentSize) {
+                Segment full = this.active;
+                full.force();
+                this.active = this.openSegment(this.nextSequence);
+                if (full.unacknowledged == 0) {
+                    this.segments.remove(full.firstSequence);
+                    full.delete();
+                }
+            }
+            long sequence = this.nextSequence++;
+            this.active.append(sequence, kind, payload, (int) crc.getValue());
+            entry = new Entry(sequence, kind, request, this.active);
+        }
+        this.dirty = true;
+        this.unacknowledged.incrementAndGet();
+        this.pending.add(entry);
+        return entry.sequence;
+    }
+
+    private void work() {
+        while (!this.closed) {
+            Entry entry;
+            try {
+                entry = this.pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entry == STOP || this.closed) {
+                // Requests left in the queue are sent when it is next constructed.
+                return;
+            }
+            this.send(entry);
+        }
+    }
+
+    private void send(final Entry entry) {
+        Map<String, String> params = new HashMap<>(entry.request);
+        String phoneNumber = params.remove("phone_number");
+        String message = params.remove("message");
+        String messageType = params.remove("message_type");
+        String idempotencyKey = params.remove(IDEMPOTENCY_KEY_FIELD);
+        if (idempotencyKey == null) {
+            // Logged by a version without keys; derived from the request, so that it is the same on every attempt.
+            idempotencyKey = DuplicateSuppressor.idempotencyKey(phoneNumber, entry.request);
+        }
+
+        RestClient.TelesignResponse response = null;
+        try {
+            response = entry.kind == KIND_MESSAGE
+                    ? this.messagingClient.message(new MessageRequest.Builder(phoneNumber, message, messageType)
+                            .params(params).build(), idempotencyKey)
+                    : this.voiceClient.call(new VoiceRequest.Builder(phoneNumber, message, messageType)
+                            .params(params).build(), idempotencyKey);
+        } catch (GeneralSecurityException | FloodProtector.FloodLimitExceededException | RuntimeException e) {
+            // None of these succeeds on a retry, e.g. a request logged without a required field.
+            this.acknowledge(entry, 0, null);
+            this.failed.incrementAndGet();
+            return;
+        } catch (IOException e) {
+            // Network errors, and a call interrupted when closing the queue timed out, are retried below.
+        }
+
+        if (response != null && response.statusCode != 429 && response.statusCode < 500) {
+            JsonElement reference = response.json.get("reference_id");
+            String referenceId = reference != null && reference.isJsonPrimitive() ? reference.getAsString() : null;
+            this.acknowledge(entry, response.statusCode, referenceId);
+            (response.ok ? this.sent : this.failed).incrementAndGet();
+            return;
+        }
+
+        if (this.closed) {
+            return;
+        }
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, 100L << Math.min(entry.attempts++, 16));
+        this.scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pending.add(entry);
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    private void acknowledge(Entry entry, int statusCode, String referenceId) {
+        byte[] reference = referenceId == null ? new byte[0] : referenceId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(8 + 4 + 2 + reference.length);
+        record.putLong(entry.sequence).putInt(statusCode).putShort((short) reference.length).put(reference);
+
+        synchronized (this) {
+            try {
+                this.ackLog.write(record.array());
+            } catch (IOException e) {
+                // The request is sent again after a restart, which is the best that can be done without a log.
+                return;
+            }
+            this.dirty = true;
+            this.unacknowledged.decrementAndGet();
+
+            Segment segment = entry.segment;
+            if (--segment.unacknowledged == 0 && segment != this.active) {
+                this.segments.remove(segment.firstSequence);
+                segment.delete();
+            }
+        }
+    }
+
+    private synchronized void recover() throws IOException {
+        File[] files = this.directory.listFiles();
+        TreeMap<Long, File> segmentFiles = new TreeMap<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segmentFiles.put(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+                }
+            }
+        }
+
+        File ackFile = new File(this.directory, ACK_FILE);
+        Map<Long, byte[]> acknowledged = readAcknowledgements(ackFile);
+
+        List<Entry> replay = new ArrayList<>();
+        for (Map.Entry<Long, File> file : segmentFiles.entrySet()) {
+            Segment segment = new Segment(file.getKey(), file.getValue(), this.segmentSize);
+            this.segments.put(segment.firstSequence, segment);
+            this.nextSequence = Math.max(this.nextSequence, segment.firstSequence);
+            this.active = segment;
+
+            ByteBuffer buffer = segment.buffer;
+            while (segment.position + HEADER_SIZE <= this.segmentSize) {
+                int length = buffer.getInt(segment.position);
+                if (length <= 0 || segment.position + HEADER_SIZE + length > this.segmentSize) {
+                    break;
+                }
+                int checksum = buffer.getInt(segment.position + 4);
+                long sequence = buffer.getLong(segment.position + 8);
+                byte kind = buffer.get(segment.position + 16);
+                byte[] payload = new byte[length];
+                ByteBuffer slice = buffer.duplicate();
+                slice.position(segment.position + HEADER_SIZE);
+                slice.get(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    // A torn write from a crash; nothing after it was acknowledged to the caller as durable.
+                    break;
+                }
+
+                segment.position += HEADER_SIZE + length;
+                this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+                if (!acknowledged.containsKey(sequence)) {
+                    Map<String, String> request = parseParams(new String(payload, StandardCharsets.UTF_8));
+                    replay.add(new Entry(sequence, kind, request, segment));
+                    segment.unacknowledged++;
+                }
+            }
+            // Zero the rest of the segment so a torn record is not mistaken for a valid one later.
+            for (int i = segment.position; i < Math.min(this.segmentSize, segment.position + HEADER_SIZE); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        // Drop the segments that are fully acknowledged, except the one appends continue in.
+        for (Segment segment : new ArrayList<>(this.segments.values())) {
+            if (segment.unacknowledged == 0 && segment != this.active) {
+                this.segments.remove(segment.firstSequence);
+                segment.delete();
+            }
+        }
+        if (this.active == null) {
+            this.active = this.openSegment(this.nextSequence);
+        }
+
+        this.rewriteAcknowledgements(ackFile, acknowledged);
+
+        this.recovered.set(replay.size());
+        this.unacknowledged.set(replay.size());
+        this.pending.addAll(replay);
+    }
+
+    /**
+     * Reads the parameters of a logged request, in the order they were written, without a reflective TypeToken.
+     */
+    private static Map<String, String> parseParams(String json) {
+        Map<String, String> request = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : JsonParser.parseString(json).getAsJsonObject().entrySet()) {
+            request.put(entry.getKey(), entry.getValue().isJsonNull() ? null : entry.getValue().getAsString());
+        }
+        return request;
+    }
+
+    private static Map<Long, byte[]> readAcknowledgements(File ackFile) throws IOException {
+        Map<Long, byte[]> acknowledged = new HashMap<>();
+        if (!ackFile.exists()) {
+            return acknowledged;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(ackFile, "r"); FileChannel channel = file.getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= 8 + 4 + 2) {
+                int start = buffer.position();
+                long sequence = buffer.getLong();
+                buffer.getInt();
+                int length = buffer.getShort() & 0xFFFF;
+                if (buffer.remaining() < length) {
+                    break;
+                }
+                byte[] record = new byte[8 + 4 + 2 + length];
+                buffer.position(start);
+                buffer.get(record);
+                acknowledged.put(sequence, record);
+            }
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Starts a fresh acknowledgement log holding only the acknowledgements of requests still in the log segments.
+     */
+    private void rewriteAcknowledgements(File ackFile, Map<Long, byte[]> acknowledged) throws IOException {
+        long firstSequence = this.segments.firstKey();
+        File temporary = new File(this.directory, ACK_FILE + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temporary, "rw")) {
+            file.setLength(0);
+            for (byte[] record : new TreeMap<>(acknowledged).tailMap(firstSequence).values()) {
+                file.write(record);
+            }
+            file.getFD().sync();
+        }
+        if (!temporary.renameTo(ackFile)) {
+            if (!ackFile.delete() || !temporary.renameTo(ackFile)) {
+                throw new IOException("cannot replace " + ackFile);
+            }
+        }
+
+        this.ackLog = new RandomAccessFile(ackFile, "rw");
+        this.ackLog.seek(this.ackLog.length());
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        File file = new File(this.directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence,
+                SEGMENT_SUFFIX));
+        Segment segment = new Segment(firstSequence, file, this.segmentSize);
+        this.segments.put(firstSequence, segment);
+        return segment;
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * A memory-mapped log file holding the requests from firstSequence on.
+     */
+    private static class Segment {
+
+        final long firstSequence;
+        final File file;
+        final RandomAccessFile raf;
+        final MappedByteBuffer buffer;
+        int position;
+        int unacknowledged;
+
+        Segment(long firstSequence, File file, int size) throws IOException {
+            this.firstSequence = firstSequence;
+            this.file = file;
+            try {
+                this.raf = new RandomAccessFile(file, "rw");
+            } catch (FileNotFoundException e) {
+                throw new IOException("cannot open " + file, e);
+            }
+            this.buffer = this.raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        void append(long sequence, byte kind, byte[] payload, int checksum) {
+            ByteBuffer slice = this.buffer.duplicate();
+            slice.position(this.position + 4);
+            slice.putInt(checksum).putLong(sequence).put(kind).put(payload);
+            // The length is written last, so a reader never sees a record before its contents.
+            this.buffer.putInt(this.position, payload.length);
+            this.position += HEADER_SIZE + payload.length;
+            this.unacknowledged++;
+        }
+
+        void force() {
+            this.buffer.force();
+        }
+
+        void close() throws IOException {
+            this.raf.close();
+        }
+
+        void delete() {
+            try {
+                this.raf.close();
+            } catch (IOException e) {
+                // The file is deleted regardless.
+            }
+            if (!this.file.delete()) {
+                this.file.deleteOnExit();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final long sequence;
+        final byte kind;
+        final Map<String, String> request;
+        final Segment segment;
+        int attempts;
+
+        Entry(long sequence, byte kind, Map<String, String> request, Segment segment) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.request = request;
+            this.segment = segment;
+        }
+    }
+}
@@ -4,14 +4,11 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.Proxy;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
 import java.util.Map;
 
 import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
-import com.google.gson.Gson;
 
 /**
  * A set of APIs that deliver deep phone number data attributes that help optimize the end user
@@ -19,7 +16,7 @@ import com.google.gson.Gson;
  */
 public class PhoneIdClient extends RestClient {
 
-    private static final String PHONEID_RESOURCE = "/v1/phoneid/%s";
+    private static final ResourceRoute PHONEID_ROUTE = ResourceRoute.compile("/v1/phoneid/{}");
     
     /**
      * ; charset=utf-8 
@@ -119,6 +116,18 @@ public class PhoneIdClient extends RestClient {
         super(customerId, apiKey, restEndpoint, connectTimeout, readTimeout, writeTimeout, proxy, proxyUsername, proxyPassword, source, sdkVersionOrigin, sdkVersionDependency);
     }
 
+    /**
+     * Constructor for a PhoneIdClient that sends requests on behalf of a tenant through the connection pool of another
+     * client.
+     * @param transport
+     *          The client whose connection pool and dispatcher are shared.
+     * @param tenant
+     *          The tenant to send requests on behalf of, from a TenantRegistry.
+     */
+    public PhoneIdClient(RestClient transport, TenantRegistry.Tenant tenant) {
+        super(transport, tenant);
+    }
+
     /**
      * The PhoneID API provides a cleansed phone number, phone type, and telecom carrier information to determine the
      * best communication method - SMS or voice.
@@ -135,7 +144,7 @@ public class PhoneIdClient extends RestClient {
      */
     public TelesignResponse phoneid(String phoneNumber, Map<String, ? extends Object> params) throws IOException, GeneralSecurityException {
 
-        return this.post(String.format(PHONEID_RESOURCE, phoneNumber), params, JSON_CONTENT_TYPE);
+        return this.post(PHONEID_ROUTE.path(phoneNumber), params, JSON_CONTENT_TYPE, null, null);
     }
 
     /**
@@ -152,21 +161,17 @@ public class PhoneIdClient extends RestClient {
     @Override
     public RequestBody createRequestBody(Map<String, ? extends Object> params, String contentType) throws UnsupportedEncodingException, IOException {
         if (contentType.equals(JSON_CONTENT_TYPE)) {
-            Gson gson = new Gson();
+            // Built with explicit adapters rather than TypeTokens so no reflection is needed, e.g. in a native image.
             JsonObject jsonObject = new JsonObject();
-            HashMap<String, Object> paramsCopy = new HashMap<>(params);
-
-            if (paramsCopy.containsKey("addons")) {
-                jsonObject.add("addons", gson.toJsonTree(
-                        paramsCopy.remove("addons"),
-                        new TypeToken<HashMap<String, HashMap<String, String>>>() {
-                        }.getType()));
-            }
-
-            JsonObject paramsObject = gson.toJsonTree(params, new TypeToken<HashMap<String, String>>() {
-            }.getType()).getAsJsonObject();
-            for (String key : paramsCopy.keySet()) {
-                jsonObject.add(key, paramsObject.get(key));
+            if (params != null) {
+                if (params.containsKey("addons")) {
+                    jsonObject.add("addons", JsonTree.of(params.get("addons")));
+                }
+                for (Map.Entry<String, ? extends Object> entry : params.entrySet()) {
+                    if (!entry.getKey().equals("addons")) {
+                        jsonObject.add(entry.getKey(), JsonTree.of(entry.getValue()));
+                    }
+                }
             }
 
             String jsonString = jsonObject.toString();
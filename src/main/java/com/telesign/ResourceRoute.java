@@ -0,0 +1,168 @@
+package com.telesign;
+
+import okhttp3.HttpUrl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A REST API resource compiled once from a template such as "/v1/messaging/{}", in which each "{}" segment is filled
+ * in per request, e.g. with a reference ID.
+ * <p>
+ * The URL of the resource's literal prefix is parsed once per endpoint and cached, so a request only appends its
+ * path segments, percent-encoded by OkHttp, instead of formatting and parsing the whole URL. The resource string the
+ * request is signed with is the path as sent, and the template is used as is for the per-resource keys of the
+ * concurrency limiter, bulkhead and hedging policy.
+ */
+final class ResourceRoute {
+
+    private static final String PARAMETER = "{}";
+
+    private final String template;
+    private final String[] segments;
+    private final String literalPrefix;
+    private final int prefixSegments;
+    private final int parameters;
+    private final ConcurrentMap<String, HttpUrl> prefixUrls = new ConcurrentHashMap<>();
+
+    private ResourceRoute(String template) {
+        this.template = template;
+        this.segments = template.substring(1).split("/", -1);
+        int prefix = 0;
+        while (prefix < this.segments.length && !this.segments[prefix].equals(PARAMETER)) {
+            prefix++;
+        }
+        this.prefixSegments = prefix;
+        StringBuilder literalPrefix = new StringBuilder();
+        for (int i = 0; i < prefix; i++) {
+            literalPrefix.append('/').append(this.segments[i]);
+        }
+        this.literalPrefix = literalPrefix.toString();
+        int parameters = 0;
+        for (String segment : this.segments) {
+            if (segment.equals(PARAMETER)) {
+                parameters++;
+            }
+        }
+        this.parameters = parameters;
+    }
+
+    /**
+     * Compiles a resource template.
+     *
+     * @param template
+     *            The resource, starting with "/", with "{}" for each segment filled in per request.
+     * @return The route.
+     */
+    static ResourceRoute compile(String template) {
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("resource template must start with /");
+        }
+        return new ResourceRoute(template);
+    }
+
+    /**
+     * Fills in the route's parameters.
+     *
+     * @param args
+     *            The value of each "{}" segment, in order.
+     * @return The resource.
+     */
+    Path path(String... args) {
+        return new Path(this, args);
+    }
+
+    /**
+     * A resource to send a request to: a compiled route with its parameters, or a resource given as a string.
+     */
+    static final class Path {
+
+        private final ResourceRoute route;
+        private final String[] args;
+        private final String resource;
+
+        private Path(ResourceRoute route, String[] args) {
+            if (args.length != route.parameters) {
+                throw new IllegalArgumentException(String.format("%s takes %d parameters", route.template,
+                        route.parameters));
+            }
+            this.route = route;
+            this.args = args;
+            this.resource = null;
+        }
+
+        private Path(String resource) {
+            this.route = null;
+            this.args = null;
+            this.resource = resource;
+        }
+
+        /**
+         * A resource given as a string, whose URL is parsed per request.
+         *
+         * @param resource
+         *            The partial resource URI.
+         * @return The path.
+         */
+        static Path of(String resource) {
+            return new Path(resource);
+        }
+
+        /**
+         * @return The resource template, the key requests to the resource share.
+         */
+        String template() {
+            return this.route != null ? this.route.template : RestClient.resourceTemplate(this.resource);
+        }
+
+        /**
+         * @param baseUrl
+         *            The URL of the endpoint.
+         * @return The URL of the resource on the endpoint.
+         */
+        HttpUrl url(String baseUrl) {
+            if (this.route == null) {
+                return HttpUrl.parse(baseUrl + this.resource);
+            }
+            HttpUrl prefix = this.route.prefixUrls.get(baseUrl);
+            if (prefix == null) {
+                prefix = HttpUrl.parse(baseUrl + this.route.literalPrefix);
+                if (prefix == null) {
+                    return null;
+                }
+                this.route.prefixUrls.putIfAbsent(baseUrl, prefix);
+            }
+            if (this.route.prefixSegments == this.route.segments.length) {
+                return prefix;
+            }
+            HttpUrl.Builder builder = prefix.newBuilder();
+            int arg = 0;
+            for (int i = this.route.prefixSegments; i < this.route.segments.length; i++) {
+                String segment = this.route.segments[i];
+                builder.addPathSegment(segment.equals(PARAMETER) ? this.args[arg++] : segment);
+            }
+            return builder.build();
+        }
+
+        /**
+         * @param url
+         *            The URL returned by url.
+         * @return The resource string the request is signed with.
+         */
+        String resource(HttpUrl url) {
+            if (this.route == null) {
+                return this.resource;
+            }
+            if (this.route.prefixSegments == this.route.segments.length) {
+                return this.route.template;
+            }
+            List<String> sent = url.encodedPathSegments();
+            StringBuilder resource = new StringBuilder(this.route.literalPrefix);
+            for (int i = sent.size() - this.route.segments.length + this.route.prefixSegments; i < sent.size(); i++) {
+                resource.append('/').append(sent.get(i));
+            }
+            return resource.toString();
+        }
+    }
+}
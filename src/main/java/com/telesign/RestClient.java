@@ -5,8 +5,11 @@ import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import okhttp3.Authenticator;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
 import okhttp3.Credentials;
-import okhttp3.FormBody;
+import okhttp3.Dns;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttp;
@@ -14,17 +17,23 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 import okhttp3.Route;
 import okio.Buffer;
+import okio.BufferedSource;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
 import java.net.Proxy;
+import java.net.UnknownHostException;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
@@ -32,9 +41,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The TeleSign RestClient is a generic HTTP REST client that can be extended to
@@ -44,7 +58,39 @@ import java.util.concurrent.TimeUnit;
  */
 public class RestClient {
 
-	private static final String SDK_VERSION = RestClient.class.getPackage().getImplementationVersion();
+	/**
+	 * The SDK version, looked up when the first client is created rather than when the class is initialized, which a
+	 * native image may do at build time. It is read from the version resource written by the build, falling back to
+	 * the jar manifest, whose package metadata a native image does not keep.
+	 */
+	private static final class SdkVersion {
+
+		static final String VALUE = load();
+
+		private static String load() {
+			InputStream in = RestClient.class.getResourceAsStream("version.properties");
+			if (in != null) {
+				try {
+					Properties properties = new Properties();
+					properties.load(in);
+					String version = properties.getProperty("version");
+					if (version != null && !version.isEmpty()) {
+						return version;
+					}
+				} catch (IOException e) {
+					// Fall back to the manifest.
+				} finally {
+					try {
+						in.close();
+					} catch (IOException e) {
+						// Nothing to do.
+					}
+				}
+			}
+			Package pkg = RestClient.class.getPackage();
+			return pkg == null ? null : pkg.getImplementationVersion();
+		}
+	}
 
 	/**
 	 * Application/x-www-form-urlencoded content type.
@@ -62,30 +108,106 @@ public class RestClient {
 	public static final String AUTH_BASIC = "Basic";
 
 	/**
-	 * Your customer_id string associated with your account.
+	 * How long idle pooled connections are kept alive, OkHttp's default.
+	 */
+	private static final long KEEP_ALIVE_MINUTES = 5;
+
+	/**
+	 * Your customer_id string associated with your account, as given to the constructor.
 	 */
 	protected String customerId;
 
 	/**
-	 * Your api_key string associated with your account.
+	 * Your api_key string associated with your account, as given to the constructor.
 	 */
 	protected String apiKey;
 
+	/**
+	 * The credentials requests are signed with, which may be rotated after construction.
+	 */
+	private volatile CredentialProvider credentialProvider;
+
 	/**
 	 * The restEndpoint string is the base URL for the REST API endpoint to send requests to.
 	 */
 	private String restEndpoint;
 
+	/**
+	 * The client whose OkHttpClient, connection pool and dispatcher this client sends its requests through; this
+	 * client itself unless it was created for a tenant.
+	 */
+	private final RestClient transport;
+
 	/**
 	 * The OkHttpClient instance used to make HTTP requests to the TeleSign REST API.
 	 */
-	private OkHttpClient client;
+	private volatile OkHttpClient client;
+
+	/**
+	 * The number of idle connections the connection pool keeps alive.
+	 */
+	private int maxIdleConnections = 5;
+
+	/**
+	 * Whether warmUp completed successfully.
+	 */
+	private volatile boolean warm;
 
 	/**
 	 * 	User Agent string to be added to the User-Agent header of the request.
 	 */
 	private String userAgent;
 
+	/**
+	 * (optional) Adaptive limit on the number of in-flight requests per endpoint.
+	 */
+	private volatile ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * (optional) Isolated execution lanes requests are admitted through.
+	 */
+	private volatile Bulkhead bulkhead;
+
+	/**
+	 * (optional) Metrics every request is recorded in.
+	 */
+	private volatile TelesignMetrics metrics;
+
+	/**
+	 * The priority requests are queued with in the bulkhead.
+	 */
+	private volatile Bulkhead.Priority priority = Bulkhead.Priority.INTERACTIVE;
+
+	/**
+	 * (optional) Hedging applied to idempotent GET requests.
+	 */
+	private volatile HedgingPolicy hedgingPolicy;
+
+	/**
+	 * (optional) Selects among several endpoints, overriding restEndpoint.
+	 */
+	private volatile EndpointSelector endpointSelector;
+
+	/**
+	 * (optional) Per-destination rate limits applied to messages and calls.
+	 */
+	private volatile FloodProtector floodProtector;
+
+	/**
+	 * (optional) Audit log messages and calls are recorded in.
+	 */
+	private volatile AuditLog auditLog;
+
+	/**
+	 * (optional) Tracing hooks every request is reported to.
+	 */
+	private volatile CallTracer callTracer;
+
+	/**
+	 * (optional) The tenant this client sends requests on behalf of.
+	 */
+	private final TenantRegistry.Tenant tenant;
+
 	/**
 	 * Constructor for RestClient.
 	 * @param customerId
@@ -173,9 +295,12 @@ public class RestClient {
 
 		this.customerId = customerId;
 		this.apiKey = apiKey;
+		this.credentialProvider = new CredentialProvider(customerId, apiKey);
+		this.transport = this;
+		this.tenant = null;
 
 		this.userAgent = String.format("TeleSignSDK/java Java/%s OkHttp/%s OriginatingSDK/%s SDKVersion/%s",
-				System.getProperty("java.version"), OkHttp.VERSION, (source == null ? "java_telesign" : source), (sdkVersionOrigin == null ? SDK_VERSION : sdkVersionOrigin));
+				System.getProperty("java.version"), OkHttp.VERSION, (source == null ? "java_telesign" : source), (sdkVersionOrigin == null ? SdkVersion.VALUE : sdkVersionOrigin));
 
 		if (!Objects.equals(source, "java_telesign") && sdkVersionDependency != null) {
             this.userAgent += String.format(" DependencySDKVersion/%s", sdkVersionDependency);
@@ -220,6 +345,445 @@ public class RestClient {
 		}
 
 		this.client = okHttpClientBuilder.build();
+		TelesignEvents.track(this);
+	}
+
+	/**
+	 * Constructor for a RestClient that sends requests on behalf of a tenant through the connection pool and
+	 * dispatcher of another client, signing them with the tenant's credentials and admitting them through the
+	 * tenant's concurrency cap, if any. The endpoint, User-Agent and the limiter, bulkhead, priority, hedging and
+	 * endpoint settings of the transport are copied, and can be changed independently afterwards.
+	 *
+	 * @param transport
+	 *            The client whose connection pool and dispatcher are shared.
+	 * @param tenant
+	 *            The tenant to send requests on behalf of, from a TenantRegistry.
+	 */
+	public RestClient(RestClient transport, TenantRegistry.Tenant tenant) {
+
+		CredentialProvider.Credentials credentials = tenant.getCredentialProvider().getCurrent();
+		this.customerId = credentials.getCustomerId();
+		this.apiKey = credentials.getApiKey();
+		this.credentialProvider = tenant.getCredentialProvider();
+		this.transport = transport.transport;
+		this.tenant = tenant;
+
+		this.restEndpoint = transport.restEndpoint;
+		this.userAgent = transport.userAgent;
+		this.concurrencyLimiter = transport.concurrencyLimiter;
+		this.bulkhead = transport.bulkhead;
+		this.metrics = transport.metrics;
+		this.priority = transport.priority;
+		this.hedgingPolicy = transport.hedgingPolicy;
+		this.endpointSelector = transport.endpointSelector;
+		this.floodProtector = transport.floodProtector;
+		this.auditLog = transport.auditLog;
+		this.callTracer = transport.callTracer;
+	}
+
+	/**
+	 * @return The tenant this client sends requests on behalf of, or null if it uses its own credentials.
+	 */
+	public TenantRegistry.Tenant getTenant() {
+		return this.tenant;
+	}
+
+	/**
+	 * Sets the adaptive limiter requests are admitted through, or null to send every request immediately.
+	 * <p>
+	 * Requests are keyed by their method and resource template, e.g. "GET /v1/messaging/{}".
+	 *
+	 * @param concurrencyLimiter
+	 *            The limiter to use.
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * @return The adaptive limiter requests are admitted through, or null if none is set.
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return this.concurrencyLimiter;
+	}
+
+	/**
+	 * Sets the metrics every request is recorded in, or null to record none. The same metrics can be shared by
+	 * several clients, whose connection pools are then reported together.
+	 *
+	 * @param metrics
+	 *            The metrics to use.
+	 */
+	public void setMetrics(TelesignMetrics metrics) {
+		if (metrics != null) {
+			metrics.register(this.transport);
+		}
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return The metrics every request is recorded in, or null if none is set.
+	 */
+	public TelesignMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Sets the bulkhead requests are admitted through, or null to send every request immediately. The same bulkhead
+	 * is typically shared by all the clients of an application so each product gets its own lane.
+	 *
+	 * @param bulkhead
+	 *            The bulkhead to use.
+	 */
+	public void setBulkhead(Bulkhead bulkhead) {
+		this.bulkhead = bulkhead;
+	}
+
+	/**
+	 * @return The bulkhead requests are admitted through, or null if none is set.
+	 */
+	public Bulkhead getBulkhead() {
+		return this.bulkhead;
+	}
+
+	/**
+	 * Sets the priority this client's requests are queued with in the bulkhead, INTERACTIVE by default.
+	 *
+	 * @param priority
+	 *            The priority to use.
+	 */
+	public void setPriority(Bulkhead.Priority priority) {
+		this.priority = Objects.requireNonNull(priority);
+	}
+
+	/**
+	 * @return The priority this client's requests are queued with in the bulkhead.
+	 */
+	public Bulkhead.Priority getPriority() {
+		return this.priority;
+	}
+
+	/**
+	 * Sets the hedging policy applied to idempotent GET requests, such as MessagingClient.status and
+	 * VoiceClient.status, or null to disable hedging.
+	 *
+	 * @param hedgingPolicy
+	 *            The hedging policy to use.
+	 */
+	public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+
+	/**
+	 * @return The hedging policy applied to idempotent GET requests, or null if hedging is disabled.
+	 */
+	public HedgingPolicy getHedgingPolicy() {
+		return this.hedgingPolicy;
+	}
+
+	/**
+	 * Sets the provider of the credentials requests are signed with, e.g. one shared by all the clients of an
+	 * account so their API key can be rotated in one place.
+	 *
+	 * @param credentialProvider
+	 *            The credential provider to use.
+	 */
+	public void setCredentialProvider(CredentialProvider credentialProvider) {
+		if (credentialProvider == null) {
+			throw new IllegalArgumentException("credentialProvider must not be null");
+		}
+		this.credentialProvider = credentialProvider;
+	}
+
+	/**
+	 * @return The provider of the credentials requests are signed with, initially holding the credentials given to
+	 *         the constructor.
+	 */
+	public CredentialProvider getCredentialProvider() {
+		return this.credentialProvider;
+	}
+
+	/**
+	 * Sets the per-destination rate limits messages and calls are checked against before they are signed, or null
+	 * to send to any number freely.
+	 *
+	 * @param floodProtector
+	 *            The flood protector to use.
+	 */
+	public void setFloodProtector(FloodProtector floodProtector) {
+		this.floodProtector = floodProtector;
+	}
+
+	/**
+	 * @return The per-destination rate limits messages and calls are checked against, or null if none are set.
+	 */
+	public FloodProtector getFloodProtector() {
+		return this.floodProtector;
+	}
+
+	/**
+	 * Sets the audit log every message and call is recorded in, or null to record none.
+	 *
+	 * @param auditLog
+	 *            The audit log to use.
+	 */
+	public void setAuditLog(AuditLog auditLog) {
+		this.auditLog = auditLog;
+	}
+
+	/**
+	 * @return The audit log every message and call is recorded in, or null if none is set.
+	 */
+	public AuditLog getAuditLog() {
+		return this.auditLog;
+	}
+
+	/**
+	 * Sets the tracing hooks every request is reported to, e.g. to connect TeleSign calls to distributed traces, or
+	 * null to report none.
+	 *
+	 * @param callTracer
+	 *            The tracer to use.
+	 */
+	public void setCallTracer(CallTracer callTracer) {
+		this.callTracer = callTracer;
+	}
+
+	/**
+	 * @return The tracing hooks every request is reported to, or null if none are set.
+	 */
+	public CallTracer getCallTracer() {
+		return this.callTracer;
+	}
+
+	/**
+	 * Sets the selector used to spread requests over several endpoints, or null to send every request to the
+	 * restEndpoint.
+	 *
+	 * @param endpointSelector
+	 *            The endpoint selector to use.
+	 */
+	public void setEndpointSelector(EndpointSelector endpointSelector) {
+		this.endpointSelector = endpointSelector;
+	}
+
+	/**
+	 * @return The selector used to spread requests over several endpoints, or null if none is set.
+	 */
+	public EndpointSelector getEndpointSelector() {
+		return this.endpointSelector;
+	}
+
+	/**
+	 * Prepares the client to serve traffic at full speed, to be called once at startup before taking traffic, probing
+	 * each endpoint with unauthenticated HEAD / requests.
+	 *
+	 * @param connections
+	 *            The number of connections to open to each endpoint.
+	 * @param iterations
+	 *            The number of times to exercise the signing, encoding and decoding code, e.g. 10000.
+	 * @return True if every probe got a response, in which case isWarm also returns true.
+	 * @throws GeneralSecurityException if the api_key cannot be used to sign requests.
+	 * @throws IOException if a request body cannot be encoded.
+	 * @see #warmUp(int, int, String)
+	 */
+	public boolean warmUp(int connections, int iterations) throws GeneralSecurityException, IOException {
+		return warmUp(connections, iterations, "/");
+	}
+
+	/**
+	 * Prepares the client to serve traffic at full speed, to be called once at startup before taking traffic.
+	 * <p>
+	 * Sends the given number of concurrent HEAD requests for probePath to the restEndpoint, or to each endpoint of
+	 * the endpoint selector, growing the connection pool if needed, so the first requests do not pay for DNS
+	 * resolution, TCP connects and TLS handshakes. Over HTTP/1.1 each probe opens its own pooled connection; over
+	 * HTTP/2 the probes share a single multiplexed connection. The probes are not signed and carry no credentials, so
+	 * probePath should be a path the API or a gateway in front of it answers without authentication; the response
+	 * status does not matter. Then runs the request signing, body encoding and response decoding code the given
+	 * number of times so that it is compiled by the JIT before the first real request.
+	 *
+	 * @param connections
+	 *            The number of probes to send to each endpoint.
+	 * @param iterations
+	 *            The number of times to exercise the signing, encoding and decoding code, e.g. 10000.
+	 * @param probePath
+	 *            The path of the probes, e.g. "/".
+	 * @return True if every probe got a response, in which case isWarm also returns true.
+	 * @throws GeneralSecurityException if the api_key cannot be used to sign requests.
+	 * @throws IOException if a request body cannot be encoded.
+	 */
+	public boolean warmUp(int connections, int iterations, String probePath)
+			throws GeneralSecurityException, IOException {
+
+		Map<String, String> params = new HashMap<>();
+		params.put("phone_number", "15555555555");
+		params.put("message", "Your code is 123456");
+		params.put("message_type", "OTP");
+		String sampleResponse = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+				+ "\"status\":{\"code\":290,\"description\":\"Message in progress\"}}";
+
+		for (int i = 0; i < iterations; i++) {
+			Buffer buffer = new Buffer();
+			this.createRequestBody(params, URL_FORM_ENCODED_CONTENT_TYPE).writeTo(buffer);
+			this.createRequestBody(params, JSON_CONTENT_TYPE).writeTo(buffer);
+			RestClient.generateTelesignHeaders(this.credentialProvider.getCurrent(), "POST", "/v1/messaging",
+					buffer.readByteArray(), null, null, this.userAgent, URL_FORM_ENCODED_CONTENT_TYPE, "HMAC-SHA256");
+			JsonParser.parseString(sampleResponse).getAsJsonObject();
+		}
+
+		List<String> endpoints = new ArrayList<>();
+		EndpointSelector selector = this.endpointSelector;
+		if (selector != null) {
+			for (EndpointSelector.Endpoint endpoint : selector.getEndpoints()) {
+				endpoints.add(endpoint.getUrl());
+			}
+		} else {
+			endpoints.add(this.restEndpoint);
+		}
+		int total = connections * endpoints.size();
+
+		synchronized (this.transport) {
+			if (total > this.transport.maxIdleConnections) {
+				// A connection pool cannot be resized, so replace it, closing the idle connections of the old one.
+				ConnectionPool previous = this.transport.client.connectionPool();
+				this.transport.maxIdleConnections = total;
+				this.transport.client = this.transport.client.newBuilder()
+						.connectionPool(new ConnectionPool(total, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES)).build();
+				previous.evictAll();
+			}
+		}
+
+		// The probes must be in flight at the same time for each of them to open its own connection, so each runs
+		// on its own thread rather than queueing in the dispatcher behind its per-host limit.
+		final OkHttpClient client = this.transport.client;
+		final AtomicInteger completed = new AtomicInteger();
+		List<Thread> probes = new ArrayList<>();
+		for (String endpoint : endpoints) {
+			HttpUrl url = HttpUrl.parse(endpoint).newBuilder().encodedPath(probePath).build();
+			final Request probe = new Request.Builder().url(url).head().header("User-Agent", this.userAgent).build();
+			for (int i = 0; i < connections; i++) {
+				Thread thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							client.newCall(probe).execute().close();
+							completed.incrementAndGet();
+						} catch (IOException e) {
+							// The endpoint is unreachable, so the client is not warm.
+						}
+					}
+				}, "TeleSign warm-up");
+				thread.setDaemon(true);
+				thread.start();
+				probes.add(thread);
+			}
+		}
+
+		try {
+			for (Thread thread : probes) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		this.transport.warm = completed.get() >= total;
+		return this.transport.warm;
+	}
+
+	/**
+	 * Sets the DNS resolver used to look up the restEndpoint host, e.g. a CachingDns. Existing pooled connections are
+	 * kept.
+	 *
+	 * @param dns
+	 *            The resolver to use.
+	 */
+	public void setDns(Dns dns) {
+		synchronized (this.transport) {
+			this.transport.client = this.transport.client.newBuilder().dns(dns).build();
+		}
+	}
+
+	/**
+	 * @return The DNS resolver used to look up the restEndpoint host.
+	 */
+	public Dns getDns() {
+		return this.transport.client.dns();
+	}
+
+	/**
+	 * @return True once warmUp got a response to every probe, e.g. to gate a readiness probe.
+	 */
+	public boolean isWarm() {
+		return this.transport.warm;
+	}
+
+	/**
+	 * @return The number of open connections in the connection pool, both idle and in use.
+	 */
+	public int getConnectionCount() {
+		return this.transport.client.connectionPool().connectionCount();
+	}
+
+	/**
+	 * @return The number of idle connections in the connection pool.
+	 */
+	public int getIdleConnectionCount() {
+		return this.transport.client.connectionPool().idleConnectionCount();
+	}
+
+	/**
+	 * @return The OkHttpClient requests are currently sent through.
+	 */
+	OkHttpClient httpClient() {
+		return this.transport.client;
+	}
+
+	/**
+	 * Reduces a resource URI to its template by replacing every path segment that is an identifier, such as a
+	 * reference_id or a phone number, with "{}". Segments made of lower case letters and underscores, and version
+	 * segments such as "v1", are kept.
+	 *
+	 * @param resource
+	 *            The partial resource URI.
+	 * @return The resource template.
+	 */
+	static String resourceTemplate(String resource) {
+		StringBuilder template = new StringBuilder(resource.length());
+		int start = resource.startsWith("/") ? 1 : 0;
+		while (start <= resource.length()) {
+			int end = resource.indexOf('/', start);
+			if (end < 0) {
+				end = resource.length();
+			}
+			String segment = resource.substring(start, end);
+			if (start > 0) {
+				template.append('/');
+			}
+			template.append(isTemplateLiteral(segment) ? segment : "{}");
+			start = end + 1;
+		}
+		return template.toString();
+	}
+
+	private static boolean isTemplateLiteral(String segment) {
+		if (segment.length() > 1 && segment.charAt(0) == 'v') {
+			boolean version = true;
+			for (int i = 1; i < segment.length(); i++) {
+				version &= Character.isDigit(segment.charAt(i));
+			}
+			if (version) {
+				return true;
+			}
+		}
+		for (int i = 0; i < segment.length(); i++) {
+			char ch = segment.charAt(i);
+			if ((ch < 'a' || ch > 'z') && ch != '_') {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	static byte[] parseBase64(String encoded) {
@@ -274,6 +838,11 @@ public class RestClient {
 		 */
 		public JsonObject json;
 
+		/**
+		 * The length of the body in bytes, as received before it was decoded.
+		 */
+		long bodyLength;
+
 		/**
 		 * Creates a new TelesignResponse instance from the given OkHttp response.
 		 *
@@ -287,7 +856,12 @@ public class RestClient {
 			this.ok = okHttpResponse.isSuccessful();
 
 			try {
-				this.body = okHttpResponse.body().string();
+				ResponseBody responseBody = okHttpResponse.body();
+				BufferedSource source = responseBody.source();
+				// Buffer the whole body to count its bytes, then decode it from the buffer.
+				source.request(Long.MAX_VALUE);
+				this.bodyLength = source.getBuffer().size();
+				this.body = responseBody.string();
 
 				try {
 					this.json = new JsonParser().parse(body).getAsJsonObject();
@@ -340,6 +914,29 @@ public class RestClient {
 			String methodName, String resource, String requestParams,
 			String dateRfc2616, String nonce, String userAgent, String contentType, String authMethod) throws NoSuchAlgorithmException, InvalidKeyException {
 
+		return generateTelesignHeaders(new CredentialProvider.Credentials(customerId, apiKey), methodName, resource,
+				requestParams, dateRfc2616, nonce, userAgent, contentType, authMethod);
+	}
+
+	/**
+	 * Generates the TeleSign REST API headers with the decoded key cached in the credentials.
+	 */
+	static Map<String, String> generateTelesignHeaders(CredentialProvider.Credentials credentials,
+			String methodName, String resource, String requestParams,
+			String dateRfc2616, String nonce, String userAgent, String contentType, String authMethod) throws NoSuchAlgorithmException, InvalidKeyException {
+
+		return generateTelesignHeaders(credentials, methodName, resource,
+				requestParams != null ? requestParams.getBytes() : new byte[0], dateRfc2616, nonce, userAgent,
+				contentType, authMethod);
+	}
+
+	/**
+	 * Generates the TeleSign REST API headers for an encoded body, which is signed as is without being decoded.
+	 */
+	static Map<String, String> generateTelesignHeaders(CredentialProvider.Credentials credentials,
+			String methodName, String resource, byte[] requestParams,
+			String dateRfc2616, String nonce, String userAgent, String contentType, String authMethod) throws NoSuchAlgorithmException, InvalidKeyException {
+
 		if (dateRfc2616 == null) {
 			SimpleDateFormat rfc2616 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
 			rfc2616.setTimeZone(TimeZone.getTimeZone("GMT"));
@@ -359,11 +956,7 @@ public class RestClient {
 
 		if (Objects.equals(authMethod, "Basic")) {
 
-			String credentials = customerId + ":" + apiKey;
-
-			String encodedCredentials = Base64.getEncoder().encodeToString(credentials.getBytes());
-
-			authorization = authMethod + " " + encodedCredentials;
+			authorization = credentials.basicAuthorization();
 		} else {
 
 			StringBuilder stringToSignBuilder = new StringBuilder();
@@ -378,21 +971,19 @@ public class RestClient {
 
 			stringToSignBuilder.append(String.format("\nx-ts-nonce:%s", nonce));
 
-			if (!contentType.isEmpty() && !requestParams.isEmpty()) {
-				stringToSignBuilder.append(String.format("\n%s", requestParams));
-			}
-
-			stringToSignBuilder.append(String.format("\n%s", resource));
-
-			String stringToSign = stringToSignBuilder.toString();
+			stringToSignBuilder.append('\n');
 
 			String signature;
 			Mac sha256HMAC = Mac.getInstance("HmacSHA256");
-			SecretKeySpec secretKeySpec = new SecretKeySpec(parseBase64(apiKey), "HmacSHA256");
-			sha256HMAC.init(secretKeySpec);
-			signature = encodeBase64(sha256HMAC.doFinal(stringToSign.getBytes()));
+			sha256HMAC.init(credentials.hmacKey());
+			sha256HMAC.update(stringToSignBuilder.toString().getBytes());
+			if (!contentType.isEmpty() && requestParams.length > 0) {
+				sha256HMAC.update(requestParams);
+				sha256HMAC.update((byte) '\n');
+			}
+			signature = encodeBase64(sha256HMAC.doFinal(resource.getBytes()));
 
-			authorization = String.format("TSA %s:%s", customerId, signature);
+			authorization = String.format("TSA %s:%s", credentials.getCustomerId(), signature);
 			headers.put("Date", dateRfc2616);
 			headers.put("Content-Type", contentType);
 			headers.put("x-ts-auth-method", authMethod);
@@ -464,6 +1055,47 @@ public class RestClient {
 		return this.execute("POST", resource, params, contentType, authMethod);
 	}
 
+	/**
+	 * Generic TeleSign REST API POST handler.
+	 *
+	 * @param resource
+	 *            The partial resource URI to perform the request against.
+	 * @param params
+	 *            Params to perform the POST request with.
+	 * @param contentType
+	 *            Appication/json, www-url ....
+	 * @param authMethod
+	 *            (optional) Basic, Diggest ...
+	 * @param headers
+	 *            (optional) Additional HTTP headers to send with the request, e.g. an Idempotency-Key.
+	 * @return The TelesignResponse for the request.
+	 * @throws IOException if the HTTP request fails.
+	 * @throws GeneralSecurityException if there is a security exception.
+	 */
+	public TelesignResponse post(String resource, Map<String, ? extends Object> params, String contentType,
+			String authMethod, Map<String, String> headers) throws IOException, GeneralSecurityException {
+
+		return this.execute("POST", resource, params, contentType, authMethod, headers);
+	}
+
+	/**
+	 * Generic TeleSign REST API POST handler for a compiled resource route.
+	 */
+	TelesignResponse post(ResourceRoute.Path path, Map<String, ? extends Object> params, String contentType,
+			String authMethod, Map<String, String> headers) throws IOException, GeneralSecurityException {
+
+		return this.execute("POST", path, params, contentType, authMethod, headers);
+	}
+
+	/**
+	 * Generic TeleSign REST API POST handler for a form body that is already encoded.
+	 */
+	TelesignResponse post(ResourceRoute.Path path, FormEncoder.Body body, Map<String, String> headers)
+			throws IOException, GeneralSecurityException {
+
+		return this.execute("POST", path, null, body, URL_FORM_ENCODED_CONTENT_TYPE, null, headers);
+	}
+
 	/**
 	 * Generic TeleSign REST API GET handler.
 	 *
@@ -481,6 +1113,15 @@ public class RestClient {
 		return this.execute("GET", resource, params);
 	}
 
+	/**
+	 * Generic TeleSign REST API GET handler for a compiled resource route.
+	 */
+	TelesignResponse get(ResourceRoute.Path path, Map<String, String> params)
+			throws IOException, GeneralSecurityException {
+
+		return this.execute("GET", path, params, "", null, null);
+	}
+
 	/**
 	 * Generic TeleSign REST API PUT handler.
 	 *
@@ -549,19 +1190,12 @@ public class RestClient {
 
 	public RequestBody createRequestBody(Map<String, ? extends Object> params, String contentType) throws IOException {
 		if (Objects.equals(contentType, "application/json")) {
-			Gson gson = new Gson();
-			String json = gson.toJson(params);
+			String json = new Gson().toJson(JsonTree.of(params));
 			MediaType mediaType = MediaType.parse("application/json");
 			RequestBody body = RequestBody.create(mediaType, json.getBytes());
 			return body;
 		} else {
-			FormBody.Builder formBodyBuilder = new FormBody.Builder();
-			for (Map.Entry<String, ? extends Object> entry : params.entrySet()) {
-				formBodyBuilder.add(entry.getKey(), (String) entry.getValue());
-			}
-			FormBody formBody = formBodyBuilder.build();
-
-			return formBody;
+			return FormEncoder.encode(params);
 		}
 	}
 
@@ -594,6 +1228,35 @@ public class RestClient {
 	 */
 	private TelesignResponse execute(String methodName, String resource, Map<String, ? extends Object> params, String contentType, String authMethod)
 			throws IOException, GeneralSecurityException {
+		return execute(methodName, resource, params, contentType, authMethod, null);
+	}
+
+	/**
+	 * Generic TeleSign method for request execution, with additional headers.
+	 */
+	private TelesignResponse execute(String methodName, String resource, Map<String, ? extends Object> params,
+			String contentType, String authMethod, Map<String, String> extraHeaders)
+			throws IOException, GeneralSecurityException {
+		return execute(methodName, ResourceRoute.Path.of(resource), params, contentType, authMethod, extraHeaders);
+	}
+
+	/**
+	 * Generic TeleSign method for request execution against a resource path, which is either compiled or parsed
+	 * from a string.
+	 */
+	private TelesignResponse execute(String methodName, ResourceRoute.Path path, Map<String, ? extends Object> params,
+			String contentType, String authMethod, Map<String, String> extraHeaders)
+			throws IOException, GeneralSecurityException {
+		return execute(methodName, path, params, null, contentType, authMethod, extraHeaders);
+	}
+
+	/**
+	 * Generic TeleSign method for request execution, with a body that is either encoded from the params or, if
+	 * given, already encoded.
+	 */
+	private TelesignResponse execute(String methodName, ResourceRoute.Path path, Map<String, ? extends Object> params,
+			RequestBody encodedBody, String contentType, String authMethod, Map<String, String> extraHeaders)
+			throws IOException, GeneralSecurityException {
 
 		if (authMethod == null) {
 			authMethod = "HMAC-SHA256";
@@ -603,16 +1266,29 @@ public class RestClient {
 			params = new HashMap<>();
 		}
 
-		HttpUrl httpUrl = HttpUrl.parse(String.format("%s%s", this.restEndpoint, resource));
+		String resourceTemplate = path.template();
+		TelesignEvents.Call call = TelesignEvents.begin(methodName, resourceTemplate);
+		TelesignMetrics metrics = this.metrics;
+		CallTracer tracer = this.callTracer;
+		Deadline deadline = Deadline.current();
+		long start = metrics != null || tracer != null ? System.nanoTime() : 0;
+
+		EndpointSelector selector = this.endpointSelector;
+		EndpointSelector.Endpoint endpoint = selector != null ? selector.select(null) : null;
+
+		HttpUrl httpUrl = path.url(endpoint != null ? endpoint.getUrl() : this.restEndpoint);
+		String resource = path.resource(httpUrl);
 
 		RequestBody requestBody = null;
-		String requestParams = "";
+		byte[] requestParams = new byte[0];
 		if (methodName.equals("POST") || methodName.equals("PUT") || methodName.equals("PATCH")) {
-			requestBody = this.createRequestBody(params, contentType);
-			if (requestBody != null) {
+			requestBody = encodedBody != null ? encodedBody : this.createRequestBody(params, contentType);
+			if (requestBody instanceof FormEncoder.Body) {
+				requestParams = ((FormEncoder.Body) requestBody).bytes();
+			} else if (requestBody != null) {
 				Buffer buffer = new Buffer();
 				requestBody.writeTo(buffer);
-				requestParams = buffer.readUtf8();
+				requestParams = buffer.readByteArray();
 			}
 		} else {
 			HttpUrl.Builder httpUrlBuilder = httpUrl.newBuilder();
@@ -622,20 +1298,350 @@ public class RestClient {
 			httpUrl = httpUrlBuilder.build();
 		}
 
-		Map<String, String> headers = RestClient.generateTelesignHeaders(this.customerId, this.apiKey,
-				methodName, resource, requestParams, null, null, this.userAgent, contentType, authMethod);
-
+		CredentialProvider credentialProvider = this.credentialProvider;
+		CredentialProvider.Credentials credentials = credentialProvider.getCurrent();
 		Request.Builder requestBuilder = new Request.Builder().url(httpUrl).method(methodName, requestBody);
-		for (Map.Entry<String, String> entry : headers.entrySet()) {
-			requestBuilder.addHeader(entry.getKey(), entry.getValue());
+		if (extraHeaders != null) {
+			for (Map.Entry<String, String> entry : extraHeaders.entrySet()) {
+				requestBuilder.header(entry.getKey(), entry.getValue());
+			}
 		}
-		Request request = requestBuilder.build();
 
+		Bulkhead tenantCap = this.tenant != null ? this.tenant.getConcurrencyCap() : null;
+		Bulkhead bulkhead = this.bulkhead;
+		ConcurrencyLimiter limiter = this.concurrencyLimiter;
+		boolean timed = call != null || tracer != null;
+		long signingNanos = 0;
+		long queueNanos = 0;
+
+		Object span = null;
+		Bulkhead.Slot tenantSlot = null;
+		Bulkhead.Slot slot = null;
 		TelesignResponse telesignResponse;
-		try (Response okhttpResponse = this.client.newCall(request).execute()) {
-			telesignResponse = new TelesignResponse(okhttpResponse);
+		if (metrics != null) {
+			metrics.onStart();
 		}
+		try {
+			if (tracer != null) {
+				span = tracer.begin(methodName, resourceTemplate, requestBuilder);
+			}
+
+			if (deadline != null) {
+				deadline.check(resource);
+			}
+
+			long signStart = timed ? System.nanoTime() : 0;
+			Request request = this.signRequest(credentials, requestBuilder.build(), resource, requestParams,
+					contentType, authMethod);
+			long queueStart = timed ? System.nanoTime() : 0;
+			signingNanos = queueStart - signStart;
+			if (call != null) {
+				call.signed(signingNanos);
+			}
+
+			if (tenantCap != null) {
+				tenantSlot = tenantCap.acquire(resourceTemplate, this.priority, deadline);
+			}
+
+			if (bulkhead != null) {
+				slot = bulkhead.acquire(resourceTemplate, this.priority, deadline);
+			}
+
+			if (deadline != null) {
+				// The budget may have run out or been cancelled while waiting for a slot.
+				deadline.check(resource);
+			}
+
+			ConcurrencyLimiter.Permit permit = null;
+			if (limiter != null) {
+				permit = limiter.acquire(methodName + " " + resourceTemplate, deadline);
+			}
+			queueNanos = timed ? System.nanoTime() - queueStart : 0;
+			if (call != null) {
+				call.queued(queueNanos);
+			}
 
+			try {
+				try {
+					telesignResponse = this.send(request, credentials, endpoint, resourceTemplate, resource,
+							requestParams, contentType, authMethod, deadline);
+				} catch (ConnectException | UnknownHostException e) {
+					// The request never reached the endpoint, so it is safe to send it to another one.
+					EndpointSelector.Endpoint fallback = selector != null ? selector.select(endpoint) : null;
+					if (fallback == null) {
+						throw e;
+					}
+					request = request.newBuilder().url(fallback.rebase(request.url(), endpoint)).build();
+					endpoint = fallback;
+					telesignResponse = this.send(request, credentials, endpoint, resourceTemplate, resource,
+							requestParams, contentType, authMethod, deadline);
+				}
+
+				CredentialProvider.Credentials previous = credentialProvider.getPrevious();
+				if (telesignResponse.statusCode == 401 && previous != null && previous != credentials) {
+					// The new key may not have propagated yet; a rejected request was not processed, so resend it.
+					request = this.signRequest(previous, request, resource, requestParams, contentType, authMethod);
+					telesignResponse = this.send(request, previous, endpoint, resourceTemplate, resource,
+							requestParams, contentType, authMethod, deadline);
+				}
+
+				if (permit != null) {
+					permit.onResponse(telesignResponse.statusCode);
+				}
+			} finally {
+				// Releasing a permit is idempotent, so this only counts calls that got no response as errors.
+				if (permit != null) {
+					permit.onError();
+				}
+			}
+		} catch (IOException | GeneralSecurityException | RuntimeException e) {
+			if (call != null) {
+				call.fail(requestParams.length, e);
+			}
+			if (metrics != null) {
+				metrics.onError(resourceTemplate, System.nanoTime() - start);
+			}
+			if (tracer != null) {
+				tracer.end(span, methodName, resourceTemplate, 0, e, signingNanos, queueNanos,
+						System.nanoTime() - start);
+			}
+			throw e;
+		} finally {
+			if (slot != null) {
+				slot.release();
+			}
+			if (tenantSlot != null) {
+				tenantSlot.release();
+			}
+		}
+
+		if (metrics != null) {
+			metrics.onResponse(resourceTemplate, telesignResponse.statusCode, System.nanoTime() - start);
+		}
+		if (tracer != null) {
+			tracer.end(span, methodName, resourceTemplate, telesignResponse.statusCode, null, signingNanos,
+					queueNanos, System.nanoTime() - start);
+		}
+		if (call != null) {
+			call.commit(telesignResponse.statusCode, requestParams.length, telesignResponse.bodyLength);
+		}
 		return telesignResponse;
 	}
+
+	/**
+	 * Sends a request, hedging it if it is an idempotent GET and a hedging policy is set, and records the outcome
+	 * against the endpoint it was sent to. Under a deadline, the call is limited to the budget that remains.
+	 */
+	private TelesignResponse send(Request request, CredentialProvider.Credentials credentials,
+			EndpointSelector.Endpoint endpoint, String resourceTemplate, String resource, byte[] requestParams,
+			String contentType, String authMethod, Deadline deadline) throws IOException, GeneralSecurityException {
+
+		long start = System.nanoTime();
+		if (endpoint != null) {
+			endpoint.onStart();
+		}
+
+		TelesignResponse telesignResponse;
+		try {
+			HedgingPolicy hedgingPolicy = this.hedgingPolicy;
+			if (hedgingPolicy != null && request.method().equals("GET")) {
+				telesignResponse = this.executeHedged(hedgingPolicy, resourceTemplate, request, credentials,
+						resource, requestParams, contentType, authMethod, deadline);
+			} else {
+				Call call = this.transport.client.newCall(request);
+				if (deadline != null) {
+					deadline.attach(call);
+				}
+				try (Response okhttpResponse = call.execute()) {
+					telesignResponse = new TelesignResponse(okhttpResponse);
+				} catch (IOException e) {
+					throw deadline != null ? deadline.abandoned(e, resource) : e;
+				} finally {
+					if (deadline != null) {
+						deadline.detach(call);
+					}
+				}
+			}
+		} catch (Deadline.ExceededException | Deadline.CancelledException e) {
+			if (endpoint != null) {
+				endpoint.onAbandoned();
+			}
+			throw e;
+		} catch (IOException | GeneralSecurityException | RuntimeException e) {
+			if (endpoint != null) {
+				endpoint.onError();
+			}
+			throw e;
+		}
+
+		if (endpoint != null) {
+			endpoint.onResponse(System.nanoTime() - start, telesignResponse.statusCode);
+		}
+		return telesignResponse;
+	}
+
+	/**
+	 * Signs a request with a fresh date and nonce, replacing the authentication headers of a request that was
+	 * already signed and keeping any other header.
+	 */
+	private Request signRequest(CredentialProvider.Credentials credentials, Request request, String resource,
+			byte[] requestParams, String contentType, String authMethod) throws GeneralSecurityException {
+
+		Map<String, String> headers = RestClient.generateTelesignHeaders(credentials, request.method(), resource,
+				requestParams, null, null, this.userAgent, contentType, authMethod);
+
+		Request.Builder requestBuilder = request.newBuilder();
+		for (Map.Entry<String, String> entry : headers.entrySet()) {
+			requestBuilder.header(entry.getKey(), entry.getValue());
+		}
+		return requestBuilder.build();
+	}
+
+	/**
+	 * Sends an idempotent request on the calling thread, and a freshly signed copy of it through the dispatcher if
+	 * no response arrived within the hedge delay, returning whichever response arrives first and cancelling the
+	 * other call.
+	 */
+	private TelesignResponse executeHedged(HedgingPolicy hedgingPolicy, String resourceTemplate, Request request,
+			CredentialProvider.Credentials credentials, String resource, byte[] requestParams, String contentType,
+			String authMethod, Deadline deadline)
+			throws IOException, GeneralSecurityException {
+
+		hedgingPolicy.onRequest();
+		long start = System.nanoTime();
+
+		Call primary = this.transport.client.newCall(request);
+		if (deadline != null) {
+			deadline.attach(primary);
+		}
+		Hedge hedge = new Hedge(hedgingPolicy, primary, credentials, resource, requestParams, contentType,
+				authMethod, deadline);
+		ScheduledFuture<?> timer = hedgingPolicy.schedule(hedge, hedgingPolicy.hedgeDelayNanos(resourceTemplate));
+
+		try (Response okhttpResponse = primary.execute()) {
+			TelesignResponse telesignResponse = new TelesignResponse(okhttpResponse);
+			// Only the primary's own latency is recorded, so hedging does not lower the delay it is triggered at.
+			hedgingPolicy.recordLatency(resourceTemplate, System.nanoTime() - start);
+			return telesignResponse;
+		} catch (IOException e) {
+			timer.cancel(false);
+			if (hedge.close() == null) {
+				throw deadline != null ? deadline.abandoned(e, resource) : e;
+			}
+			try {
+				TelesignResponse telesignResponse = hedge.result.get();
+				hedgingPolicy.onHedgeWon();
+				if (primary.isCanceled()) {
+					// The primary was cut off when the hedge answered, so it would have taken at least this long.
+					hedgingPolicy.recordLatency(resourceTemplate, System.nanoTime() - start);
+				}
+				return telesignResponse;
+			} catch (InterruptedException interrupted) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted waiting for " + resource);
+			} catch (ExecutionException hedgeFailed) {
+				throw deadline != null ? deadline.abandoned(e, resource) : e;
+			}
+		} finally {
+			timer.cancel(false);
+			Call hedgeCall = hedge.close();
+			if (hedgeCall != null) {
+				hedgeCall.cancel();
+			}
+			if (deadline != null) {
+				deadline.detach(primary);
+				if (hedgeCall != null) {
+					deadline.detach(hedgeCall);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The hedge of a request, started by the hedging policy's timer once the hedge delay passed, unless the primary
+	 * call completed first. A hedge that gets a response cancels the primary call.
+	 */
+	private class Hedge implements Runnable, Callback {
+
+		private final HedgingPolicy hedgingPolicy;
+		private final Call primary;
+		private final CredentialProvider.Credentials credentials;
+		private final String resource;
+		private final byte[] requestParams;
+		private final String contentType;
+		private final String authMethod;
+		private final Deadline deadline;
+
+		final CompletableFuture<TelesignResponse> result = new CompletableFuture<>();
+		private Call call;
+		private boolean closed;
+
+		Hedge(HedgingPolicy hedgingPolicy, Call primary, CredentialProvider.Credentials credentials, String resource,
+				byte[] requestParams, String contentType, String authMethod, Deadline deadline) {
+			this.hedgingPolicy = hedgingPolicy;
+			this.primary = primary;
+			this.credentials = credentials;
+			this.resource = resource;
+			this.requestParams = requestParams;
+			this.contentType = contentType;
+			this.authMethod = authMethod;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public void run() {
+			Call hedge;
+			synchronized (this) {
+				if (this.closed || (this.deadline != null && (this.deadline.isExpired() || this.deadline.isCancelled()))) {
+					return;
+				}
+				// The hedge is only an optimization, so if it cannot be sent the primary call carries on regardless.
+				Request request;
+				try {
+					request = signRequest(this.credentials, this.primary.request(), this.resource,
+							this.requestParams, this.contentType, this.authMethod);
+				} catch (GeneralSecurityException e) {
+					return;
+				}
+				if (!this.hedgingPolicy.tryAcquireHedge()) {
+					return;
+				}
+				hedge = transport.client.newCall(request);
+				if (this.deadline != null) {
+					try {
+						this.deadline.attach(hedge);
+					} catch (IOException e) {
+						this.hedgingPolicy.refundHedge();
+						return;
+					}
+				}
+				this.call = hedge;
+			}
+			hedge.enqueue(this);
+		}
+
+		/**
+		 * Stops the hedge from being started.
+		 *
+		 * @return The hedge's call, or null if it was never started.
+		 */
+		synchronized Call close() {
+			this.closed = true;
+			return this.call;
+		}
+
+		@Override
+		public void onResponse(Call call, Response response) {
+			try (Response okhttpResponse = response) {
+				if (this.result.complete(new TelesignResponse(okhttpResponse))) {
+					this.primary.cancel();
+				}
+			}
+		}
+
+		@Override
+		public void onFailure(Call call, IOException e) {
+			this.result.completeExceptionally(e);
+		}
+	}
 }
@@ -3,7 +3,6 @@ package com.telesign;
 import java.io.IOException;
 import java.net.Proxy;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -11,8 +10,8 @@ import java.util.Map;
  */
 public class ScoreClient extends RestClient {
 
-    private static final String INTELLIGENCE_SCORE_RESOURCE = "/intelligence/phone";
-    private static final String EMAIL_INTELLIGENCE_RESOURCE = "/intelligence/email";
+    private static final ResourceRoute INTELLIGENCE_SCORE_ROUTE = ResourceRoute.compile("/intelligence/phone");
+    private static final ResourceRoute EMAIL_INTELLIGENCE_ROUTE = ResourceRoute.compile("/intelligence/email");
 
     private static final String DETECT_REST_ENDPOINT = "https://detect.telesign.com";
 
@@ -109,6 +108,18 @@ public class ScoreClient extends RestClient {
         super(customerId, apiKey, restEndpoint, connectTimeout, readTimeout, writeTimeout, proxy, proxyUsername, proxyPassword, source, sdkVersionOrigin, sdkVersionDependency);
     }
 
+    /**
+     * Constructor for a ScoreClient that sends requests on behalf of a tenant through the connection pool of another
+     * client.
+     * @param transport
+     *          The client whose connection pool and dispatcher are shared.
+     * @param tenant
+     *          The tenant to send requests on behalf of, from a TenantRegistry.
+     */
+    public ScoreClient(RestClient transport, TenantRegistry.Tenant tenant) {
+        super(transport, tenant);
+    }
+
     /**
      *Obtain a risk recommendation for this phone number, as well as other relevant information using Telesign Cloud API.
      * <p>
@@ -125,14 +136,25 @@ public class ScoreClient extends RestClient {
      * @throws GeneralSecurityException if there is a security exception.
      */
     public TelesignResponse score(String phoneNumber, String accountLifecycleEvent, Map<String, String> params) throws IOException, GeneralSecurityException {
-        if (params == null) {
-            params = new HashMap<>();
-        }
-        
-        params.put("phone_number", phoneNumber);
-        params.put("account_lifecycle_event", accountLifecycleEvent);
 
-        return this.post(INTELLIGENCE_SCORE_RESOURCE, params);
+        return this.score(new ScoreRequest.Builder(phoneNumber, accountLifecycleEvent).params(params).build());
+    }
+
+    /**
+     * Obtain a risk recommendation for a phone number built as an immutable ScoreRequest, which may be shared between
+     * threads and sent again without being encoded again.
+     * <p>
+     * See https://developer.telesign.com/enterprise/reference/submitphonenumberforintelligencecloud for detailed API documentation.
+     *
+     * @param request
+     *           The phone number and action to evaluate.
+     * @return The TelesignResponse for the request.
+     * @throws IOException if the HTTP request fails.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public TelesignResponse score(ScoreRequest request) throws IOException, GeneralSecurityException {
+
+        return this.post(INTELLIGENCE_SCORE_ROUTE.path(), request.body(), null);
     }
 
     /**
@@ -151,13 +173,9 @@ public class ScoreClient extends RestClient {
      * @throws GeneralSecurityException if there is a security exception.
      */
     public TelesignResponse emailIntelligence(String emailAddress, String accountLifecycleEvent, Map<String, String> params) throws GeneralSecurityException, IOException {
-        if (params == null) {
-            params = new HashMap<>();
-        }
-        
-        params.put("email_address", emailAddress);
-        params.put("account_lifecycle_event", accountLifecycleEvent);
 
-        return this.post(EMAIL_INTELLIGENCE_RESOURCE, params);
+        return this.post(EMAIL_INTELLIGENCE_ROUTE.path(),
+                FormRequest.merge(params, "email_address", emailAddress, "account_lifecycle_event", accountLifecycleEvent),
+                URL_FORM_ENCODED_CONTENT_TYPE, null, null);
     }
 }
@@ -0,0 +1,120 @@
+package com.telesign;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable request for a Score risk recommendation for a phone number, built with a Builder and sent with ScoreClient.score(ScoreRequest).
+ * <p>
+ * A request can be shared between threads and sent any number of times; its body is encoded the first time it is
+ * sent and reused after that.
+ */
+public final class ScoreRequest extends FormRequest {
+
+    private final String phoneNumber;
+    private final String accountLifecycleEvent;
+
+    private ScoreRequest(Builder builder) {
+        super(merge(builder.params, "phone_number", builder.phoneNumber,
+                "account_lifecycle_event", builder.accountLifecycleEvent));
+        this.phoneNumber = builder.phoneNumber;
+        this.accountLifecycleEvent = builder.accountLifecycleEvent;
+    }
+
+    /**
+     * @return The phone number to query.
+     */
+    public String getPhoneNumber() {
+        return this.phoneNumber;
+    }
+
+    /**
+     * @return The attempted action associated with the phone number.
+     */
+    public String getAccountLifecycleEvent() {
+        return this.accountLifecycleEvent;
+    }
+
+    /**
+     * @return A Builder holding the fields of this request, to derive another request from it.
+     */
+    public Builder toBuilder() {
+        return new Builder(this.phoneNumber, this.accountLifecycleEvent).params(this.getParams());
+    }
+
+    /**
+     * Builds a ScoreRequest.
+     */
+    public static final class Builder {
+
+        private String phoneNumber;
+        private String accountLifecycleEvent;
+        private final Map<String, String> params = new HashMap<>();
+
+        /**
+         * Constructor for a Builder of a ScoreRequest.
+         *
+         * @param phoneNumber
+         *            The phone number to query.
+         * @param accountLifecycleEvent
+         *            The attempted action associated with the phone number.
+         */
+        public Builder(String phoneNumber, String accountLifecycleEvent) {
+            this.phoneNumber = phoneNumber;
+            this.accountLifecycleEvent = accountLifecycleEvent;
+        }
+
+        /**
+         * @param phoneNumber
+         *            The phone number to query.
+         * @return This Builder.
+         */
+        public Builder phoneNumber(String phoneNumber) {
+            this.phoneNumber = phoneNumber;
+            return this;
+        }
+
+        /**
+         * @param accountLifecycleEvent
+         *            The attempted action associated with the phone number.
+         * @return This Builder.
+         */
+        public Builder accountLifecycleEvent(String accountLifecycleEvent) {
+            this.accountLifecycleEvent = accountLifecycleEvent;
+            return this;
+        }
+
+        /**
+         * @param name
+         *            The name of an additional parameter for the request.
+         * @param value
+         *            Its value.
+         * @return This Builder.
+         */
+        public Builder param(String name, String value) {
+            this.params.put(name, value);
+            return this;
+        }
+
+        /**
+         * @param params
+         *            (optional) Additional parameters for the request.
+         * @return This Builder.
+         */
+        public Builder params(Map<String, String> params) {
+            if (params != null) {
+                for (Map.Entry<String, String> entry : params.entrySet()) {
+                    this.params.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return The request.
+         */
+        public ScoreRequest build() {
+            return new ScoreRequest(this);
+        }
+    }
+}
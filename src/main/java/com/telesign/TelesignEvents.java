@@ -0,0 +1,85 @@
+package com.telesign;
+
+/**
+ * Java Flight Recorder events for TeleSign calls, so SDK latency can be correlated with GC, CPU and socket activity
+ * in a recording.
+ * <p>
+ * Every call through RestClient.execute is recorded as a com.telesign.Call event with its resource template, method,
+ * status, bytes sent and received, signing time and time queued for a bulkhead or limiter, the event duration being
+ * the total time of the call. The connection pool and dispatcher of each client are recorded periodically as
+ * com.telesign.ClientState events, once a second by default.
+ * <p>
+ * The JFR classes are only loaded where Flight Recorder is available, so the SDK still runs on runtimes without it.
+ * When the call event is disabled, which it is unless a recording enables it, a call costs one volatile read.
+ */
+final class TelesignEvents {
+
+    private static final boolean SUPPORTED = detect();
+
+    private TelesignEvents() {
+    }
+
+    /**
+     * A call being recorded.
+     */
+    interface Call {
+
+        /**
+         * Records the time spent signing the request.
+         */
+        void signed(long nanos);
+
+        /**
+         * Records time spent waiting for a bulkhead slot or limiter permit.
+         */
+        void queued(long nanos);
+
+        /**
+         * Ends and commits the event for a call that got a response.
+         */
+        void commit(int statusCode, long bytesSent, long bytesReceived);
+
+        /**
+         * Ends and commits the event for a call that failed.
+         */
+        void fail(long bytesSent, Throwable error);
+    }
+
+    /**
+     * Starts recording a call.
+     *
+     * @param method
+     *            The HTTP method.
+     * @param resourceTemplate
+     *            The template of the resource, e.g. "/v1/messaging/{}".
+     * @return The call, or null if call events are not being recorded.
+     */
+    static Call begin(String method, String resourceTemplate) {
+        if (!SUPPORTED) {
+            return null;
+        }
+        return FlightRecorderEvents.begin(method, resourceTemplate);
+    }
+
+    /**
+     * Includes a client's connection pool and dispatcher in the periodic client state events for as long as the
+     * client is reachable.
+     *
+     * @param client
+     *            The client.
+     */
+    static void track(RestClient client) {
+        if (SUPPORTED) {
+            FlightRecorderEvents.track(client);
+        }
+    }
+
+    private static boolean detect() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, TelesignEvents.class.getClassLoader());
+            return FlightRecorderEvents.isAvailable();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
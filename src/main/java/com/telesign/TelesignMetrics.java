@@ -0,0 +1,337 @@
+package com.telesign;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics for one or more clients, installed with RestClient.setMetrics and exported in the Prometheus text
+ * format with writeTo or from the embedded endpoint started by serve.
+ * <p>
+ * Every call is counted and its latency recorded in a histogram keyed by product, resource template and status
+ * class ("2xx", "4xx", ..., or "error" for a call that got no response), using LongAdder counters so recording takes
+ * no lock. In-flight calls and the connection pool usage of each client are exported as gauges.
+ * <p>
+ * The exported metrics are telesign_requests_total, telesign_request_duration_seconds,
+ * telesign_requests_in_flight, telesign_connections and telesign_idle_connections.
+ */
+public class TelesignMetrics {
+
+    /**
+     * Upper bounds of the latency histogram buckets, in seconds; Prometheus' default buckets.
+     */
+    private static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKETS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx", "error"};
+    private static final int ERROR = STATUS_CLASSES.length - 1;
+
+    private final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+    private final Set<RestClient> clients = Collections.newSetFromMap(new WeakHashMap<RestClient, Boolean>());
+
+    /**
+     * Constructor for TelesignMetrics.
+     */
+    public TelesignMetrics() {
+    }
+
+    /**
+     * The series of one resource template, one for each status class, created together so recording a call looks
+     * up nothing but the template.
+     */
+    private static class Resource {
+
+        private final String product;
+        private final String template;
+        private final Series[] series = new Series[STATUS_CLASSES.length];
+
+        Resource(String template) {
+            this.product = product(template);
+            this.template = template;
+            for (int i = 0; i < this.series.length; i++) {
+                this.series[i] = new Series();
+            }
+        }
+    }
+
+    private static class Series {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+
+        Series() {
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            for (int i = 0; i < BUCKET_NANOS.length; i++) {
+                if (nanos <= BUCKET_NANOS[i]) {
+                    this.buckets[i].increment();
+                    break;
+                }
+            }
+            this.sumNanos.add(nanos);
+            this.count.increment();
+        }
+    }
+
+    /**
+     * Reports the connection pool usage of a client; called by RestClient.setMetrics. Clients are held weakly.
+     */
+    void register(RestClient client) {
+        synchronized (this.clients) {
+            this.clients.add(client);
+        }
+    }
+
+    /**
+     * Counts a call as in flight until it is recorded with onResponse or onError.
+     */
+    void onStart() {
+        this.inFlight.increment();
+    }
+
+    /**
+     * Records a call that got a response.
+     *
+     * @param resourceTemplate
+     *            The template of the resource, e.g. "/v1/messaging/{}".
+     * @param statusCode
+     *            The HTTP status of the response.
+     * @param nanos
+     *            The duration of the call.
+     */
+    void onResponse(String resourceTemplate, int statusCode, long nanos) {
+        int statusClass = statusCode >= 100 && statusCode < 600 ? statusCode / 100 - 1 : ERROR;
+        this.record(resourceTemplate, statusClass, nanos);
+    }
+
+    /**
+     * Records a call that failed without a response.
+     */
+    void onError(String resourceTemplate, long nanos) {
+        this.record(resourceTemplate, ERROR, nanos);
+    }
+
+    private void record(String resourceTemplate, int statusClass, long nanos) {
+        this.inFlight.decrement();
+        Resource resource = this.resources.get(resourceTemplate);
+        if (resource == null) {
+            Resource created = new Resource(resourceTemplate);
+            resource = this.resources.putIfAbsent(resourceTemplate, created);
+            if (resource == null) {
+                resource = created;
+            }
+        }
+        resource.series[statusClass].record(nanos);
+    }
+
+    /**
+     * @return The number of calls in flight.
+     */
+    public long getInFlight() {
+        return this.inFlight.sum();
+    }
+
+    /**
+     * Returns the number of calls recorded for a resource and status class.
+     *
+     * @param resourceTemplate
+     *            The template of the resource, e.g. "/v1/messaging/{}".
+     * @param statusClass
+     *            The status class, e.g. "2xx", or "error".
+     * @return The number of calls.
+     */
+    public long getCount(String resourceTemplate, String statusClass) {
+        Resource resource = this.resources.get(resourceTemplate);
+        if (resource == null) {
+            return 0;
+        }
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            if (STATUS_CLASSES[i].equals(statusClass)) {
+                return resource.series[i].count.sum();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @param out
+     *            Where to write the metrics.
+     * @throws IOException
+     *             if out cannot be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        // Sorted so the output is stable between scrapes.
+        Map<String, Resource> resources = new TreeMap<>(this.resources);
+
+        out.append("# HELP telesign_requests_total TeleSign API calls by product, resource and status class.\n");
+        out.append("# TYPE telesign_requests_total counter\n");
+        for (Resource resource : resources.values()) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                long count = resource.series[i].count.sum();
+                if (count > 0) {
+                    out.append("telesign_requests_total");
+                    appendLabels(out, resource, i, null);
+                    out.append(' ').append(Long.toString(count)).append('\n');
+                }
+            }
+        }
+
+        out.append("# HELP telesign_request_duration_seconds Latency of TeleSign API calls.\n");
+        out.append("# TYPE telesign_request_duration_seconds histogram\n");
+        for (Resource resource : resources.values()) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                Series series = resource.series[i];
+                // Read the count first, so no bucket can exceed the +Inf bucket written from it.
+                long count = series.count.sum();
+                if (count == 0) {
+                    continue;
+                }
+                long cumulative = 0;
+                for (int bucket = 0; bucket < BUCKETS.length; bucket++) {
+                    cumulative += series.buckets[bucket].sum();
+                    out.append("telesign_request_duration_seconds_bucket");
+                    appendLabels(out, resource, i, Double.toString(BUCKETS[bucket]));
+                    out.append(' ').append(Long.toString(Math.min(cumulative, count))).append('\n');
+                }
+                out.append("telesign_request_duration_seconds_bucket");
+                appendLabels(out, resource, i, "+Inf");
+                out.append(' ').append(Long.toString(count)).append('\n');
+                out.append("telesign_request_duration_seconds_sum");
+                appendLabels(out, resource, i, null);
+                out.append(' ').append(Double.toString(series.sumNanos.sum() / 1e9)).append('\n');
+                out.append("telesign_request_duration_seconds_count");
+                appendLabels(out, resource, i, null);
+                out.append(' ').append(Long.toString(count)).append('\n');
+            }
+        }
+
+        out.append("# HELP telesign_requests_in_flight TeleSign API calls in flight.\n");
+        out.append("# TYPE telesign_requests_in_flight gauge\n");
+        out.append("telesign_requests_in_flight ").append(Long.toString(this.inFlight.sum())).append('\n');
+
+        List<RestClient> clients;
+        synchronized (this.clients) {
+            clients = new ArrayList<>(this.clients);
+        }
+        int connections = 0;
+        int idleConnections = 0;
+        for (RestClient client : clients) {
+            connections += client.getConnectionCount();
+            idleConnections += client.getIdleConnectionCount();
+        }
+        out.append("# HELP telesign_connections Open connections in the connection pools, idle and in use.\n");
+        out.append("# TYPE telesign_connections gauge\n");
+        out.append("telesign_connections ").append(Integer.toString(connections)).append('\n');
+        out.append("# HELP telesign_idle_connections Idle connections in the connection pools.\n");
+        out.append("# TYPE telesign_idle_connections gauge\n");
+        out.append("telesign_idle_connections ").append(Integer.toString(idleConnections)).append('\n');
+    }
+
+    /**
+     * Starts an HTTP endpoint serving the metrics at /metrics, on a single daemon thread.
+     *
+     * @param address
+     *            The address to listen on, e.g. new InetSocketAddress(9464).
+     * @return The server, to stop when it is no longer needed.
+     * @throws IOException
+     *             if the address cannot be bound.
+     */
+    public HttpServer serve(InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StringBuilder text = new StringBuilder();
+                writeTo(text);
+                byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TeleSign metrics endpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+        server.start();
+        return server;
+    }
+
+    private static void appendLabels(Appendable out, Resource resource, int statusClass, String le)
+            throws IOException {
+        out.append("{product=\"");
+        appendEscaped(out, resource.product);
+        out.append("\",resource=\"");
+        appendEscaped(out, resource.template);
+        out.append("\",status_class=\"").append(STATUS_CLASSES[statusClass]).append('"');
+        if (le != null) {
+            out.append(",le=\"").append(le).append('"');
+        }
+        out.append('}');
+    }
+
+    private static void appendEscaped(Appendable out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' || ch == '"') {
+                out.append('\\').append(ch);
+            } else if (ch == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(ch);
+            }
+        }
+    }
+
+    /**
+     * Returns the product of a resource template, its first segment after any version segment, e.g. "messaging"
+     * for "/v1/messaging/{}".
+     */
+    static String product(String template) {
+        for (String segment : template.split("/")) {
+            if (!segment.isEmpty() && !segment.matches("v[0-9]+")) {
+                return segment;
+            }
+        }
+        return "";
+    }
+}
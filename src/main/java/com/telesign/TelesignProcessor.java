@@ -0,0 +1,499 @@
+package com.telesign;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Reactive Streams Processor that sends every element it receives to the TeleSign REST API and publishes a Result
+ * for each, so that a streaming source such as Reactor or a Kafka consumer can be connected straight to TeleSign
+ * calls with backpressure.
+ * <p>
+ * At most maxConcurrency elements are requested from upstream beyond those whose results are delivered, so demand
+ * follows both the concurrency available for calls and the demand of the downstream subscriber. Results are
+ * published in the order the elements arrived, or as soon as each call completes when ordered is false. A failed
+ * call produces a Result carrying its exception rather than cancelling the stream; only an error from upstream
+ * terminates it, after the results of the calls in flight have been delivered.
+ * <p>
+ * Calls run on the given executor, or on maxConcurrency daemon threads owned by the processor and stopped when the
+ * stream terminates. They still pass through the client's bulkhead and concurrency limiter, if any.
+ * <p>
+ * The Reactive Streams API is a compile-only dependency of this SDK: applications using this class must have
+ * org.reactivestreams:reactive-streams on their classpath, as Reactor, RxJava and Akka Streams already do.
+ *
+ * @param <T>
+ *            The type of the elements to send.
+ */
+public class TelesignProcessor<T> implements Processor<T, TelesignProcessor.Result<T>> {
+
+    /**
+     * The TeleSign call made for each element.
+     *
+     * @param <T>
+     *            The type of the elements to send.
+     */
+    public interface Operation<T> {
+
+        /**
+         * Sends one element.
+         *
+         * @param element
+         *            The element to send.
+         * @return The TelesignResponse for the request.
+         * @throws IOException if the HTTP request fails.
+         * @throws GeneralSecurityException if there is a security exception.
+         */
+        RestClient.TelesignResponse apply(T element) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * The outcome of the call made for one element: either its response or the exception it failed with.
+     *
+     * @param <T>
+     *            The type of the element.
+     */
+    public static class Result<T> {
+
+        private final T element;
+        private final RestClient.TelesignResponse response;
+        private final Exception error;
+
+        Result(T element, RestClient.TelesignResponse response, Exception error) {
+            this.element = element;
+            this.response = response;
+            this.error = error;
+        }
+
+        /**
+         * @return The element the call was made for.
+         */
+        public T getElement() {
+            return this.element;
+        }
+
+        /**
+         * @return The response to the call, or null if it failed.
+         */
+        public RestClient.TelesignResponse getResponse() {
+            return this.response;
+        }
+
+        /**
+         * @return The exception the call failed with, or null if a response was received.
+         */
+        public Exception getError() {
+            return this.error;
+        }
+
+        /**
+         * @return True if a response was received and it was successful.
+         */
+        public boolean isOk() {
+            return this.error == null && this.response.ok;
+        }
+    }
+
+    private final Operation<T> operation;
+    private final int maxConcurrency;
+    private final boolean ordered;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * The client the calls are made with, for a processor created by one of the factory methods, whose tracer the
+     * calls are submitted through.
+     */
+    private RestClient client;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final ArrayDeque<Pending<T>> window = new ArrayDeque<>();
+    private final ArrayDeque<Result<T>> completed = new ArrayDeque<>();
+
+    private Subscription upstream;
+    private Subscriber<? super Result<T>> downstream;
+    private long requested;
+    private int outstanding;
+    private int upstreamPending;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean cancelled;
+    private boolean terminated;
+
+    /**
+     * Constructor for TelesignProcessor, making calls on maxConcurrency threads of its own.
+     *
+     * @param operation
+     *            The call to make for each element.
+     * @param maxConcurrency
+     *            The largest number of calls in flight plus results waiting to be delivered.
+     * @param ordered
+     *            Whether results are published in the order the elements arrived.
+     */
+    public TelesignProcessor(Operation<T> operation, int maxConcurrency, boolean ordered) {
+        this(operation, maxConcurrency, ordered, null);
+    }
+
+    /**
+     * Constructor for TelesignProcessor.
+     *
+     * @param operation
+     *            The call to make for each element.
+     * @param maxConcurrency
+     *            The largest number of calls in flight plus results waiting to be delivered.
+     * @param ordered
+     *            Whether results are published in the order the elements arrived.
+     * @param executor
+     *            (optional) The executor calls are made on, which should allow maxConcurrency of them at once.
+     */
+    public TelesignProcessor(Operation<T> operation, int maxConcurrency, boolean ordered, Executor executor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.operation = operation;
+        this.maxConcurrency = maxConcurrency;
+        this.ordered = ordered;
+        if (executor == null) {
+            this.ownedExecutor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TeleSign processor " + this.count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.executor = this.ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Creates a processor that sends each element with MessagingClient.message. Each element holds the request
+     * parameters, at least "phone_number", "message" and "message_type".
+     *
+     * @param client
+     *            The client to send the messages with.
+     * @param maxConcurrency
+     *            The largest number of calls in flight plus results waiting to be delivered.
+     * @param ordered
+     *            Whether results are published in the order the elements arrived.
+     * @return The processor.
+     */
+    public static TelesignProcessor<Map<String, String>> messages(final MessagingClient client, int maxConcurrency,
+                                                                   boolean ordered) {
+        return new TelesignProcessor<>(new Operation<Map<String, String>>() {
+            @Override
+            public RestClient.TelesignResponse apply(Map<String, String> element)
+                    throws IOException, GeneralSecurityException {
+                Map<String, String> params = new HashMap<>(element);
+                return client.message(params.remove("phone_number"), params.remove("message"),
+                        params.remove("message_type"), params);
+            }
+        }, maxConcurrency, ordered).madeWith(client);
+    }
+
+    /**
+     * Creates a processor that sends each element with VoiceClient.call. Each element holds the request parameters,
+     * at least "phone_number", "message" and "message_type".
+     *
+     * @param client
+     *            The client to place the calls with.
+     * @param maxConcurrency
+     *            The largest number of calls in flight plus results waiting to be delivered.
+     * @param ordered
+     *            Whether results are published in the order the elements arrived.
+     * @return The processor.
+     */
+    public static TelesignProcessor<Map<String, String>> calls(final VoiceClient client, int maxConcurrency,
+                                                                boolean ordered) {
+        return new TelesignProcessor<>(new Operation<Map<String, String>>() {
+            @Override
+            public RestClient.TelesignResponse apply(Map<String, String> element)
+                    throws IOException, GeneralSecurityException {
+                Map<String, String> params = new HashMap<>(element);
+                return client.call(params.remove("phone_number"), params.remove("message"),
+                        params.remove("message_type"), params);
+            }
+        }, maxConcurrency, ordered).madeWith(client);
+    }
+
+    /**
+     * Creates a processor that looks up each phone number it receives with PhoneIdClient.phoneid.
+     *
+     * @param client
+     *            The client to look the phone numbers up with.
+     * @param maxConcurrency
+     *            The largest number of calls in flight plus results waiting to be delivered.
+     * @param ordered
+     *            Whether results are published in the order the elements arrived.
+     * @return The processor.
+     */
+    public static TelesignProcessor<String> phoneIds(final PhoneIdClient client, int maxConcurrency,
+                                                     boolean ordered) {
+        return new TelesignProcessor<>(new Operation<String>() {
+            @Override
+            public RestClient.TelesignResponse apply(String phoneNumber) throws IOException, GeneralSecurityException {
+                return client.phoneid(phoneNumber, null);
+            }
+        }, maxConcurrency, ordered).madeWith(client);
+    }
+
+    private TelesignProcessor<T> madeWith(RestClient client) {
+        this.client = client;
+        return this;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Result<T>> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        synchronized (this) {
+            if (this.downstream != null) {
+                subscriber.onSubscribe(new Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("TelesignProcessor allows only a single subscriber"));
+                return;
+            }
+            this.downstream = subscriber;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    // Rule 3.9: fail the stream, delivering the error through drain to keep signals serial.
+                    Subscription subscription;
+                    synchronized (TelesignProcessor.this) {
+                        if (cancelled || terminated || upstreamDone) {
+                            return;
+                        }
+                        upstreamError = new IllegalArgumentException("request must be positive");
+                        upstreamDone = true;
+                        window.clear();
+                        completed.clear();
+                        outstanding = 0;
+                        subscription = upstream;
+                    }
+                    if (subscription != null) {
+                        subscription.cancel();
+                    }
+                } else {
+                    synchronized (TelesignProcessor.this) {
+                        requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    }
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                Subscription subscription;
+                synchronized (TelesignProcessor.this) {
+                    if (cancelled || terminated) {
+                        return;
+                    }
+                    cancelled = true;
+                    subscription = upstream;
+                }
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                shutdown();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        boolean duplicate;
+        synchronized (this) {
+            duplicate = this.upstream != null || this.cancelled;
+            if (!duplicate) {
+                this.upstream = subscription;
+            }
+        }
+        if (duplicate) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(final T element) {
+        final Pending<T> pending = new Pending<>();
+        synchronized (this) {
+            if (this.upstreamDone || this.cancelled) {
+                return;
+            }
+            this.upstreamPending--;
+            this.outstanding++;
+            if (this.ordered) {
+                this.window.add(pending);
+            }
+        }
+
+        try {
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    Result<T> result;
+                    try {
+                        result = new Result<>(element, operation.apply(element), null);
+                    } catch (Exception e) {
+                        result = new Result<>(element, null, e);
+                    }
+                    complete(pending, result);
+                }
+            };
+            // Carry the upstream thread's trace context to the thread the call is made on.
+            CallTracer tracer = this.client != null ? this.client.getCallTracer() : null;
+            this.executor.execute(tracer != null ? tracer.wrap(task) : task);
+        } catch (RejectedExecutionException e) {
+            complete(pending, new Result<T>(element, null, e));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (this.upstreamDone) {
+                return;
+            }
+            this.upstreamError = throwable;
+            this.upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            this.upstreamDone = true;
+        }
+        drain();
+    }
+
+    private void complete(Pending<T> pending, Result<T> result) {
+        synchronized (this) {
+            if (this.ordered) {
+                pending.result = result;
+            } else {
+                this.completed.add(result);
+            }
+        }
+        drain();
+    }
+
+    private Result<T> pollReady() {
+        if (this.ordered) {
+            Pending<T> head = this.window.peek();
+            if (head == null || head.result == null) {
+                return null;
+            }
+            this.window.poll();
+            return head.result;
+        }
+        return this.completed.poll();
+    }
+
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Subscriber<? super Result<T>> subscriber;
+            Subscription subscription;
+            long toRequest = 0;
+            Throwable error = null;
+            boolean complete = false;
+
+            while (true) {
+                Result<T> next;
+                synchronized (this) {
+                    subscriber = this.downstream;
+                    if (subscriber == null || this.cancelled || this.terminated || this.requested == 0) {
+                        break;
+                    }
+                    next = pollReady();
+                    if (next == null) {
+                        break;
+                    }
+                    this.outstanding--;
+                    if (this.requested != Long.MAX_VALUE) {
+                        this.requested--;
+                    }
+                }
+                subscriber.onNext(next);
+            }
+
+            synchronized (this) {
+                subscriber = this.downstream;
+                subscription = this.upstream;
+                if (subscriber != null && subscription != null && !this.cancelled && !this.terminated) {
+                    if (this.upstreamDone) {
+                        if (this.outstanding == 0) {
+                            this.terminated = true;
+                            error = this.upstreamError;
+                            complete = error == null;
+                        }
+                    } else {
+                        toRequest = this.maxConcurrency - this.outstanding - this.upstreamPending;
+                        this.upstreamPending += (int) Math.max(0, toRequest);
+                    }
+                } else if (subscriber != null && subscription == null && this.upstreamError != null
+                        && !this.terminated) {
+                    this.terminated = true;
+                    error = this.upstreamError;
+                }
+            }
+
+            if (toRequest > 0) {
+                subscription.request(toRequest);
+            }
+            if (error != null) {
+                shutdown();
+                subscriber.onError(error);
+            } else if (complete) {
+                shutdown();
+                subscriber.onComplete();
+            }
+
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void shutdown() {
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    private static class Pending<T> {
+        Result<T> result;
+    }
+}
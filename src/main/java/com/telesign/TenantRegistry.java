@@ -0,0 +1,140 @@
+package com.telesign;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The credentials of the sub-accounts an application sends requests on behalf of, so that a single RestClient and
+ * its connection pool can serve all of them.
+ * <p>
+ * Each registered tenant gets a handle holding its CredentialProvider, whose decoded signing key is cached, and an
+ * optional cap on its number of in-flight requests. A client for a tenant is created from a shared transport client
+ * and the handle, e.g. new MessagingClient(transport, registry.get("acme")), which costs a single small object and no
+ * connections of its own:
+ *
+ * <pre>
+ * MessagingClient transport = new MessagingClient(customerId, apiKey);
+ * TenantRegistry registry = new TenantRegistry();
+ * registry.register("acme", acmeCustomerId, acmeApiKey).setConcurrencyCap(10, 100, 1, TimeUnit.SECONDS);
+ * new MessagingClient(transport, registry.get("acme")).message("15555555555", "Hello", "ARN", null);
+ * </pre>
+ */
+public class TenantRegistry {
+
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a tenant, or replaces the credentials of an existing one while keeping its handle and concurrency cap.
+     *
+     * @param tenantId
+     *            The identifier the application uses for the tenant.
+     * @param customerId
+     *            The tenant's customer_id.
+     * @param apiKey
+     *            The tenant's api_key.
+     * @return The tenant's handle.
+     */
+    public Tenant register(String tenantId, String customerId, String apiKey) {
+        Tenant created = new Tenant(tenantId, new CredentialProvider(customerId, apiKey));
+        Tenant existing = this.tenants.putIfAbsent(tenantId, created);
+        if (existing == null) {
+            return created;
+        }
+        existing.getCredentialProvider().rotate(customerId, apiKey, 0, TimeUnit.NANOSECONDS);
+        return existing;
+    }
+
+    /**
+     * @param tenantId
+     *            The identifier the tenant was registered with.
+     * @return The tenant's handle, or null if it is not registered.
+     */
+    public Tenant get(String tenantId) {
+        return this.tenants.get(tenantId);
+    }
+
+    /**
+     * Removes a tenant. Clients already created for it keep working until they are discarded.
+     *
+     * @param tenantId
+     *            The identifier the tenant was registered with.
+     * @return The removed tenant's handle, or null if it was not registered.
+     */
+    public Tenant remove(String tenantId) {
+        return this.tenants.remove(tenantId);
+    }
+
+    /**
+     * @return The number of registered tenants.
+     */
+    public int size() {
+        return this.tenants.size();
+    }
+
+    /**
+     * A registered tenant: its credentials and optional concurrency cap.
+     */
+    public static class Tenant {
+
+        private final String id;
+        private final CredentialProvider credentialProvider;
+        private volatile Bulkhead concurrencyCap;
+
+        Tenant(String id, CredentialProvider credentialProvider) {
+            this.id = id;
+            this.credentialProvider = credentialProvider;
+        }
+
+        /**
+         * @return The identifier the tenant was registered with.
+         */
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * @return The provider of the tenant's credentials, through which they can be rotated.
+         */
+        public CredentialProvider getCredentialProvider() {
+            return this.credentialProvider;
+        }
+
+        /**
+         * Caps the number of requests in flight on behalf of the tenant, across every client created for it, so
+         * one busy tenant cannot use up the shared connection pool.
+         *
+         * @param maxConcurrent
+         *            The number of requests that may be in flight for the tenant.
+         * @param maxQueued
+         *            The number of requests that may wait for a slot.
+         * @param maxWait
+         *            How long a queued request may wait for a slot before it is rejected with a
+         *            Bulkhead.BulkheadFullException.
+         * @param unit
+         *            The unit of maxWait.
+         */
+        public void setConcurrencyCap(int maxConcurrent, int maxQueued, long maxWait, TimeUnit unit) {
+            this.concurrencyCap = new Bulkhead(maxConcurrent, maxQueued, maxWait, unit);
+        }
+
+        /**
+         * Removes the tenant's concurrency cap.
+         */
+        public void clearConcurrencyCap() {
+            this.concurrencyCap = null;
+        }
+
+        /**
+         * @return The number of requests currently in flight for the tenant, or 0 if it has no concurrency cap.
+         */
+        public int getInFlight() {
+            Bulkhead cap = this.concurrencyCap;
+            return cap == null ? 0 : cap.getInFlight("");
+        }
+
+        Bulkhead getConcurrencyCap() {
+            return this.concurrencyCap;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.telesign;
 import java.io.IOException;
 import java.net.Proxy;
 import java.security.GeneralSecurityException;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -12,8 +12,8 @@ import java.util.Map;
  */
 public class VoiceClient extends RestClient {
 
-    private static final String VOICE_RESOURCE = "/v1/voice";
-    private static final String VOICE_STATUS_RESOURCE = "/v1/voice/%s";
+    private static final ResourceRoute VOICE_ROUTE = ResourceRoute.compile("/v1/voice");
+    private static final ResourceRoute VOICE_STATUS_ROUTE = ResourceRoute.compile("/v1/voice/{}");
 
     /**
      * Constructor for VoiceClient.
@@ -108,6 +108,18 @@ public class VoiceClient extends RestClient {
         super(customerId, apiKey, restEndpoint, connectTimeout, readTimeout, writeTimeout, proxy, proxyUsername, proxyPassword, source, sdkVersionOrigin, sdkVersionDependency);
     }
 
+    /**
+     * Constructor for a VoiceClient that sends requests on behalf of a tenant through the connection pool of another
+     * client.
+     * @param transport
+     *          The client whose connection pool and dispatcher are shared.
+     * @param tenant
+     *          The tenant to send requests on behalf of, from a TenantRegistry.
+     */
+    public VoiceClient(RestClient transport, TenantRegistry.Tenant tenant) {
+        super(transport, tenant);
+    }
+
     /**
      * Send a voice call to the target phone_number.
      * <p>
@@ -127,15 +139,53 @@ public class VoiceClient extends RestClient {
      */
     public TelesignResponse call(String phoneNumber, String message, String messageType, Map<String, String> params) throws IOException, GeneralSecurityException {
 
-        if (params == null) {
-            params = new HashMap<>();
+        return this.call(new VoiceRequest.Builder(phoneNumber, message, messageType).params(params).build());
+    }
+
+    /**
+     * Send a voice call built as an immutable VoiceRequest, which may be shared between threads and sent again
+     * without being encoded again.
+     * <p>
+     * See https://developer.telesign.com/docs/voice-api for detailed API documentation.
+     *
+     * @param request
+     *           The voice call to send.
+     * @return The TelesignResponse for the request.
+     * @throws IOException if the HTTP request fails.
+     * @throws GeneralSecurityException if there is a security exception.
+     */
+    public TelesignResponse call(VoiceRequest request) throws IOException, GeneralSecurityException {
+
+        return this.call(request, null);
+    }
+
+    /**
+     * Send a voice call with a given idempotency key, e.g. one logged with a queued request so that every attempt to
+     * place it carries the same key.
+     */
+    TelesignResponse call(VoiceRequest request, String idempotencyKey) throws IOException, GeneralSecurityException {
+
+        FloodProtector floodProtector = this.getFloodProtector();
+        if (floodProtector != null) {
+            floodProtector.acquire(request.getPhoneNumber());
         }
 
-        params.put("phone_number", phoneNumber);
-        params.put("message", message);
-        params.put("message_type", messageType);
+        AuditLog auditLog = this.getAuditLog();
+        TelesignResponse response;
+        try {
+            response = this.post(VOICE_ROUTE.path(), request.body(), idempotencyKey != null
+                    ? Collections.singletonMap(DuplicateSuppressor.IDEMPOTENCY_KEY_HEADER, idempotencyKey) : null);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            if (auditLog != null) {
+                auditLog.recordFailure("call", request.getPhoneNumber(), request.getMessageType(), e);
+            }
+            throw e;
+        }
 
-        return this.post(VOICE_RESOURCE, params);
+        if (auditLog != null) {
+            auditLog.record("call", request.getPhoneNumber(), request.getMessageType(), response);
+        }
+        return response;
     }
 
     /**
@@ -153,6 +203,6 @@ public class VoiceClient extends RestClient {
      */
     public TelesignResponse status(String referenceId, Map<String, String> params) throws IOException, GeneralSecurityException {
 
-        return this.get(String.format(VOICE_STATUS_RESOURCE, referenceId), params);
+        return this.get(VOICE_STATUS_ROUTE.path(referenceId), params);
     }
 }
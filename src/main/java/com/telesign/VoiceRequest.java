@@ -0,0 +1,144 @@
+package com.telesign;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable request for a voice call, built with a Builder and sent with VoiceClient.call(VoiceRequest).
+ * <p>
+ * A request can be shared between threads and sent any number of times; its body is encoded the first time it is
+ * sent and reused after that.
+ */
+public final class VoiceRequest extends FormRequest {
+
+    private final String phoneNumber;
+    private final String message;
+    private final String messageType;
+
+    private VoiceRequest(Builder builder) {
+        super(merge(builder.params, "phone_number", builder.phoneNumber,
+                "message", builder.message,
+                "message_type", builder.messageType));
+        this.phoneNumber = builder.phoneNumber;
+        this.message = builder.message;
+        this.messageType = builder.messageType;
+    }
+
+    /**
+     * @return The phone number to call.
+     */
+    public String getPhoneNumber() {
+        return this.phoneNumber;
+    }
+
+    /**
+     * @return The message to speak.
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return The type of the message.
+     */
+    public String getMessageType() {
+        return this.messageType;
+    }
+
+    /**
+     * @return A Builder holding the fields of this request, to derive another request from it.
+     */
+    public Builder toBuilder() {
+        return new Builder(this.phoneNumber, this.message, this.messageType).params(this.getParams());
+    }
+
+    /**
+     * Builds a VoiceRequest.
+     */
+    public static final class Builder {
+
+        private String phoneNumber;
+        private String message;
+        private String messageType;
+        private final Map<String, String> params = new HashMap<>();
+
+        /**
+         * Constructor for a Builder of a VoiceRequest.
+         *
+         * @param phoneNumber
+         *            The phone number to call.
+         * @param message
+         *            The message to speak.
+         * @param messageType
+         *            The type of the message.
+         */
+        public Builder(String phoneNumber, String message, String messageType) {
+            this.phoneNumber = phoneNumber;
+            this.message = message;
+            this.messageType = messageType;
+        }
+
+        /**
+         * @param phoneNumber
+         *            The phone number to call.
+         * @return This Builder.
+         */
+        public Builder phoneNumber(String phoneNumber) {
+            this.phoneNumber = phoneNumber;
+            return this;
+        }
+
+        /**
+         * @param message
+         *            The message to speak.
+         * @return This Builder.
+         */
+        public Builder message(String message) {
+            this.message = message;
+            return this;
+        }
+
+        /**
+         * @param messageType
+         *            The type of the message.
+         * @return This Builder.
+         */
+        public Builder messageType(String messageType) {
+            this.messageType = messageType;
+            return this;
+        }
+
+        /**
+         * @param name
+         *            The name of an additional parameter for the request.
+         * @param value
+         *            Its value.
+         * @return This Builder.
+         */
+        public Builder param(String name, String value) {
+            this.params.put(name, value);
+            return this;
+        }
+
+        /**
+         * @param params
+         *            (optional) Additional parameters for the request.
+         * @return This Builder.
+         */
+        public Builder params(Map<String, String> params) {
+            if (params != null) {
+                for (Map.Entry<String, String> entry : params.entrySet()) {
+                    this.params.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @return The request.
+         */
+        public VoiceRequest build() {
+            return new VoiceRequest(this);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.telesign;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import junit.framework.TestCase;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class AuditLogTest extends TestCase {
+
+    private MockWebServer mockServer;
+    private File directory;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        mockServer = new MockWebServer();
+        mockServer.start();
+
+        directory = Files.createTempDirectory("audit").toFile();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    private String restEndpoint() {
+        return this.mockServer.url("").toString().replaceAll("/$", "");
+    }
+
+    private List<JsonObject> readRecords() throws IOException {
+        File[] files = this.directory.listFiles();
+        Arrays.sort(files);
+        List<JsonObject> records = new ArrayList<>();
+        for (File file : files) {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                records.add(JsonParser.parseString(line).getAsJsonObject());
+            }
+        }
+        return records;
+    }
+
+    private static RestClient.TelesignResponse okResponse() {
+        return new RestClient.TelesignResponse(new Response.Builder()
+                .request(new Request.Builder().url("http://localhost/v1/messaging").build())
+                .protocol(Protocol.HTTP_1_1).code(200).message("OK")
+                .body(ResponseBody.create("{}", MediaType.get("application/json"))).build());
+    }
+
+    public void testSendsAreRecorded() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200)
+                .setBody("{\"reference_id\": \"0123456789ABCDEF0123456789ABCDEF\"}"));
+        this.mockServer.enqueue(new MockResponse().setResponseCode(400).setBody("{}"));
+
+        AuditLog auditLog = new AuditLog(this.directory);
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        messagingClient.setAuditLog(auditLog);
+        VoiceClient voiceClient = new VoiceClient(this.customerId, this.apiKey, restEndpoint());
+        voiceClient.setAuditLog(auditLog);
+
+        messagingClient.message("15555555555", "Test Message Content", "ARN", null);
+        voiceClient.call("15555555556", "Test Message Content", "OTP", null);
+        assertTrue(auditLog.flush(5, TimeUnit.SECONDS));
+
+        List<JsonObject> records = readRecords();
+        assertEquals(2, records.size());
+        assertEquals("message", records.get(0).get("kind").getAsString());
+        assertEquals("15555555555", records.get(0).get("phone_number").getAsString());
+        assertEquals("ARN", records.get(0).get("message_type").getAsString());
+        assertEquals("0123456789ABCDEF0123456789ABCDEF", records.get(0).get("reference_id").getAsString());
+        assertEquals(200, records.get(0).get("status").getAsInt());
+        assertFalse("the message text should not be recorded", records.get(0).toString().contains("Test Message"));
+        assertEquals("call", records.get(1).get("kind").getAsString());
+        assertEquals(400, records.get(1).get("status").getAsInt());
+        assertFalse(records.get(1).has("reference_id"));
+        assertEquals(2, auditLog.getWrittenCount());
+
+        auditLog.close();
+    }
+
+    public void testTemplateAndFailedSendsAreRecorded() throws Exception {
+
+        AuditLog auditLog = new AuditLog(this.directory);
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        messagingClient.setAuditLog(auditLog);
+        this.mockServer.shutdown();
+
+        try {
+            messagingClient.message(MessageTemplate.compile("Your code is %s", "OTP"), "15555555555", 12345);
+            fail("the send should fail");
+        } catch (IOException e) {
+            // Expected.
+        }
+        auditLog.close();
+
+        List<JsonObject> records = readRecords();
+        assertEquals(1, records.size());
+        assertEquals("OTP", records.get(0).get("message_type").getAsString());
+        assertEquals(0, records.get(0).get("status").getAsInt());
+        assertTrue(records.get(0).has("error"));
+    }
+
+    public void testSuppressedDuplicateIsNotRecordedAsMessage() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200)
+                .setBody("{\"reference_id\": \"0123456789ABCDEF0123456789ABCDEF\"}"));
+
+        AuditLog auditLog = new AuditLog(this.directory);
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        messagingClient.setAuditLog(auditLog);
+        messagingClient.setDuplicateSuppressor(new DuplicateSuppressor());
+
+        messagingClient.message("15555555555", "Test Message Content", "ARN", null);
+        messagingClient.message("15555555555", "Test Message Content", "ARN", null);
+        assertTrue(auditLog.flush(5, TimeUnit.SECONDS));
+
+        List<JsonObject> records = readRecords();
+        assertEquals(2, records.size());
+        assertEquals("message", records.get(0).get("kind").getAsString());
+        assertEquals("duplicate", records.get(1).get("kind").getAsString());
+        assertEquals("0123456789ABCDEF0123456789ABCDEF", records.get(1).get("reference_id").getAsString());
+        assertEquals(1, this.mockServer.getRequestCount());
+
+        auditLog.close();
+    }
+
+    public void testRedaction() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        AuditLog auditLog = new AuditLog(this.directory);
+        auditLog.setRedactor(AuditLog.maskPhoneNumber(4));
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        messagingClient.setAuditLog(auditLog);
+
+        messagingClient.message("15555555555", "Test Message Content", "ARN", null);
+        auditLog.close();
+
+        assertEquals("*******5555", readRecords().get(0).get("phone_number").getAsString());
+    }
+
+    public void testDropWhenFull() throws Exception {
+
+        AuditLog auditLog = new AuditLog(this.directory, 4, 1024 * 1024, AuditLog.Overflow.DROP);
+        RestClient.TelesignResponse response = okResponse();
+        for (int i = 0; i < 10000; i++) {
+            auditLog.record("message", "15555555555", "ARN", response);
+        }
+        auditLog.close();
+
+        assertEquals(10000, auditLog.getWrittenCount() + auditLog.getDroppedCount());
+        assertEquals(auditLog.getWrittenCount(), readRecords().size());
+    }
+
+    public void testBlockWhenFull() throws Exception {
+
+        AuditLog auditLog = new AuditLog(this.directory, 4, 1024 * 1024, AuditLog.Overflow.BLOCK);
+        RestClient.TelesignResponse response = okResponse();
+        for (int i = 0; i < 1000; i++) {
+            auditLog.record("message", "15555555555", "ARN", response);
+        }
+        auditLog.close();
+
+        assertEquals(0, auditLog.getDroppedCount());
+        assertEquals(1000, auditLog.getWrittenCount());
+        assertEquals(1000, readRecords().size());
+    }
+
+    public void testThrowingRedactorFailsOnlyItsRecord() throws Exception {
+
+        AuditLog auditLog = new AuditLog(this.directory, 4, 1024 * 1024, AuditLog.Overflow.BLOCK);
+        auditLog.setRedactor(new AuditLog.Redactor() {
+            @Override
+            public String redact(String field, String value) {
+                if (value.equals("15555555556")) {
+                    throw new IllegalStateException("cannot redact " + field);
+                }
+                return value;
+            }
+        });
+        RestClient.TelesignResponse response = okResponse();
+        for (int i = 0; i < 1000; i++) {
+            auditLog.record("message", i % 2 == 0 ? "15555555555" : "15555555556", "ARN", response);
+        }
+        auditLog.close();
+
+        assertEquals(500, auditLog.getFailedCount());
+        assertEquals(500, auditLog.getWrittenCount());
+        assertEquals(500, readRecords().size());
+    }
+
+    public void testBlockStopsWhenWriterDies() throws Exception {
+
+        final AuditLog auditLog = new AuditLog(this.directory, 4, 1024 * 1024, AuditLog.Overflow.BLOCK);
+        auditLog.setRedactor(new AuditLog.Redactor() {
+            @Override
+            public String redact(String field, String value) {
+                throw new Error("redactor bug");
+            }
+        });
+        final RestClient.TelesignResponse response = okResponse();
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    auditLog.record("message", "15555555555", "ARN", response);
+                }
+            }
+        });
+        sender.start();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse("sends should not block once the writer has died", sender.isAlive());
+        assertTrue(auditLog.getDroppedCount() > 0);
+        auditLog.close();
+    }
+
+    public void testFilesRoll() throws Exception {
+
+        AuditLog auditLog = new AuditLog(this.directory, 1024, 1000, AuditLog.Overflow.BLOCK);
+        RestClient.TelesignResponse response = okResponse();
+        for (int i = 0; i < 100; i++) {
+            auditLog.record("message", "15555555555", "ARN", response);
+        }
+        auditLog.close();
+
+        assertTrue("records should be spread over several files", this.directory.listFiles().length > 1);
+        assertEquals(100, readRecords().size());
+
+        // A new log continues after the existing files.
+        int files = this.directory.listFiles().length;
+        AuditLog next = new AuditLog(this.directory);
+        next.record("message", "15555555555", "ARN", response);
+        next.close();
+        assertEquals(files + 1, this.directory.listFiles().length);
+    }
+}
@@ -0,0 +1,120 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BulkheadTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testLanesAreIsolated() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead(4, 0, 0, TimeUnit.MILLISECONDS);
+        bulkhead.setLane("/v1/voice", 1, 0, 0);
+
+        bulkhead.acquire("/v1/voice", Bulkhead.Priority.INTERACTIVE);
+        try {
+            bulkhead.acquire("/v1/voice/{}", Bulkhead.Priority.INTERACTIVE);
+            fail("voice lane should be full");
+        } catch (Bulkhead.BulkheadFullException e) {
+            // expected
+        }
+
+        bulkhead.acquire("/v1/messaging", Bulkhead.Priority.INTERACTIVE);
+        assertEquals("voice in flight is not as expected", 1, bulkhead.getInFlight("/v1/voice"));
+        assertEquals("default in flight is not as expected", 1, bulkhead.getInFlight(""));
+    }
+
+    public void testReservedSlotsOnlyAdmitInteractive() throws Exception {
+
+        Bulkhead bulkhead = new Bulkhead(4, 0, 0, TimeUnit.MILLISECONDS);
+        bulkhead.setLane("/v1/messaging", 2, 0, 1);
+
+        bulkhead.acquire("/v1/messaging", Bulkhead.Priority.BULK);
+        try {
+            bulkhead.acquire("/v1/messaging", Bulkhead.Priority.BACKGROUND);
+            fail("reserved slot should not admit background traffic");
+        } catch (Bulkhead.BulkheadFullException e) {
+            // expected
+        }
+        bulkhead.acquire("/v1/messaging", Bulkhead.Priority.INTERACTIVE);
+    }
+
+    public void testQueuedRequestsAreAdmittedInPriorityOrder() throws Exception {
+
+        final Bulkhead bulkhead = new Bulkhead(1, 10, 5, TimeUnit.SECONDS);
+        Bulkhead.Slot held = bulkhead.acquire("/v1/messaging", Bulkhead.Priority.INTERACTIVE);
+
+        final List<Bulkhead.Priority> admitted = Collections.synchronizedList(new ArrayList<Bulkhead.Priority>());
+        List<Thread> threads = new ArrayList<>();
+        for (final Bulkhead.Priority priority : new Bulkhead.Priority[]{Bulkhead.Priority.BACKGROUND,
+                Bulkhead.Priority.BULK, Bulkhead.Priority.INTERACTIVE}) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Bulkhead.Slot slot = bulkhead.acquire("/v1/messaging", priority);
+                        admitted.add(priority);
+                        slot.release();
+                    } catch (Exception e) {
+                        admitted.add(null);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+            while (bulkhead.getQueued("") < threads.size()) {
+                Thread.sleep(1);
+            }
+        }
+
+        held.release();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("admission order is not as expected", Arrays.asList(Bulkhead.Priority.INTERACTIVE,
+                Bulkhead.Priority.BULK, Bulkhead.Priority.BACKGROUND), admitted);
+    }
+
+    public void testRestClientReleasesSlots() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        Bulkhead bulkhead = new Bulkhead(1, 0, 0, TimeUnit.MILLISECONDS);
+        VoiceClient client = new VoiceClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setBulkhead(bulkhead);
+        client.setPriority(Bulkhead.Priority.BULK);
+
+        client.call("18005555555", "Test Message Content", "ARN", null);
+
+        assertEquals("slot should have been released", 0, bulkhead.getInFlight(""));
+    }
+}
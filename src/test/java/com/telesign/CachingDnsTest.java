@@ -0,0 +1,194 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.Dns;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingDnsTest extends TestCase {
+
+    private static class CountingDns implements Dns {
+
+        final AtomicInteger lookups = new AtomicInteger();
+        volatile List<InetAddress> addresses;
+        volatile long delayMillis;
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            this.lookups.incrementAndGet();
+            if (this.delayMillis > 0) {
+                try {
+                    Thread.sleep(this.delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (this.addresses == null) {
+                throw new UnknownHostException(hostname);
+            }
+            return this.addresses;
+        }
+    }
+
+    public void testCachesWithinTtl() throws Exception {
+
+        CountingDns delegate = new CountingDns();
+        delegate.addresses = Arrays.asList(InetAddress.getByName("10.0.0.1"));
+        CachingDns dns = new CachingDns(delegate, 1, 1, TimeUnit.HOURS, 1.0);
+
+        assertEquals(delegate.addresses, dns.lookup("rest-api.telesign.com"));
+        assertEquals(delegate.addresses, dns.lookup("rest-api.telesign.com"));
+
+        assertEquals("delegate should be called once", 1, delegate.lookups.get());
+        assertEquals("hit count is not as expected", 1, dns.getHitCount());
+        assertEquals("miss count is not as expected", 1, dns.getMissCount());
+    }
+
+    public void testConcurrentMissesShareOneResolution() throws Exception {
+
+        final CountingDns delegate = new CountingDns();
+        delegate.addresses = Arrays.asList(InetAddress.getByName("10.0.0.1"));
+        delegate.delayMillis = 200;
+        final CachingDns dns = new CachingDns(delegate, 1, 1, TimeUnit.HOURS, 1.0);
+
+        final List<List<InetAddress>> results = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(dns.lookup("rest-api.telesign.com"));
+                    } catch (UnknownHostException e) {
+                        // Counted below as a missing result.
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("every lookup should get the addresses", 10, results.size());
+        assertEquals("delegate should be called once", 1, delegate.lookups.get());
+    }
+
+    public void testRefreshesInBackground() throws Exception {
+
+        CountingDns delegate = new CountingDns();
+        delegate.addresses = Arrays.asList(InetAddress.getByName("10.0.0.1"));
+        CachingDns dns = new CachingDns(delegate, 1, 1, TimeUnit.HOURS, 0.0000001);
+
+        dns.lookup("rest-api.telesign.com");
+        Thread.sleep(5);
+        delegate.addresses = Arrays.asList(InetAddress.getByName("10.0.0.2"));
+
+        assertEquals("stale addresses should be served while refreshing",
+                InetAddress.getByName("10.0.0.1"), dns.lookup("rest-api.telesign.com").get(0));
+        for (int i = 0; i < 100 && dns.getRefreshCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(10);
+        assertEquals("refreshed addresses should be served", InetAddress.getByName("10.0.0.2"),
+                dns.lookup("rest-api.telesign.com").get(0));
+    }
+
+    public void testNegativeCaching() throws Exception {
+
+        CountingDns delegate = new CountingDns();
+        CachingDns dns = new CachingDns(delegate, 1, 1, TimeUnit.HOURS, 1.0);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                dns.lookup("unknown.telesign.com");
+                fail("lookup should fail");
+            } catch (UnknownHostException e) {
+                // expected
+            }
+        }
+        assertEquals("failure should be cached", 1, delegate.lookups.get());
+        assertEquals("failure count is not as expected", 1, dns.getFailureCount());
+    }
+
+    public void testPinning() throws Exception {
+
+        CountingDns delegate = new CountingDns();
+        CachingDns dns = new CachingDns(delegate, 1, 1, TimeUnit.HOURS, 1.0);
+        dns.pin("detect.telesign.com", InetAddress.getByName("10.0.0.3"));
+
+        assertEquals(InetAddress.getByName("10.0.0.3"), dns.lookup("detect.telesign.com").get(0));
+        assertEquals("delegate should not be called", 0, delegate.lookups.get());
+    }
+
+    public void testInterleave() throws Exception {
+
+        InetAddress v6a = InetAddress.getByName("::1");
+        InetAddress v6b = InetAddress.getByName("::2");
+        InetAddress v4a = InetAddress.getByName("10.0.0.1");
+        InetAddress v4b = InetAddress.getByName("10.0.0.2");
+
+        assertEquals(Arrays.asList(v6a, v4a, v6b, v4b), CachingDns.interleave(Arrays.asList(v6a, v6b, v4a, v4b)));
+        assertEquals(Arrays.asList(v4a, v6a, v4b), CachingDns.interleave(Arrays.asList(v4a, v4b, v6a)));
+    }
+
+    public void testRestClientUsesDns() throws Exception {
+
+        MockWebServer mockServer = new MockWebServer();
+        mockServer.start();
+        try {
+            mockServer.enqueue(new MockResponse().setBody("{}"));
+
+            CountingDns delegate = new CountingDns();
+            delegate.addresses = Arrays.asList(InetAddress.getByName(mockServer.getHostName()));
+            CachingDns dns = new CachingDns(delegate, 1, 1, TimeUnit.HOURS, 1.0);
+
+            RestClient client = new RestClient("FFFFFFFF-EEEE-DDDD-1234-AB1234567890",
+                    "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==",
+                    "http://telesign.test:" + mockServer.getPort());
+            client.setDns(dns);
+
+            assertEquals("HTTP Status code mismatch", 200, client.get("/test/resource", null).statusCode);
+            assertEquals("delegate should be called once", 1, delegate.lookups.get());
+        } finally {
+            mockServer.shutdown();
+        }
+    }
+
+    public void testStalledAddressFallsBackToNext() throws Exception {
+
+        MockWebServer mockServer = new MockWebServer();
+        mockServer.start();
+        try {
+            mockServer.enqueue(new MockResponse().setBody("{}"));
+
+            // An address from TEST-NET-1, which never answers, ahead of the server's own.
+            CachingDns dns = new CachingDns(new CountingDns(), 1, 1, TimeUnit.HOURS, 1.0);
+            dns.pin("telesign.test", InetAddress.getByName("192.0.2.1"),
+                    InetAddress.getByName(mockServer.getHostName()));
+
+            RestClient client = new RestClient("FFFFFFFF-EEEE-DDDD-1234-AB1234567890",
+                    "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==",
+                    "http://telesign.test:" + mockServer.getPort(), 1, 5, 5, null, null, null, null, null, null);
+            client.setDns(dns);
+
+            long start = System.nanoTime();
+            assertEquals("HTTP Status code mismatch", 200, client.get("/test/resource", null).statusCode);
+            // OkHttp 5 moves on after 250 ms, OkHttp 4 once the 1 second connect timeout has passed.
+            assertTrue("the request should fall back to the next address",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        } finally {
+            mockServer.shutdown();
+        }
+    }
+}
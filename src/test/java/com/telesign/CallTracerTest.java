@@ -0,0 +1,169 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class CallTracerTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        mockServer = new MockWebServer();
+        mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    private String restEndpoint() {
+        return this.mockServer.url("").toString().replaceAll("/$", "");
+    }
+
+    /**
+     * Propagates a trace id held in a thread local as a traceparent header, and records every ended call.
+     */
+    private static class RecordingTracer implements CallTracer {
+
+        static final ThreadLocal<String> TRACE_ID = new ThreadLocal<>();
+
+        final List<String> ended = new CopyOnWriteArrayList<>();
+        volatile Throwable error;
+        volatile long durationNanos;
+        volatile long signingNanos;
+
+        @Override
+        public Object begin(String method, String resourceTemplate, Request.Builder request) {
+            String traceId = TRACE_ID.get();
+            if (traceId != null) {
+                request.header("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01");
+            }
+            return method + " " + resourceTemplate;
+        }
+
+        @Override
+        public void end(Object span, String method, String resourceTemplate, int statusCode, Throwable error,
+                        long signingNanos, long queueNanos, long durationNanos) {
+            this.ended.add(span + " " + statusCode);
+            this.error = error;
+            this.signingNanos = signingNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public Runnable wrap(final Runnable task) {
+            final String traceId = TRACE_ID.get();
+            return new Runnable() {
+                @Override
+                public void run() {
+                    String previous = TRACE_ID.get();
+                    TRACE_ID.set(traceId);
+                    try {
+                        task.run();
+                    } finally {
+                        TRACE_ID.set(previous);
+                    }
+                }
+            };
+        }
+    }
+
+    public void testHeadersAreInjectedAndCallsEnded() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        RecordingTracer tracer = new RecordingTracer();
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        client.setCallTracer(tracer);
+
+        RecordingTracer.TRACE_ID.set("4bf92f3577b34da6a3ce929d0e0e4736");
+        try {
+            client.message("15555555555", "Test Message Content", "ARN", null);
+        } finally {
+            RecordingTracer.TRACE_ID.remove();
+        }
+
+        RecordedRequest request = this.mockServer.takeRequest();
+        assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", request.getHeader("traceparent"));
+        assertNotNull("the request should still be signed", request.getHeader("Authorization"));
+        assertEquals(1, tracer.ended.size());
+        assertEquals("POST /v1/messaging 200", tracer.ended.get(0));
+        assertNull(tracer.error);
+        assertTrue(tracer.signingNanos > 0);
+        assertTrue(tracer.durationNanos >= tracer.signingNanos);
+    }
+
+    public void testFailedCallIsEnded() throws Exception {
+
+        RecordingTracer tracer = new RecordingTracer();
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        client.setCallTracer(tracer);
+        this.mockServer.shutdown();
+
+        try {
+            client.status("0123456789ABCDEF0123456789ABCDEF", null);
+            fail("the call should fail");
+        } catch (IOException e) {
+            assertSame(e, tracer.error);
+        }
+
+        assertEquals(1, tracer.ended.size());
+        assertEquals("GET /v1/messaging/{} 0", tracer.ended.get(0));
+    }
+
+    public void testContextIsCarriedToFraudScreenThreads() throws Exception {
+
+        this.mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setBody("{}");
+            }
+        });
+
+        RecordingTracer tracer = new RecordingTracer();
+        PhoneIdClient phoneIdClient = new PhoneIdClient(this.customerId, this.apiKey, restEndpoint());
+        phoneIdClient.setCallTracer(tracer);
+        ScoreClient scoreClient = new ScoreClient(this.customerId, this.apiKey, restEndpoint());
+        scoreClient.setCallTracer(tracer);
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        FraudScreen fraudScreen = new FraudScreen(phoneIdClient, scoreClient, messagingClient);
+
+        RecordingTracer.TRACE_ID.set("4bf92f3577b34da6a3ce929d0e0e4736");
+        try {
+            fraudScreen.screen("15555555555", "create");
+        } finally {
+            RecordingTracer.TRACE_ID.remove();
+            fraudScreen.close();
+        }
+
+        assertEquals(2, this.mockServer.getRequestCount());
+        for (int i = 0; i < 2; i++) {
+            assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+                    this.mockServer.takeRequest().getHeader("traceparent"));
+        }
+        assertEquals(2, tracer.ended.size());
+    }
+
+    public void testNoTracerByDefault() {
+
+        assertNull(new MessagingClient(this.customerId, this.apiKey).getCallTracer());
+    }
+}
@@ -0,0 +1,152 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimiterTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testRejectsAboveLimit() throws Exception {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 0.5, 2.0, 0, TimeUnit.MILLISECONDS);
+
+        limiter.acquire("POST /v1/messaging");
+        limiter.acquire("POST /v1/messaging");
+        try {
+            limiter.acquire("POST /v1/messaging");
+            fail("third permit should have been rejected");
+        } catch (ConcurrencyLimiter.LimitExceededException e) {
+            // expected
+        }
+
+        assertEquals("in flight count is not as expected", 2, limiter.getInFlight("POST /v1/messaging"));
+        assertEquals("other endpoints should be unaffected", 0, limiter.getInFlight("POST /v1/voice"));
+        limiter.acquire("POST /v1/voice");
+    }
+
+    public void testWaitsForPermit() throws Exception {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 0.5, 2.0, 1, TimeUnit.SECONDS);
+
+        final ConcurrencyLimiter.Permit permit = limiter.acquire("GET /v1/messaging/{}");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                permit.onResponse(200);
+            }
+        }).start();
+
+        limiter.acquire("GET /v1/messaging/{}");
+        assertEquals("in flight count is not as expected", 1, limiter.getInFlight("GET /v1/messaging/{}"));
+    }
+
+    public void testErrorsShrinkLimit() throws Exception {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 10, 0.5, 2.0, 0, TimeUnit.MILLISECONDS);
+
+        limiter.acquire("POST /v1/messaging").onError();
+        assertEquals("limit should halve on error", 4, limiter.getLimit("POST /v1/messaging"));
+
+        limiter.acquire("POST /v1/messaging").onResponse(429);
+        assertEquals("limit should halve on throttling", 2, limiter.getLimit("POST /v1/messaging"));
+
+        limiter.acquire("POST /v1/messaging").onResponse(503);
+        limiter.acquire("POST /v1/messaging").onResponse(503);
+        assertEquals("limit should not shrink below minLimit", 1, limiter.getLimit("POST /v1/messaging"));
+    }
+
+    public void testSaturatedSuccessGrowsLimit() throws Exception {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 3, 0.5, 1000.0, 0, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 10; i++) {
+            ConcurrencyLimiter.Permit first = limiter.acquire("POST /v1/messaging");
+            ConcurrencyLimiter.Permit second = limiter.acquire("POST /v1/messaging");
+            first.onResponse(200);
+            second.onResponse(200);
+        }
+
+        assertEquals("limit should grow up to maxLimit", 3, limiter.getLimit("POST /v1/messaging"));
+    }
+
+    public void testRestClientReleasesPermits() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}").setResponseCode(503));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10, 0.5, 2.0, 0, TimeUnit.MILLISECONDS);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setConcurrencyLimiter(limiter);
+
+        client.status("FakeReferenceId", null);
+        client.status("OtherReferenceId", null);
+
+        assertEquals("limit should have shrunk after the 503", 2, limiter.getLimit("GET /v1/messaging/{}"));
+        assertEquals("every permit should have been released", 0, limiter.getInFlight("GET /v1/messaging/{}"));
+    }
+
+    public void testRestClientReleasesPermitWhenResendFails() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}").setResponseCode(401));
+
+        // Previous credentials whose key cannot be used, so signing the resend after the 401 fails.
+        final CredentialProvider.Credentials broken = new CredentialProvider.Credentials(this.customerId, this.apiKey) {
+            @Override
+            SecretKeySpec hmacKey() {
+                return null;
+            }
+        };
+        CredentialProvider credentialProvider = new CredentialProvider(this.customerId, this.apiKey) {
+            @Override
+            public Credentials getPrevious() {
+                return broken;
+            }
+        };
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10, 0.5, 2.0, 0, TimeUnit.MILLISECONDS);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setCredentialProvider(credentialProvider);
+        client.setConcurrencyLimiter(limiter);
+
+        try {
+            client.status("FakeReferenceId", null);
+            fail("signing the resend should fail");
+        } catch (GeneralSecurityException e) {
+            // expected
+        }
+
+        assertEquals("the permit should have been released", 0, limiter.getInFlight("GET /v1/messaging/{}"));
+    }
+}
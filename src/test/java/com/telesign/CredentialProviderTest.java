@@ -0,0 +1,143 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class CredentialProviderTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+    private String newApiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+        this.newApiKey = "ROTATED----aGVsbG8gd29ybGQgdGhpcyBpcyBhIG5ldyBrZXkgZm9yIHRlc3Rpbmc=";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testCachedKeySignsLikeStaticMethod() throws Exception {
+
+        CredentialProvider.Credentials credentials = new CredentialProvider.Credentials(this.customerId, this.apiKey);
+
+        Map<String, String> expected = RestClient.generateTelesignHeaders(this.customerId, this.apiKey, "POST",
+                "/v1/resource", "test=param", "Wed, 14 Dec 2016 18:20:12 GMT", "A1592C6F-E384-4CDB-BC42-C3AB970369E9",
+                null, "application/x-www-form-urlencoded", "HMAC-SHA256");
+        Map<String, String> actual = RestClient.generateTelesignHeaders(credentials, "POST", "/v1/resource",
+                "test=param", "Wed, 14 Dec 2016 18:20:12 GMT", "A1592C6F-E384-4CDB-BC42-C3AB970369E9", null,
+                "application/x-www-form-urlencoded", "HMAC-SHA256");
+
+        assertEquals("headers are not as expected", expected, actual);
+        assertSame("decoded key should be cached", credentials.hmacKey(), credentials.hmacKey());
+    }
+
+    public void testRotation() {
+
+        CredentialProvider provider = new CredentialProvider(this.customerId, this.apiKey);
+        CredentialProvider.Credentials original = provider.getCurrent();
+        assertNull("there should be no previous credentials", provider.getPrevious());
+
+        provider.rotate(this.customerId, this.newApiKey);
+
+        assertEquals("current key is not as expected", this.newApiKey, provider.getCurrent().getApiKey());
+        assertSame("previous credentials are not as expected", original, provider.getPrevious());
+
+        provider.retirePrevious();
+        assertNull("previous credentials should be retired", provider.getPrevious());
+    }
+
+    public void testOverlapExpires() throws Exception {
+
+        CredentialProvider provider = new CredentialProvider(this.customerId, this.apiKey);
+        provider.rotate(this.customerId, this.newApiKey, 50, TimeUnit.MILLISECONDS);
+        assertNotNull("previous credentials should overlap", provider.getPrevious());
+
+        Thread.sleep(100);
+        assertNull("overlap should have expired", provider.getPrevious());
+
+        provider.rotate(this.customerId, this.apiKey, 0, TimeUnit.MILLISECONDS);
+        assertNull("zero overlap should retire immediately", provider.getPrevious());
+    }
+
+    public void testUnboundedOverlapWithNegativeClock() {
+
+        // System.nanoTime may be negative, which must not make an unbounded overlap look expired.
+        CredentialProvider provider = new CredentialProvider(this.customerId, this.apiKey);
+        CredentialProvider.Credentials original = provider.getCurrent();
+        provider.rotate(this.customerId, this.newApiKey, Long.MAX_VALUE, -TimeUnit.DAYS.toNanos(1));
+
+        assertSame("previous credentials should overlap", original,
+                provider.getPrevious(-TimeUnit.DAYS.toNanos(1) + TimeUnit.HOURS.toNanos(1)));
+        assertSame("previous credentials should overlap", original, provider.getPrevious(TimeUnit.DAYS.toNanos(365)));
+
+        provider.rotate(this.customerId, this.apiKey, TimeUnit.MINUTES.toNanos(1), Long.MIN_VALUE + 1);
+        assertNotNull("previous credentials should overlap", provider.getPrevious(Long.MIN_VALUE + 2));
+        assertNull("overlap should have expired", provider.getPrevious(Long.MIN_VALUE + TimeUnit.MINUTES.toNanos(2)));
+    }
+
+    public void testRotatedKeyIsUsedWithoutRebuildingClient() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+
+        client.status("FakeReferenceId", null);
+        client.getCredentialProvider().rotate(this.customerId, this.newApiKey);
+        client.status("FakeReferenceId", null);
+
+        RecordedRequest before = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        RecordedRequest after = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+
+        assertEquals("request should be signed with the original key", expectedAuthorization(before, this.apiKey),
+                before.getHeader("Authorization"));
+        assertEquals("request should be signed with the rotated key", expectedAuthorization(after, this.newApiKey),
+                after.getHeader("Authorization"));
+    }
+
+    public void testUnauthorizedIsRetriedWithPreviousKey() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(401).setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        CredentialProvider provider = new CredentialProvider(this.customerId, this.apiKey);
+        provider.rotate(this.customerId, this.newApiKey);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setCredentialProvider(provider);
+
+        RestClient.TelesignResponse response = client.status("FakeReferenceId", null);
+
+        assertEquals("status code is not as expected", 200, response.statusCode);
+        RecordedRequest rejected = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        RecordedRequest retried = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("first attempt should use the new key", expectedAuthorization(rejected, this.newApiKey),
+                rejected.getHeader("Authorization"));
+        assertEquals("retry should use the previous key", expectedAuthorization(retried, this.apiKey),
+                retried.getHeader("Authorization"));
+    }
+
+    private String expectedAuthorization(RecordedRequest request, String apiKey) throws Exception {
+        return RestClient.generateTelesignHeaders(this.customerId, apiKey, request.getMethod(),
+                request.getRequestUrl().encodedPath(), "", request.getHeader("Date"),
+                request.getHeader("x-ts-nonce"), null, null, "HMAC-SHA256").get("Authorization");
+    }
+}
@@ -0,0 +1,305 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+public class DeadlineTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        mockServer = new MockWebServer();
+        mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    private String restEndpoint() {
+        return this.mockServer.url("").toString().replaceAll("/$", "");
+    }
+
+    private static Deadline.Task<RestClient.TelesignResponse> status(final MessagingClient client) {
+        return new Deadline.Task<RestClient.TelesignResponse>() {
+            @Override
+            public RestClient.TelesignResponse run() throws IOException, GeneralSecurityException {
+                return client.status("0123456789ABCDEF0123456789ABCDEF", null);
+            }
+        };
+    }
+
+    public void testSlowCallIsAbandonedAtDeadline() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}")
+                .setHeadersDelay(5, TimeUnit.SECONDS));
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        Deadline deadline = Deadline.after(200, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        try {
+            deadline.run(status(client));
+            fail("the call should be abandoned");
+        } catch (Deadline.ExceededException e) {
+            assertNotNull(e.getCause());
+        }
+        assertTrue("the call should end at its deadline",
+                System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        assertTrue(deadline.isExpired());
+        assertNull("the deadline should apply only within run", Deadline.current());
+    }
+
+    public void testExpiredDeadlineSendsNothing() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+
+        try {
+            deadline.run(status(client));
+            fail("the call should not be sent");
+        } catch (Deadline.ExceededException e) {
+            // Expected.
+        }
+        assertEquals(0, this.mockServer.getRequestCount());
+    }
+
+    public void testCancel() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}")
+                .setHeadersDelay(5, TimeUnit.SECONDS));
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        final Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                deadline.cancel();
+            }
+        });
+        canceller.start();
+
+        long start = System.nanoTime();
+        try {
+            deadline.run(status(client));
+            fail("the call should be cancelled");
+        } catch (Deadline.CancelledException e) {
+            // Expected.
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        canceller.join();
+
+        // Later calls under a cancelled deadline are not sent.
+        try {
+            deadline.run(status(client));
+            fail("the call should not be sent");
+        } catch (Deadline.CancelledException e) {
+            // Expected.
+        }
+        assertEquals(1, this.mockServer.getRequestCount());
+    }
+
+    /**
+     * Starts a slow call on another thread and waits until it reaches the server, holding its slot or permit.
+     */
+    private void startSlowCall(final MessagingClient client) throws InterruptedException {
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}")
+                .setHeadersDelay(5, TimeUnit.SECONDS));
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.status("0123456789ABCDEF0123456789ABCDEF", null);
+                } catch (IOException | GeneralSecurityException e) {
+                    // The server is shut down under it.
+                }
+            }
+        });
+        slow.setDaemon(true);
+        slow.start();
+        while (this.mockServer.getRequestCount() == 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    public void testSaturatedBulkheadWaitEndsAtDeadline() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        Bulkhead bulkhead = new Bulkhead(1, 1, 10, TimeUnit.SECONDS);
+        client.setBulkhead(bulkhead);
+        startSlowCall(client);
+
+        long start = System.nanoTime();
+        try {
+            Deadline.after(200, TimeUnit.MILLISECONDS).run(status(client));
+            fail("the call should not wait past its deadline");
+        } catch (Deadline.ExceededException e) {
+            // Expected.
+        }
+        assertTrue("the wait should end at the deadline", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals("the queued call should be dequeued", 0, bulkhead.getQueued(""));
+        assertEquals(1, this.mockServer.getRequestCount());
+    }
+
+    public void testCancelWakesCallWaitingForPermit() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        client.setConcurrencyLimiter(new ConcurrencyLimiter(1, 1, 1, 0.9, 2.0, 10, TimeUnit.SECONDS));
+        startSlowCall(client);
+
+        final Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                deadline.cancel();
+            }
+        });
+        canceller.start();
+
+        long start = System.nanoTime();
+        try {
+            deadline.run(status(client));
+            fail("the call should be cancelled");
+        } catch (Deadline.CancelledException e) {
+            // Expected.
+        }
+        assertTrue("the wait should end when cancelled", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        canceller.join();
+        assertEquals(1, this.mockServer.getRequestCount());
+    }
+
+    public void testCancelWakesCallWaitingForSlot() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        Bulkhead bulkhead = new Bulkhead(1, 1, 10, TimeUnit.SECONDS);
+        client.setBulkhead(bulkhead);
+        startSlowCall(client);
+
+        final Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                deadline.cancel();
+            }
+        });
+        canceller.start();
+
+        long start = System.nanoTime();
+        try {
+            deadline.run(status(client));
+            fail("the call should be cancelled");
+        } catch (Deadline.CancelledException e) {
+            // Expected.
+        }
+        assertTrue("the wait should end when cancelled", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        canceller.join();
+        assertEquals("the queued call should be dequeued", 0, bulkhead.getQueued(""));
+    }
+
+    public void testCallWithinDeadline() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        Deadline deadline = Deadline.after(5, TimeUnit.SECONDS);
+
+        assertEquals(200, deadline.run(status(client)).statusCode);
+        assertTrue(deadline.remaining(TimeUnit.MILLISECONDS) > 0);
+        assertFalse(deadline.isCancelled());
+    }
+
+    public void testPropagatedTaskRestoresThreadDeadline() throws Exception {
+
+        final Deadline outer = Deadline.after(5, TimeUnit.SECONDS);
+        final Deadline[] seen = new Deadline[1];
+        final Runnable task = outer.run(new Deadline.Task<Runnable>() {
+            @Override
+            public Runnable run() {
+                return Deadline.propagate(new Runnable() {
+                    @Override
+                    public void run() {
+                        seen[0] = Deadline.current();
+                    }
+                });
+            }
+        });
+
+        task.run();
+        assertSame("the task should run under the propagated deadline", outer, seen[0]);
+        assertNull("a thread without a deadline should be left without one", Deadline.current());
+
+        final Deadline other = Deadline.after(1, TimeUnit.SECONDS);
+        other.run(new Deadline.Task<Object>() {
+            @Override
+            public Object run() {
+                task.run();
+                assertSame("the thread's own deadline should be restored", other, Deadline.current());
+                return null;
+            }
+        });
+    }
+
+    public void testDeadlineIsCarriedToFraudScreenThreads() throws Exception {
+
+        this.mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setBody("{}")
+                        .setHeadersDelay(5, TimeUnit.SECONDS);
+            }
+        });
+
+        PhoneIdClient phoneIdClient = new PhoneIdClient(this.customerId, this.apiKey, restEndpoint());
+        ScoreClient scoreClient = new ScoreClient(this.customerId, this.apiKey, restEndpoint());
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey, restEndpoint());
+        final FraudScreen fraudScreen = new FraudScreen(phoneIdClient, scoreClient, messagingClient);
+
+        long start = System.nanoTime();
+        try {
+            Deadline.after(200, TimeUnit.MILLISECONDS).run(new Deadline.Task<Object>() {
+                @Override
+                public Object run() throws IOException, GeneralSecurityException {
+                    return fraudScreen.screen("15555555555", "create");
+                }
+            });
+        } catch (IOException e) {
+            // A screen may fail, or fail open, once its checks are abandoned.
+        } finally {
+            fraudScreen.close();
+        }
+        assertTrue("the checks should end at the deadline",
+                System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+    }
+}
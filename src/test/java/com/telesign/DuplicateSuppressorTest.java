@@ -0,0 +1,231 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DuplicateSuppressorTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testIdempotencyKeyIsDeterministic() {
+
+        Map<String, String> first = new LinkedHashMap<>();
+        first.put("message", "Your code is 123456");
+        first.put("message_type", "OTP");
+        Map<String, String> second = new LinkedHashMap<>();
+        second.put("message_type", "OTP");
+        second.put("message", "Your code is 123456");
+
+        String key = DuplicateSuppressor.idempotencyKey("15555555555", first);
+        assertEquals("key should not depend on parameter order", key,
+                DuplicateSuppressor.idempotencyKey("15555555555", second));
+        assertTrue("key should be formatted as a UUID",
+                key.matches("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}"));
+        assertFalse("key should depend on the phone number",
+                key.equals(DuplicateSuppressor.idempotencyKey("15555555556", first)));
+
+        second.put("message", "Your code is 654321");
+        assertFalse("key should depend on the content",
+                key.equals(DuplicateSuppressor.idempotencyKey("15555555555", second)));
+    }
+
+    public void testDuplicateIsSuppressed() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{\"reference_id\":\"FIRST\"}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{\"reference_id\":\"SECOND\"}"));
+
+        MessagingClient client = newClient(new DuplicateSuppressor());
+
+        RestClient.TelesignResponse original = client.message("15555555555", "Your code is 123456", "OTP", null);
+        RestClient.TelesignResponse duplicate = client.message("15555555555", "Your code is 123456", "OTP", null);
+        RestClient.TelesignResponse other = client.message("15555555555", "Your code is 654321", "OTP", null);
+
+        assertSame("duplicate should return the original response", original, duplicate);
+        assertEquals("other message should be sent", "SECOND", other.json.get("reference_id").getAsString());
+        assertEquals("suppressed count is not as expected", 1, client.getDuplicateSuppressor().getSuppressedCount());
+        assertEquals("request count is not as expected", 2, this.mockServer.getRequestCount());
+
+        RecordedRequest request = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        Map<String, String> params = new HashMap<>();
+        params.put("phone_number", "15555555555");
+        params.put("message", "Your code is 123456");
+        params.put("message_type", "OTP");
+        assertEquals("idempotency key is not as expected",
+                DuplicateSuppressor.idempotencyKey("15555555555", params),
+                request.getHeader(DuplicateSuppressor.IDEMPOTENCY_KEY_HEADER));
+    }
+
+    public void testFailedSendIsNotRemembered() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(503).setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{\"reference_id\":\"RETRIED\"}"));
+
+        MessagingClient client = newClient(new DuplicateSuppressor());
+
+        assertEquals("status code is not as expected", 503,
+                client.message("15555555555", "Your code is 123456", "OTP", null).statusCode);
+        assertEquals("retry should be sent", "RETRIED",
+                client.message("15555555555", "Your code is 123456", "OTP", null).json.get("reference_id")
+                        .getAsString());
+    }
+
+    public void testOriginalFailingWithErrorIsForgotten() throws Exception {
+
+        final DuplicateSuppressor suppressor = new DuplicateSuppressor();
+        try {
+            suppressor.send("00000000-0000-0000-0000-000000000001", new DuplicateSuppressor.Send() {
+                @Override
+                public RestClient.TelesignResponse send() {
+                    throw new AssertionError("failed");
+                }
+            });
+            fail("the error should be thrown");
+        } catch (AssertionError e) {
+            // expected
+        }
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        final MessagingClient client = newClient(null);
+        FutureTask<RestClient.TelesignResponse> retry = new FutureTask<>(
+                new Callable<RestClient.TelesignResponse>() {
+                    @Override
+                    public RestClient.TelesignResponse call() throws Exception {
+                        return suppressor.send("00000000-0000-0000-0000-000000000001",
+                                new DuplicateSuppressor.Send() {
+                                    @Override
+                                    public RestClient.TelesignResponse send()
+                                            throws IOException, GeneralSecurityException {
+                                        return client.message("15555555555", "Your code is 123456", "OTP", null);
+                                    }
+                                });
+                    }
+                });
+        Thread thread = new Thread(retry);
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            assertTrue("the retry should be sent", retry.get(1, TimeUnit.SECONDS).ok);
+        } catch (TimeoutException e) {
+            fail("the retry should not wait for the original");
+        }
+    }
+
+    public void testDuplicateWaitIsLimitedByDeadline() throws Exception {
+
+        final DuplicateSuppressor suppressor = new DuplicateSuppressor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread original = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    suppressor.send("00000000-0000-0000-0000-000000000002", new DuplicateSuppressor.Send() {
+                        @Override
+                        public RestClient.TelesignResponse send() throws IOException {
+                            started.countDown();
+                            try {
+                                release.await(2, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            throw new IOException("released");
+                        }
+                    });
+                } catch (IOException | GeneralSecurityException e) {
+                    // expected
+                }
+            }
+        });
+        original.start();
+        assertTrue("the original should be in flight", started.await(1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        try {
+            Deadline.after(100, TimeUnit.MILLISECONDS).run(new Deadline.Task<RestClient.TelesignResponse>() {
+                @Override
+                public RestClient.TelesignResponse run() throws IOException, GeneralSecurityException {
+                    return suppressor.send("00000000-0000-0000-0000-000000000002", new DuplicateSuppressor.Send() {
+                        @Override
+                        public RestClient.TelesignResponse send() {
+                            throw new AssertionError("the duplicate should wait for the original");
+                        }
+                    });
+                }
+            });
+            fail("the wait should be limited by the deadline");
+        } catch (Deadline.ExceededException e) {
+            assertTrue("the duplicate should not wait past its deadline",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            release.countDown();
+            original.join();
+        }
+    }
+
+    public void testWindowExpires() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        MessagingClient client = newClient(new DuplicateSuppressor(50, TimeUnit.MILLISECONDS, 16));
+
+        client.message("15555555555", "Your code is 123456", "OTP", null);
+        Thread.sleep(100);
+        client.message("15555555555", "Your code is 123456", "OTP", null);
+
+        assertEquals("request count is not as expected", 2, this.mockServer.getRequestCount());
+    }
+
+    public void testFullTableEvicts() throws Exception {
+
+        for (int i = 0; i < 20; i++) {
+            this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        }
+        MessagingClient client = newClient(new DuplicateSuppressor(1, TimeUnit.MINUTES, 8));
+
+        for (int i = 0; i < 20; i++) {
+            client.message("15555555555", "Your code is " + i, "OTP", null);
+        }
+
+        assertEquals("every distinct message should be sent", 20, this.mockServer.getRequestCount());
+    }
+
+    private MessagingClient newClient(DuplicateSuppressor duplicateSuppressor) {
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setDuplicateSuppressor(duplicateSuppressor);
+        return client;
+    }
+}
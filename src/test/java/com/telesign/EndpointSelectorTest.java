@@ -0,0 +1,167 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class EndpointSelectorTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testFasterEndpointIsPreferred() {
+
+        EndpointSelector selector = new EndpointSelector(Arrays.asList("https://fast.example.com",
+                "https://slow.example.com"));
+        EndpointSelector.Endpoint fast = selector.getEndpoints().get(0);
+        EndpointSelector.Endpoint slow = selector.getEndpoints().get(1);
+
+        fast.onStart();
+        fast.onResponse(TimeUnit.MILLISECONDS.toNanos(20), 200);
+        slow.onStart();
+        slow.onResponse(TimeUnit.MILLISECONDS.toNanos(400), 200);
+
+        for (int i = 0; i < 20; i++) {
+            assertSame("faster endpoint should be selected", fast, selector.select(null));
+        }
+        assertSame("excluded endpoint should not be selected", slow, selector.select(fast));
+    }
+
+    public void testFailingEndpointIsEjectedAndReadmitted() throws Exception {
+
+        EndpointSelector selector = new EndpointSelector(Arrays.asList("https://a.example.com",
+                "https://b.example.com"), 3, 100, TimeUnit.MILLISECONDS);
+        EndpointSelector.Endpoint failing = selector.getEndpoints().get(0);
+        EndpointSelector.Endpoint healthy = selector.getEndpoints().get(1);
+
+        for (int i = 0; i < 3; i++) {
+            failing.onStart();
+            failing.onResponse(TimeUnit.MILLISECONDS.toNanos(1), 503);
+        }
+
+        assertTrue("endpoint should be ejected", failing.isEjected());
+        assertTrue("health should have dropped", failing.getHealth() < 1.0);
+        for (int i = 0; i < 20; i++) {
+            assertSame("ejected endpoint should not be selected", healthy, selector.select(null));
+        }
+        assertSame("ejected endpoint should be used when nothing else is left", failing, selector.select(healthy));
+
+        Thread.sleep(150);
+        assertFalse("endpoint should be re-admitted", failing.isEjected());
+
+        failing.onStart();
+        failing.onError();
+        assertTrue("re-admitted endpoint should be ejected on its first failure", failing.isEjected());
+    }
+
+    public void testSingleEndpointHasNoFallback() {
+
+        EndpointSelector selector = new EndpointSelector(Arrays.asList("https://rest-api.telesign.com/"));
+        EndpointSelector.Endpoint only = selector.select(null);
+
+        assertEquals("trailing slash should be removed", "https://rest-api.telesign.com", only.getUrl());
+        assertNull("there should be no fallback", selector.select(only));
+    }
+
+    public void testFailoverOnConnectionRefused() throws Exception {
+
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        EndpointSelector selector = new EndpointSelector(Arrays.asList("http://localhost:" + closedPort,
+                this.mockServer.url("").toString()), 1, 10, TimeUnit.SECONDS);
+        EndpointSelector.Endpoint refused = selector.getEndpoints().get(0);
+        // Make the unreachable endpoint look fastest so it is tried first.
+        refused.onStart();
+        refused.onResponse(1, 200);
+        selector.getEndpoints().get(1).onStart();
+        selector.getEndpoints().get(1).onResponse(TimeUnit.SECONDS.toNanos(1), 200);
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, "http://unused.invalid");
+        client.setEndpointSelector(selector);
+
+        RestClient.TelesignResponse response = client.status("FakeReferenceId", null);
+
+        assertEquals("status code is not as expected", 200, response.statusCode);
+        assertEquals("path is not as expected", "/v1/messaging/FakeReferenceId",
+                this.mockServer.takeRequest(1, TimeUnit.SECONDS).getPath());
+        assertTrue("refused endpoint should be ejected", refused.isEjected());
+    }
+
+    public void testFailoverKeepsBasePath() throws Exception {
+
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        EndpointSelector selector = new EndpointSelector(Arrays.asList("http://localhost:" + closedPort + "/telesign",
+                this.mockServer.url("/gateway/telesign").toString()), 1, 10, TimeUnit.SECONDS);
+        EndpointSelector.Endpoint refused = selector.getEndpoints().get(0);
+        refused.onStart();
+        refused.onResponse(1, 200);
+        selector.getEndpoints().get(1).onStart();
+        selector.getEndpoints().get(1).onResponse(TimeUnit.SECONDS.toNanos(1), 200);
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, "http://unused.invalid");
+        client.setEndpointSelector(selector);
+
+        assertEquals("status code is not as expected", 200, client.status("FakeReferenceId", null).statusCode);
+        assertEquals("path is not as expected", "/gateway/telesign/v1/messaging/FakeReferenceId",
+                this.mockServer.takeRequest(1, TimeUnit.SECONDS).getPath());
+    }
+
+    public void testDeadlineExpiryIsNotAnEndpointError() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+
+        EndpointSelector selector = new EndpointSelector(Arrays.asList(this.mockServer.url("").toString()), 1, 10,
+                TimeUnit.SECONDS);
+        final MessagingClient client = new MessagingClient(this.customerId, this.apiKey, "http://unused.invalid");
+        client.setEndpointSelector(selector);
+
+        try {
+            Deadline.after(100, TimeUnit.MILLISECONDS).run(new Deadline.Task<RestClient.TelesignResponse>() {
+                @Override
+                public RestClient.TelesignResponse run() throws IOException, GeneralSecurityException {
+                    return client.status("FakeReferenceId", null);
+                }
+            });
+            fail("the call should be abandoned");
+        } catch (Deadline.ExceededException e) {
+            // expected
+        }
+
+        assertFalse("the endpoint should not be ejected", selector.getEndpoints().get(0).isEjected());
+    }
+}
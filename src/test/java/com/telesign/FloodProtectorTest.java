@@ -0,0 +1,238 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FloodProtectorTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testParseE164() {
+
+        assertEquals("number is not as expected", 15555555555L, FloodProtector.parseE164("+1 (555) 555-5555"));
+        assertEquals("number is not as expected", 447700900123L, FloodProtector.parseE164("447700900123"));
+        assertEquals("numbers without digits should be ignored", -1, FloodProtector.parseE164("+"));
+        assertEquals("overlong numbers should be ignored", -1, FloodProtector.parseE164("1234567890123456"));
+        assertEquals("00 prefix should be dropped", 447700900123L, FloodProtector.parseE164("00 44 7700 900123"));
+        assertEquals("011 prefix should be dropped", 447700900123L, FloodProtector.parseE164("011-44-7700-900123"));
+        assertEquals("leading zeros should be dropped", 447700900123L, FloodProtector.parseE164("+0000447700900123"));
+        assertEquals("numbers of only zeros should be ignored", -1, FloodProtector.parseE164("000"));
+    }
+
+    public void testPaddedNumbersShareTheLimit() throws Exception {
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(2, 1, TimeUnit.MINUTES);
+
+        protector.acquire("+447700900123");
+        protector.acquire("00447700900123");
+        try {
+            protector.acquire("0000000000447700900123");
+            fail("a number padded past 15 digits should be counted as the same number");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            assertEquals("message is not as expected", "too many requests to 447700900123", e.getMessage());
+        }
+    }
+
+    public void testUnparseableNumbersAreLimited() throws Exception {
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(2, 1, TimeUnit.MINUTES);
+
+        protector.acquire("1234567890123456");
+        protector.acquire("not a number");
+        try {
+            protector.acquire("12345678901234567");
+            fail("unparseable numbers should share one limit rather than bypass it");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            assertEquals("message is not as expected", "too many requests to unparseable numbers", e.getMessage());
+        }
+        protector.acquire("+15555555555");
+    }
+
+    public void testDestinationLimit() throws Exception {
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(3, 1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 3; i++) {
+            protector.acquire("+15555555555");
+        }
+        try {
+            protector.acquire("1-555-555-5555");
+            fail("fourth send to the same number should be blocked");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            assertEquals("message is not as expected", "too many requests to 15555555555", e.getMessage());
+        }
+        protector.acquire("+15555555556");
+
+        assertEquals("blocked count is not as expected", 1, protector.getBlockedCount());
+    }
+
+    public void testPrefixLimit() throws Exception {
+
+        FloodProtector protector = new FloodProtector();
+        protector.addPrefixLimit(4, 5, 1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 5; i++) {
+            protector.acquire("+88213000000" + i);
+        }
+        try {
+            protector.acquire("+882130000009");
+            fail("sixth send to the same prefix should be blocked");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            assertEquals("message is not as expected", "too many requests to prefix 8821", e.getMessage());
+        }
+        protector.acquire("+15555555555");
+    }
+
+    public void testWindowSlides() throws Exception {
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(2, 100, TimeUnit.MILLISECONDS);
+
+        protector.acquire("15555555555");
+        protector.acquire("15555555555");
+        try {
+            protector.acquire("15555555555");
+            fail("third send should be blocked");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            // expected
+        }
+
+        // Two full windows later the previous counts have decayed entirely.
+        Thread.sleep(250);
+        protector.acquire("15555555555");
+    }
+
+    public void testConcurrentSendsAreCountedExactly() throws Exception {
+
+        final FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(100, 1, TimeUnit.MINUTES);
+        final AtomicInteger allowed = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(8);
+
+        for (int t = 0; t < 8; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50; i++) {
+                        try {
+                            protector.acquire("15555555555");
+                            allowed.incrementAndGet();
+                        } catch (FloodProtector.FloodLimitExceededException e) {
+                            // expected once the limit is reached
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals("allowed count is not as expected", 100, allowed.get());
+    }
+
+    public void testBlockedBeforeRequest() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(1, 1, TimeUnit.MINUTES);
+        VoiceClient client = new VoiceClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setFloodProtector(protector);
+
+        client.call("15555555555", "Your code is 123456", "OTP", null);
+        try {
+            client.call("15555555555", "Your code is 123456", "OTP", null);
+            fail("second call should be blocked");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            // expected
+        }
+
+        assertEquals("blocked call should not reach the server", 1, this.mockServer.getRequestCount());
+    }
+
+    public void testBlockedSendIsNotCountedByOtherLimits() throws Exception {
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(2, 1, TimeUnit.MINUTES);
+        protector.addPrefixLimit(4, 1, 1, TimeUnit.MINUTES);
+
+        protector.acquire("+15555555555");
+        for (int i = 0; i < 3; i++) {
+            try {
+                protector.acquire("+15555555555");
+                fail("send to the same prefix should be blocked");
+            } catch (FloodProtector.FloodLimitExceededException e) {
+                assertEquals("message is not as expected", "too many requests to prefix 1555", e.getMessage());
+            }
+        }
+        assertEquals("blocked count is not as expected", 3, protector.getBlockedCount());
+
+        // Likewise when the destination limit is the one that blocks.
+        FloodProtector prefixFirst = new FloodProtector();
+        prefixFirst.addPrefixLimit(4, 2, 1, TimeUnit.MINUTES);
+        prefixFirst.addDestinationLimit(1, 1, TimeUnit.MINUTES);
+        prefixFirst.acquire("+15555555555");
+        for (int i = 0; i < 3; i++) {
+            try {
+                prefixFirst.acquire("+15555555555");
+                fail("second send to the same number should be blocked");
+            } catch (FloodProtector.FloodLimitExceededException e) {
+                assertEquals("message is not as expected", "too many requests to 15555555555", e.getMessage());
+            }
+        }
+        prefixFirst.acquire("+15555555556");
+    }
+
+    public void testDuplicateIsNotCountedAgainstLimit() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{\"reference_id\":\"FIRST\"}"));
+
+        FloodProtector protector = new FloodProtector();
+        protector.addDestinationLimit(1, 1, TimeUnit.MINUTES);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setFloodProtector(protector);
+        client.setDuplicateSuppressor(new DuplicateSuppressor());
+
+        RestClient.TelesignResponse original = client.message("15555555555", "Your code is 123456", "OTP", null);
+        RestClient.TelesignResponse retry = client.message("15555555555", "Your code is 123456", "OTP", null);
+
+        assertSame("retry should return the original response", original, retry);
+        assertEquals("retry should not be blocked", 0, protector.getBlockedCount());
+        try {
+            client.message("15555555555", "Your code is 654321", "OTP", null);
+            fail("another message should be blocked");
+        } catch (FloodProtector.FloodLimitExceededException e) {
+            // expected
+        }
+        assertEquals("request count is not as expected", 1, this.mockServer.getRequestCount());
+    }
+}
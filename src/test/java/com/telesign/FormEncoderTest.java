@@ -0,0 +1,222 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okio.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class FormEncoderTest extends TestCase {
+
+    private static final String ENCODED_ASCII = "%00%01%02%03%04%05%06%07%08%09%0A%0B%0C%0D%0E%0F"
+            + "%10%11%12%13%14%15%16%17%18%19%1A%1B%1C%1D%1E%1F"
+            + "+%21%22%23%24%25%26%27%28%29*%2B%2C-.%2F0123456789%3A%3B%3C%3D%3E%3F"
+            + "%40ABCDEFGHIJKLMNOPQRSTUVWXYZ%5B%5C%5D%5E_%60abcdefghijklmnopqrstuvwxyz%7B%7C%7D%7E%7F";
+
+    public void testEveryAsciiCharacter() throws Exception {
+
+        StringBuilder value = new StringBuilder();
+        for (char ch = 0; ch < 128; ch++) {
+            value.append(ch);
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put(value.toString(), value.toString());
+
+        assertBody(ENCODED_ASCII + "=" + ENCODED_ASCII, params);
+    }
+
+    public void testUnicode() throws Exception {
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("message", "Votre code est é€ 😀 \uD800 lone \uDC00 surrogates");
+        params.put("phone_number", "+1 (555) 555-5555");
+        params.put("message_type", "OTP");
+
+        assertBody("message=Votre+code+est+%C3%A9%E2%82%AC+%F0%9F%98%80+%3F+lone+%3F+surrogates"
+                + "&phone_number=%2B1+%28555%29+555-5555&message_type=OTP", params);
+    }
+
+    public void testRandomStrings() throws Exception {
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            StringBuilder expected = new StringBuilder();
+            for (int p = 0; p < 4; p++) {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(600);
+                for (int c = 0; c < length; c++) {
+                    value.append((char) (random.nextBoolean() ? random.nextInt(128) : random.nextInt(0x10000)));
+                }
+                params.put("key" + p, value.toString());
+                expected.append(p > 0 ? "&key" : "key").append(p).append('=').append(encode(value.toString()));
+            }
+            assertBody(expected.toString(), params);
+        }
+    }
+
+    public void testMatchesFormBodyWhereVersionsAgree() throws Exception {
+
+        // Every OkHttp version writes these the same way; punctuation and the space differ between versions.
+        String plain = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-._*";
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> params = new LinkedHashMap<>();
+            FormBody.Builder formBody = new FormBody.Builder();
+            for (int p = 0; p < 4; p++) {
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(300);
+                for (int c = 0; c < length; c++) {
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            value.append(plain.charAt(random.nextInt(plain.length())));
+                            break;
+                        case 1:
+                            // A code point of two or three UTF-8 bytes, skipping the surrogates.
+                            int codePoint = 0x80 + random.nextInt(0x10000 - 0x80 - 0x800);
+                            value.appendCodePoint(codePoint < 0xD800 ? codePoint : codePoint + 0x800);
+                            break;
+                        default:
+                            value.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                            break;
+                    }
+                }
+                params.put("key" + p, value.toString());
+                formBody.add("key" + p, value.toString());
+            }
+
+            Buffer expected = new Buffer();
+            formBody.build().writeTo(expected);
+            assertBody(expected.readUtf8(), params);
+        }
+    }
+
+    public void testDecodesToTheSameParametersAsFormBody() throws Exception {
+
+        StringBuilder ascii = new StringBuilder();
+        for (char ch = 0; ch < 128; ch++) {
+            ascii.append(ch);
+        }
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put(ascii.toString(), ascii.toString());
+        params.put("message", "Votre code est é€ 😀 \uD800 lone \uDC00 surrogates");
+        params.put("phone_number", "+1 (555) 555-5555");
+        Random random = new Random(42);
+        for (int p = 0; p < 20; p++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(600);
+            for (int c = 0; c < length; c++) {
+                value.append((char) (random.nextBoolean() ? random.nextInt(128) : random.nextInt(0x10000)));
+            }
+            params.put("key" + p, value.toString());
+        }
+
+        FormBody.Builder formBody = new FormBody.Builder();
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            formBody.add(param.getKey(), param.getValue().toString());
+        }
+        Buffer expected = new Buffer();
+        formBody.build().writeTo(expected);
+
+        HttpUrl decodedFormBody = HttpUrl.parse("http://localhost/?" + expected.readUtf8());
+        HttpUrl decoded = HttpUrl.parse("http://localhost/?"
+                + new String(FormEncoder.encode(params).bytes(), StandardCharsets.UTF_8));
+        assertEquals("parameter count is not as expected", params.size(), decoded.querySize());
+        assertEquals("parameter count is not as expected", decodedFormBody.querySize(), decoded.querySize());
+        for (int i = 0; i < decoded.querySize(); i++) {
+            assertEquals("name is not as expected", decodedFormBody.queryParameterName(i),
+                    decoded.queryParameterName(i));
+            assertEquals("value is not as expected", decodedFormBody.queryParameterValue(i),
+                    decoded.queryParameterValue(i));
+        }
+        assertEquals("ASCII name is not as expected", ascii.toString(), decoded.queryParameterName(0));
+        assertEquals("ASCII value is not as expected", ascii.toString(), decoded.queryParameterValue(0));
+    }
+
+    public void testPrimitivesAndCharSequences() throws Exception {
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("count", 42);
+        params.put("negative", -9876543210L);
+        params.put("min", Long.MIN_VALUE);
+        params.put("flag", true);
+        params.put("ratio", 0.5);
+        params.put("builder", new StringBuilder("a b&c"));
+
+        assertEquals("body is not as expected",
+                "count=42&negative=-9876543210&min=-9223372036854775808&flag=true&ratio=0.5&builder=a+b%26c",
+                new String(FormEncoder.encode(params).bytes(), "UTF-8"));
+    }
+
+    public void testNullAppendedValueIsRejected() {
+
+        try {
+            FormEncoder.begin().appendValue(null);
+            fail("null value should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "value is null", e.getMessage());
+        }
+    }
+
+    public void testNullValueIsRejected() {
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("message", null);
+
+        try {
+            FormEncoder.encode(params);
+            fail("null value should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "value of message is null", e.getMessage());
+        }
+    }
+
+    public void testBufferIsNotShared() throws Exception {
+
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("message", "first");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("message", "second");
+
+        FormEncoder.Body body = FormEncoder.encode(first);
+        FormEncoder.encode(second);
+
+        assertEquals("body is not as expected", "message=first", new String(body.bytes(), "UTF-8"));
+        assertEquals("content length is not as expected", 13, body.contentLength());
+    }
+
+    /**
+     * Encodes a value one UTF-8 byte at a time, as the form-urlencoded rules state them.
+     */
+    private static String encode(String value) {
+        StringBuilder encoded = new StringBuilder();
+        // getBytes writes an unpaired surrogate as "?".
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char ch = (char) (b & 0xff);
+            if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+                    || "*-._".indexOf(ch) >= 0) {
+                encoded.append(ch);
+            } else if (ch == ' ') {
+                encoded.append('+');
+            } else {
+                encoded.append(String.format("%%%02X", (int) ch));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static void assertBody(String expected, Map<String, Object> params) throws Exception {
+        Buffer actual = new Buffer();
+        FormEncoder.Body body = FormEncoder.encode(params);
+        body.writeTo(actual);
+
+        assertEquals("body is not as expected", expected, actual.readUtf8());
+        assertEquals("content length is not as expected", expected.length(), body.contentLength());
+        assertEquals("content type is not as expected", "application/x-www-form-urlencoded",
+                body.contentType().toString());
+    }
+}
@@ -0,0 +1,140 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FormRequestTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+    private String endpoint;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+        this.endpoint = this.mockServer.url("").toString().replaceAll("/$", "");
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testCallerParamsAreNotModified() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        Map<String, String> params = new HashMap<>();
+        params.put("originating_ip", "127.0.0.1");
+
+        new MessagingClient(this.customerId, this.apiKey, this.endpoint).message("15555555555", "Hello", "ARN", params);
+        new VoiceClient(this.customerId, this.apiKey, this.endpoint).call("15555555555", "Hello", "ARN", params);
+        new ScoreClient(this.customerId, this.apiKey, this.endpoint).score("15555555555", "create", params);
+
+        assertEquals("params should not be modified", 1, params.size());
+    }
+
+    public void testRequestIsImmutable() {
+
+        MessageRequest.Builder builder = new MessageRequest.Builder("15555555555", "Hello", "ARN")
+                .param("originating_ip", "127.0.0.1");
+        MessageRequest request = builder.build();
+        builder.message("Goodbye").param("account_lifecycle_event", "create");
+
+        assertEquals("message is not as expected", "Hello", request.getMessage());
+        assertEquals("params are not as expected", 4, request.getParams().size());
+        try {
+            request.getParams().put("message", "Goodbye");
+            fail("params should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testRequiredFieldsAreChecked() {
+
+        try {
+            new ScoreRequest.Builder("15555555555", null).build();
+            fail("missing account_lifecycle_event should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "account_lifecycle_event is required", e.getMessage());
+        }
+    }
+
+    public void testDerivedRequest() {
+
+        MessageRequest base = new MessageRequest.Builder("15555555555", "Hello", "ARN")
+                .param("originating_ip", "127.0.0.1").build();
+
+        MessageRequest derived = base.toBuilder().phoneNumber("15555555556").build();
+
+        assertEquals("phone number is not as expected", "15555555556", derived.getParams().get("phone_number"));
+        assertEquals("params are not as expected", "127.0.0.1", derived.getParams().get("originating_ip"));
+        assertEquals("base should be unchanged", "15555555555", base.getParams().get("phone_number"));
+    }
+
+    public void testSharedRequestIsEncodedOnce() throws Exception {
+
+        final VoiceRequest request = new VoiceRequest.Builder("15555555555", "Your code is 123456", "OTP").build();
+        final VoiceClient client = new VoiceClient(this.customerId, this.apiKey, this.endpoint);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        client.call(request);
+                    } catch (Exception e) {
+                        error.set(e);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await(5, TimeUnit.SECONDS);
+
+        assertNull("calls should succeed", error.get());
+        assertSame("body should be encoded once", request.body(), request.body());
+        for (int i = 0; i < 8; i++) {
+            RecordedRequest recorded = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+            assertEquals("body is not as expected",
+                    "phone_number=15555555555&message_type=OTP&message=Your+code+is+123456",
+                    recorded.getBody().readUtf8());
+        }
+    }
+
+    public void testScoreRequest() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        new ScoreClient(this.customerId, this.apiKey, this.endpoint).score(
+                new ScoreRequest.Builder("15555555555", "create").build());
+
+        RecordedRequest request = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("path is not as expected", "/intelligence/phone", request.getPath());
+        assertEquals("body is not as expected", "account_lifecycle_event=create&phone_number=15555555555",
+                request.getBody().readUtf8());
+    }
+}
@@ -0,0 +1,235 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FraudScreenTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    private volatile String phoneType;
+    private volatile String riskLevel;
+    private volatile int scoreStatus;
+    private final AtomicInteger phoneIdRequests = new AtomicInteger();
+    private final AtomicInteger scoreRequests = new AtomicInteger();
+    private final AtomicInteger messageRequests = new AtomicInteger();
+
+    private FraudScreen screen;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+        this.phoneType = "MOBILE";
+        this.riskLevel = "low";
+        this.scoreStatus = 200;
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith("/v1/phoneid/")) {
+                    phoneIdRequests.incrementAndGet();
+                    return new MockResponse()
+                            .setBody("{\"phone_type\":{\"code\":\"5\",\"description\":\"" + phoneType + "\"}}")
+                            .setHeadersDelay(200, TimeUnit.MILLISECONDS);
+                }
+                if (path.startsWith("/intelligence/phone")) {
+                    scoreRequests.incrementAndGet();
+                    return new MockResponse().setResponseCode(scoreStatus)
+                            .setBody("{\"risk\":{\"level\":\"" + riskLevel + "\",\"score\":100}}")
+                            .setHeadersDelay(200, TimeUnit.MILLISECONDS);
+                }
+                messageRequests.incrementAndGet();
+                return new MockResponse().setBody("{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\"}");
+            }
+        });
+        this.mockServer.start();
+
+        String endpoint = this.mockServer.url("").toString().replaceAll("/$", "");
+        this.screen = new FraudScreen(new PhoneIdClient(this.customerId, this.apiKey, endpoint),
+                new ScoreClient(this.customerId, this.apiKey, endpoint),
+                new MessagingClient(this.customerId, this.apiKey, endpoint));
+        this.screen.blockPhoneTypes("VOIP");
+        this.screen.blockRiskLevels("high");
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.screen.close();
+        this.mockServer.shutdown();
+    }
+
+    public void testChecksRunInParallelBeforeSending() throws Exception {
+
+        FraudScreen.Verdict verdict = this.screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+
+        assertFalse("verdict should pass", verdict.isBlocked());
+        assertTrue("message should be sent", verdict.getMessageResponse().ok);
+        assertEquals("phoneid count is not as expected", 1, this.phoneIdRequests.get());
+        assertEquals("score count is not as expected", 1, this.scoreRequests.get());
+        assertEquals("message count is not as expected", 1, this.messageRequests.get());
+        assertTrue("checks should overlap", verdict.getElapsedNanos() < TimeUnit.MILLISECONDS.toNanos(390));
+        assertTrue("latency saved should be reported", verdict.getLatencySavedNanos() > 0);
+        assertEquals("total latency saved is not as expected", verdict.getLatencySavedNanos(),
+                this.screen.getLatencySavedNanos());
+    }
+
+    public void testBlockedPhoneType() throws Exception {
+
+        this.phoneType = "VOIP";
+
+        FraudScreen.Verdict verdict = this.screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+
+        assertTrue("verdict should block", verdict.isBlocked());
+        assertEquals("reason is not as expected", "blocked phone type VOIP", verdict.getReason());
+        assertNull("message should not be sent", verdict.getMessageResponse());
+        assertEquals("message count is not as expected", 0, this.messageRequests.get());
+        assertEquals("blocked count is not as expected", 1, this.screen.getBlockedCount());
+    }
+
+    public void testBlockedRiskLevel() throws Exception {
+
+        this.riskLevel = "high";
+
+        FraudScreen.Verdict verdict = this.screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+
+        assertEquals("reason is not as expected", "blocked risk level high", verdict.getReason());
+        assertEquals("message count is not as expected", 0, this.messageRequests.get());
+    }
+
+    public void testFreshResultsAreReused() throws Exception {
+
+        this.screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+        FraudScreen.Verdict verdict = this.screen.message("15555555555", "sign-in", "Your code is 654321", "OTP", null);
+
+        assertFalse("verdict should pass", verdict.isBlocked());
+        assertEquals("phoneid count is not as expected", 1, this.phoneIdRequests.get());
+        assertEquals("score count is not as expected", 1, this.scoreRequests.get());
+        assertEquals("message count is not as expected", 2, this.messageRequests.get());
+        assertEquals("cache hits are not as expected", 2, this.screen.getCacheHits());
+
+        this.screen.setCacheTtl(0, TimeUnit.SECONDS);
+        this.screen.screen("15555555556", "sign-in");
+        this.screen.screen("15555555556", "sign-in");
+
+        assertEquals("phoneid count is not as expected", 3, this.phoneIdRequests.get());
+    }
+
+    public void testFailedCheckBlocksUnlessFailOpen() throws Exception {
+
+        this.scoreStatus = 503;
+
+        FraudScreen.Verdict verdict = this.screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+
+        assertEquals("reason is not as expected", "score request failed with status 503", verdict.getReason());
+        assertEquals("message count is not as expected", 0, this.messageRequests.get());
+
+        this.screen.setFailOpen(true);
+        verdict = this.screen.message("15555555555", "sign-in", "Your code is 123456", "OTP", null);
+
+        assertFalse("verdict should pass", verdict.isBlocked());
+        assertEquals("message count is not as expected", 1, this.messageRequests.get());
+    }
+
+    public void testCustomRuleErrorsPropagate() throws Exception {
+
+        this.screen.addPhoneIdRule(new FraudScreen.Rule() {
+            @Override
+            public String check(RestClient.TelesignResponse response) {
+                throw new IllegalStateException("rule failed");
+            }
+        });
+
+        try {
+            this.screen.screen("15555555555", "sign-in");
+            fail("rule error should propagate");
+        } catch (IllegalStateException e) {
+            assertEquals("message is not as expected", "rule failed", e.getMessage());
+        }
+    }
+
+    public void testLookupErrorPropagates() throws Exception {
+
+        String endpoint = this.mockServer.url("").toString().replaceAll("/$", "");
+        final FraudScreen screen = new FraudScreen(new PhoneIdClient(this.customerId, this.apiKey, endpoint) {
+            @Override
+            public TelesignResponse phoneid(String phoneNumber, Map<String, ? extends Object> params) {
+                throw new AssertionError("lookup failed");
+            }
+        }, new ScoreClient(this.customerId, this.apiKey, endpoint),
+                new MessagingClient(this.customerId, this.apiKey, endpoint));
+        FutureTask<FraudScreen.Verdict> verdict = new FutureTask<>(new Callable<FraudScreen.Verdict>() {
+            @Override
+            public FraudScreen.Verdict call() throws Exception {
+                return screen.screen("15555555555", "sign-in");
+            }
+        });
+        Thread thread = new Thread(verdict);
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            verdict.get(1, TimeUnit.SECONDS);
+            fail("lookup error should propagate");
+        } catch (ExecutionException e) {
+            assertEquals("message is not as expected", "lookup failed", e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            fail("the screen should not wait for a lookup that failed");
+        } finally {
+            screen.close();
+        }
+    }
+
+    public void testWaitIsLimitedByDeadline() throws Exception {
+
+        String endpoint = this.mockServer.url("").toString().replaceAll("/$", "");
+        final FraudScreen screen = new FraudScreen(new PhoneIdClient(this.customerId, this.apiKey, endpoint) {
+            @Override
+            public TelesignResponse phoneid(String phoneNumber, Map<String, ? extends Object> params)
+                    throws IOException {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("too late");
+            }
+        }, new ScoreClient(this.customerId, this.apiKey, endpoint),
+                new MessagingClient(this.customerId, this.apiKey, endpoint));
+
+        long start = System.nanoTime();
+        try {
+            Deadline.after(100, TimeUnit.MILLISECONDS).run(new Deadline.Task<FraudScreen.Verdict>() {
+                @Override
+                public FraudScreen.Verdict run() throws IOException, GeneralSecurityException {
+                    return screen.screen("15555555555", "sign-in");
+                }
+            });
+            fail("the screen should be limited by the deadline");
+        } catch (Deadline.ExceededException e) {
+            assertTrue("the screen should not wait past its deadline",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            screen.close();
+        }
+    }
+}
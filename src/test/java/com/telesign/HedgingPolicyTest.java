@@ -0,0 +1,176 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgingPolicyTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testSlowRequestIsHedged() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{\"hedged\":false}").setHeadersDelay(2, TimeUnit.SECONDS));
+        this.mockServer.enqueue(new MockResponse().setBody("{\"hedged\":true}"));
+
+        HedgingPolicy policy = HedgingPolicy.fixedDelay(50, TimeUnit.MILLISECONDS, 1.0);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setHedgingPolicy(policy);
+
+        long start = System.nanoTime();
+        RestClient.TelesignResponse response = client.status("FakeReferenceId", null);
+
+        assertTrue("hedged response should have been used", response.json.get("hedged").getAsBoolean());
+        assertTrue("response should not have waited for the slow call",
+                System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals("hedges sent is not as expected", 1, policy.getHedgesSent());
+        assertEquals("hedges won is not as expected", 1, policy.getHedgesWon());
+
+        RecordedRequest primary = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        RecordedRequest hedge = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("path is not as expected", "/v1/messaging/FakeReferenceId", hedge.getPath());
+        assertFalse("hedge should be signed with a fresh nonce",
+                primary.getHeader("x-ts-nonce").equals(hedge.getHeader("x-ts-nonce")));
+    }
+
+    public void testFastRequestIsNotHedged() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        HedgingPolicy policy = HedgingPolicy.fixedDelay(1, TimeUnit.SECONDS, 1.0);
+        VoiceClient client = new VoiceClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setHedgingPolicy(policy);
+
+        assertEquals("HTTP Status code mismatch", 200, client.status("FakeReferenceId", null).statusCode);
+        assertEquals("no hedge should have been sent", 0, policy.getHedgesSent());
+        assertEquals("request count is not as expected", 1, this.mockServer.getRequestCount());
+    }
+
+    public void testBudgetIsKeptWhenHedgeCannotBeSigned() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+
+        // Credentials that sign the original request, but not the hedge.
+        final CredentialProvider.Credentials signOnce = new CredentialProvider.Credentials(this.customerId,
+                this.apiKey) {
+            private final AtomicInteger uses = new AtomicInteger();
+
+            @Override
+            SecretKeySpec hmacKey() {
+                return this.uses.getAndIncrement() == 0 ? super.hmacKey() : null;
+            }
+        };
+        CredentialProvider credentialProvider = new CredentialProvider(this.customerId, this.apiKey) {
+            @Override
+            public Credentials getCurrent() {
+                return signOnce;
+            }
+        };
+
+        HedgingPolicy policy = HedgingPolicy.fixedDelay(50, TimeUnit.MILLISECONDS, 1.0);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setCredentialProvider(credentialProvider);
+        client.setHedgingPolicy(policy);
+
+        assertEquals("HTTP Status code mismatch", 200, client.status("FakeReferenceId", null).statusCode);
+        assertEquals("no hedge should have been sent", 0, policy.getHedgesSent());
+        assertEquals("request count is not as expected", 1, this.mockServer.getRequestCount());
+        assertTrue("the budget for the hedge should be kept", policy.tryAcquireHedge());
+    }
+
+    public void testBudgetCapsHedges() {
+
+        HedgingPolicy policy = HedgingPolicy.fixedDelay(1, TimeUnit.MILLISECONDS, 0.1);
+
+        assertFalse("budget should start empty", policy.tryAcquireHedge());
+        for (int i = 0; i < 10; i++) {
+            policy.onRequest();
+        }
+        assertTrue("ten requests should earn one hedge", policy.tryAcquireHedge());
+        assertFalse("budget should be spent", policy.tryAcquireHedge());
+    }
+
+    public void testPercentileDelay() {
+
+        HedgingPolicy policy = HedgingPolicy.percentile(95, 5, TimeUnit.MILLISECONDS, 0.05);
+
+        assertEquals("min delay should be used before any sample", TimeUnit.MILLISECONDS.toNanos(5),
+                policy.hedgeDelayNanos("/v1/messaging/{}"));
+
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency("/v1/messaging/{}", TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals("p95 is not as expected", TimeUnit.MILLISECONDS.toNanos(61),
+                policy.hedgeDelayNanos("/v1/messaging/{}"));
+        assertEquals("other templates should be unaffected", TimeUnit.MILLISECONDS.toNanos(5),
+                policy.hedgeDelayNanos("/v1/voice/{}"));
+    }
+
+    public void testOriginalRequestDoesNotWaitForTheDispatcher() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        HedgingPolicy policy = HedgingPolicy.fixedDelay(1, TimeUnit.SECONDS, 0.0);
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setHedgingPolicy(policy);
+
+        // Occupy the only slot of the dispatcher with an unrelated asynchronous call.
+        OkHttpClient httpClient = client.httpClient();
+        httpClient.dispatcher().setMaxRequests(1);
+        Call slow = httpClient.newCall(new Request.Builder().url(this.mockServer.url("/slow")).build());
+        slow.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+        assertEquals("/slow", this.mockServer.takeRequest(1, TimeUnit.SECONDS).getPath());
+
+        long start = System.nanoTime();
+        assertEquals("HTTP Status code mismatch", 200, client.status("FakeReferenceId", null).statusCode);
+        assertTrue("the original request should be sent on the calling thread",
+                System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals("the dispatcher should keep OkHttp's per-host limit", 5,
+                new MessagingClient(this.customerId, this.apiKey).httpClient().dispatcher().getMaxRequestsPerHost());
+        slow.cancel();
+    }
+}
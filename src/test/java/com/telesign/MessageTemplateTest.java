@@ -0,0 +1,116 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class MessageTemplateTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testEncodesLikeParameterMap() throws Exception {
+
+        Map<String, Object> fixed = new LinkedHashMap<>();
+        fixed.put("account_lifecycle_event", "sign-in");
+        fixed.put("sender_id", "Acme & Co");
+        MessageTemplate template = MessageTemplate.compile("Your %s code is %s. 100%% free!", "OTP", fixed);
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("phone_number", "15555555555");
+        params.put("message", "Your Acmé code is 123456. 100% free!");
+        params.put("message_type", "OTP");
+        params.putAll(fixed);
+
+        assertEquals("placeholder count is not as expected", 2, template.getPlaceholderCount());
+        assertEquals("body is not as expected", new String(FormEncoder.encode(params).bytes(), "UTF-8"),
+                new String(template.encode("15555555555", "Acmé", 123456).bytes(), "UTF-8"));
+    }
+
+    public void testLonePercentIsKept() throws Exception {
+
+        MessageTemplate template = MessageTemplate.compile("50% off with %s", "MKT");
+
+        assertEquals("body is not as expected", "phone_number=15555555555&message=50%25+off+with+SAVE&message_type=MKT",
+                new String(template.encode("15555555555", "SAVE").bytes(), "UTF-8"));
+    }
+
+    public void testWrongNumberOfValues() {
+
+        MessageTemplate template = MessageTemplate.compile("Your code is %s", "OTP");
+
+        try {
+            template.encode("15555555555");
+            fail("missing value should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "template takes 1 values but got 0", e.getMessage());
+        }
+    }
+
+    public void testNullPhoneNumberIsRejected() {
+
+        MessageTemplate template = MessageTemplate.compile("Your code is %s", "OTP");
+
+        try {
+            template.encode(null, "123456");
+            fail("null phone number should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "value of phone_number is null", e.getMessage());
+        }
+    }
+
+    public void testPerSendFieldsCannotBeFixed() {
+
+        try {
+            MessageTemplate.compile("Your code is %s", "OTP",
+                    Collections.singletonMap("phone_number", "15555555555"));
+            fail("fixed phone_number should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "phone_number is set per send", e.getMessage());
+        }
+    }
+
+    public void testMessageIsSignedOverSplicedBody() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        MessageTemplate template = MessageTemplate.compile("Your code is %s", "OTP");
+
+        client.message(template, "15555555555", 123456);
+
+        RecordedRequest request = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        String body = request.getBody().readUtf8();
+        assertEquals("body is not as expected", "phone_number=15555555555&message=Your+code+is+123456&message_type=OTP",
+                body);
+        String expectedAuthorization = RestClient.generateTelesignHeaders(this.customerId, this.apiKey, "POST",
+                "/v1/messaging", body, request.getHeader("Date"), request.getHeader("x-ts-nonce"), null,
+                RestClient.URL_FORM_ENCODED_CONTENT_TYPE, "HMAC-SHA256").get("Authorization");
+        assertEquals("authorization is not as expected", expectedAuthorization, request.getHeader("Authorization"));
+    }
+}
@@ -0,0 +1,321 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class OutboundQueueTest extends TestCase {
+
+    private MockWebServer mockServer;
+    private File directory;
+
+    private String customerId;
+    private String apiKey;
+
+    private volatile boolean available;
+    private volatile long delayMillis;
+    private final Set<String> delivered = new HashSet<>();
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+        this.directory = Files.createTempDirectory("outbound").toFile();
+        this.available = true;
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String body = request.getBody().clone().readUtf8();
+                if (!available || body.contains("phone_number=15555550000")) {
+                    return new MockResponse().setResponseCode(503).setBody("{}");
+                }
+                if (body.contains("phone_number=15555559999")) {
+                    return new MockResponse().setResponseCode(400).setBody("{\"reference_id\":null}");
+                }
+                synchronized (delivered) {
+                    delivered.add(body);
+                }
+                return new MockResponse().setBody("{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\"}")
+                        .setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+            }
+        });
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    public void testMessagesAreSentAndAcknowledged() throws Exception {
+
+        OutboundQueue queue = newQueue(4096);
+        for (int i = 1; i <= 20; i++) {
+            queue.enqueueMessage(String.format("155555500%02d", i), "Your code is 123456", "OTP", null);
+        }
+        awaitPending(queue, 0);
+        queue.close();
+
+        assertEquals("sent count is not as expected", 20, queue.getSentCount());
+        assertEquals("delivered count is not as expected", 20, this.delivered.size());
+
+        OutboundQueue reopened = newQueue(4096);
+        assertEquals("nothing should be replayed", 0, reopened.getRecoveredCount());
+        reopened.close();
+        assertEquals("fully acknowledged segments should be deleted", 1, segmentFiles().length);
+    }
+
+    public void testUnacknowledgedMessagesAreReplayed() throws Exception {
+
+        this.available = false;
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        queue.enqueueMessage("15555550002", "Your code is 654321", "OTP", null);
+        queue.close();
+        assertEquals("nothing should have been sent", 0, queue.getSentCount());
+
+        this.available = true;
+        OutboundQueue recovered = newQueue(64 * 1024);
+        assertEquals("recovered count is not as expected", 2, recovered.getRecoveredCount());
+        awaitPending(recovered, 0);
+        recovered.close();
+
+        assertEquals("replayed count is not as expected", 2, recovered.getSentCount());
+        OutboundQueue continued = newQueue(64 * 1024);
+        assertEquals("sequence numbers should continue", 2,
+                continued.enqueueMessage("15555550003", "Hello", "ARN", null));
+        awaitPending(continued, 0);
+        continued.close();
+    }
+
+    public void testTornRecordIsDiscarded() throws Exception {
+
+        this.available = false;
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        queue.enqueueMessage("15555550002", "Your code is 654321", "OTP", null);
+        queue.close();
+
+        // Corrupt the last byte of the second record's payload, as a crash in the middle of a write would.
+        File segment = segmentFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            int position = 0;
+            int last = 0;
+            while (true) {
+                file.seek(position);
+                int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                last = position + 17 + length - 1;
+                position += 17 + length;
+            }
+            file.seek(last);
+            file.write('x');
+        }
+
+        this.available = true;
+        OutboundQueue recovered = newQueue(64 * 1024);
+        assertEquals("only the intact record should be recovered", 1, recovered.getRecoveredCount());
+        awaitPending(recovered, 0);
+        recovered.close();
+    }
+
+    public void testTransientFailureIsRetried() throws Exception {
+
+        this.available = false;
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        Thread.sleep(150);
+        assertEquals("message should still be pending", 1, queue.getPendingCount());
+
+        this.available = true;
+        awaitPending(queue, 0);
+        queue.close();
+        assertEquals("sent count is not as expected", 1, queue.getSentCount());
+    }
+
+    public void testRetriesCarryTheSameIdempotencyKey() throws Exception {
+
+        this.available = false;
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        RecordedRequest first = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        RecordedRequest retry = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        this.available = true;
+        awaitPending(queue, 0);
+
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        awaitPending(queue, 0);
+        queue.close();
+
+        RecordedRequest last = null;
+        for (RecordedRequest request; (request = this.mockServer.takeRequest(100, TimeUnit.MILLISECONDS)) != null; ) {
+            last = request;
+        }
+        String key = first.getHeader(DuplicateSuppressor.IDEMPOTENCY_KEY_HEADER);
+        assertNotNull("the request should carry an idempotency key", key);
+        assertEquals("a retry should carry the same key",
+                key, retry.getHeader(DuplicateSuppressor.IDEMPOTENCY_KEY_HEADER));
+        assertFalse("another request should carry another key",
+                key.equals(last.getHeader(DuplicateSuppressor.IDEMPOTENCY_KEY_HEADER)));
+        assertFalse("the key should not be sent as a parameter",
+                first.getBody().readUtf8().contains("idempotency_key"));
+    }
+
+    public void testUnexpectedFailureIsNotRetried() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", "")) {
+            @Override
+            TelesignResponse message(MessageRequest request, String idempotencyKey) {
+                throw new IllegalStateException("unexpected");
+            }
+        };
+        OutboundQueue queue = new OutboundQueue(this.directory, client, null, 2, 64 * 1024, 5, TimeUnit.MILLISECONDS);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        awaitPending(queue, 0);
+        queue.close();
+        assertEquals("the request should count as failed", 1, queue.getFailedCount());
+
+        OutboundQueue reopened = newQueue(64 * 1024);
+        assertEquals("nothing should be replayed", 0, reopened.getRecoveredCount());
+        reopened.close();
+    }
+
+    public void testCloseWaitsForRequestsInFlight() throws Exception {
+
+        this.delayMillis = 300;
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        assertNotNull("the message should be in flight", this.mockServer.takeRequest(1, TimeUnit.SECONDS));
+        queue.close();
+
+        assertEquals("the message in flight should be acknowledged", 1, queue.getSentCount());
+        this.delayMillis = 0;
+        OutboundQueue reopened = newQueue(64 * 1024);
+        assertEquals("nothing should be replayed", 0, reopened.getRecoveredCount());
+        reopened.close();
+        assertEquals("the message should be delivered once", 1, this.mockServer.getRequestCount());
+    }
+
+    public void testCloseTimeoutAbandonsRequestsInFlight() throws Exception {
+
+        this.delayMillis = 2000;
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555550001", "Your code is 123456", "OTP", null);
+        assertNotNull("the message should be in flight", this.mockServer.takeRequest(1, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        queue.close(100, TimeUnit.MILLISECONDS);
+
+        assertTrue("close should not wait past its timeout", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals("the abandoned message should be pending", 1, queue.getPendingCount());
+        this.delayMillis = 0;
+        OutboundQueue reopened = newQueue(64 * 1024);
+        assertEquals("the abandoned message should be replayed", 1, reopened.getRecoveredCount());
+        awaitPending(reopened, 0);
+        reopened.close();
+    }
+
+    public void testRequiredFieldsAreChecked() throws Exception {
+
+        OutboundQueue queue = newQueue(64 * 1024);
+        try {
+            queue.enqueueMessage("15555550001", null, "OTP", null);
+            fail("a message without text should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals("nothing should be logged", 0, queue.getPendingCount());
+        queue.close();
+    }
+
+    public void testInvalidLoggedRequestIsNotRetried() throws Exception {
+
+        // A message logged without its text, as by a version that did not check for it.
+        byte[] payload = "{\"phone_number\":\"15555550001\",\"message_type\":\"OTP\"}".getBytes("UTF-8");
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        File segment = new File(this.directory, String.format("outbound-%020d.log", 0));
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(64 * 1024);
+            file.writeInt(payload.length);
+            file.writeInt((int) crc.getValue());
+            file.writeLong(0);
+            file.writeByte(1);
+            file.write(payload);
+        }
+
+        OutboundQueue queue = newQueue(64 * 1024);
+        assertEquals("recovered count is not as expected", 1, queue.getRecoveredCount());
+        awaitPending(queue, 0);
+        queue.close();
+        assertEquals("the request should count as failed", 1, queue.getFailedCount());
+        assertEquals("the request should not be sent", 0, this.mockServer.getRequestCount());
+
+        OutboundQueue reopened = newQueue(64 * 1024);
+        assertEquals("nothing should be replayed", 0, reopened.getRecoveredCount());
+        reopened.close();
+    }
+
+    public void testNullReferenceIdIsAcknowledged() throws Exception {
+
+        OutboundQueue queue = newQueue(64 * 1024);
+        queue.enqueueMessage("15555559999", "Your code is 123456", "OTP", null);
+        awaitPending(queue, 0);
+
+        // The sender that handled the response should still be running.
+        for (int i = 1; i <= 4; i++) {
+            queue.enqueueMessage(String.format("155555500%02d", i), "Your code is 123456", "OTP", null);
+        }
+        awaitPending(queue, 0);
+        queue.close();
+        assertEquals("failed count is not as expected", 1, queue.getFailedCount());
+        assertEquals("sent count is not as expected", 4, queue.getSentCount());
+    }
+
+    private OutboundQueue newQueue(int segmentSize) throws Exception {
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        return new OutboundQueue(this.directory, client, null, 2, segmentSize, 5, TimeUnit.MILLISECONDS);
+    }
+
+    private File[] segmentFiles() {
+        return this.directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("outbound-");
+            }
+        });
+    }
+
+    private static void awaitPending(OutboundQueue queue, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queue.getPendingCount() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("pending count is not as expected", expected, queue.getPendingCount());
+    }
+}
@@ -110,6 +110,25 @@ public class PhoneIdClientTest extends TestCase {
                 request.getHeader("x-ts-auth-method"));
     }
 
-}
+    public void testPhoneNumberIsSignedAsSent() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        PhoneIdClient client = new PhoneIdClient(this.customerId,
+                this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""), null, null, null);
+
+        client.phoneid("+1 800 555 5555", null);
+
+        RecordedRequest request = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
 
+        // The resource string is signed percent-encoded, as it appears in the request line.
+        String resource = "/v1/phoneid/+1%20800%20555%205555";
+        assertEquals("path is not as expected", resource, request.getPath());
+        String expectedAuthorization = RestClient.generateTelesignHeaders(this.customerId, this.apiKey, "POST",
+                resource, request.getBody().readUtf8(), request.getHeader("Date"), request.getHeader("x-ts-nonce"),
+                null, "application/json", "HMAC-SHA256").get("Authorization");
+        assertEquals("authorization is not as expected", expectedAuthorization, request.getHeader("Authorization"));
+    }
 
+}
@@ -0,0 +1,77 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.HttpUrl;
+
+public class ResourceRouteTest extends TestCase {
+
+    public void testLiteralRouteReusesParsedUrl() {
+
+        ResourceRoute route = ResourceRoute.compile("/v1/messaging");
+
+        HttpUrl url = route.path().url("https://rest-api.telesign.com");
+
+        assertEquals("url is not as expected", "https://rest-api.telesign.com/v1/messaging", url.toString());
+        assertSame("url should be parsed once", url, route.path().url("https://rest-api.telesign.com"));
+        assertEquals("resource is not as expected", "/v1/messaging", route.path().resource(url));
+        assertEquals("template is not as expected", "/v1/messaging", route.path().template());
+    }
+
+    public void testParametersAreSplicedIn() {
+
+        ResourceRoute route = ResourceRoute.compile("/v1/messaging/{}");
+        ResourceRoute.Path path = route.path("0123456789ABCDEF0123456789ABCDEF");
+
+        HttpUrl url = path.url("https://rest-api.telesign.com");
+
+        assertEquals("url is not as expected",
+                "https://rest-api.telesign.com/v1/messaging/0123456789ABCDEF0123456789ABCDEF", url.toString());
+        assertEquals("resource is not as expected", "/v1/messaging/0123456789ABCDEF0123456789ABCDEF",
+                path.resource(url));
+        assertEquals("template is not as expected", "/v1/messaging/{}", path.template());
+    }
+
+    public void testParametersAreEscaped() {
+
+        ResourceRoute.Path path = ResourceRoute.compile("/v1/phoneid/{}").path("1 555/../v2");
+
+        HttpUrl url = path.url("https://rest-api.telesign.com");
+
+        assertEquals("url is not as expected", "https://rest-api.telesign.com/v1/phoneid/1%20555%2F..%2Fv2",
+                url.toString());
+        assertEquals("resource should be the path as sent", "/v1/phoneid/1%20555%2F..%2Fv2", path.resource(url));
+    }
+
+    public void testEndpointWithPath() {
+
+        ResourceRoute.Path path = ResourceRoute.compile("/v1/voice/{}/events").path("ABC");
+
+        HttpUrl url = path.url("https://proxy.example.com/telesign");
+
+        assertEquals("url is not as expected", "https://proxy.example.com/telesign/v1/voice/ABC/events",
+                url.toString());
+        assertEquals("resource is not as expected", "/v1/voice/ABC/events", path.resource(url));
+    }
+
+    public void testStringResourceMatchesCompiledRoute() {
+
+        ResourceRoute.Path parsed = ResourceRoute.Path.of("/v1/messaging/0123456789ABCDEF0123456789ABCDEF");
+        ResourceRoute.Path compiled = ResourceRoute.compile("/v1/messaging/{}").path("0123456789ABCDEF0123456789ABCDEF");
+
+        HttpUrl url = parsed.url("https://rest-api.telesign.com");
+
+        assertEquals("url is not as expected", compiled.url("https://rest-api.telesign.com"), url);
+        assertEquals("resource is not as expected", compiled.resource(url), parsed.resource(url));
+        assertEquals("template is not as expected", compiled.template(), parsed.template());
+    }
+
+    public void testWrongNumberOfParameters() {
+
+        try {
+            ResourceRoute.compile("/v1/messaging/{}").path();
+            fail("missing parameter should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("message is not as expected", "/v1/messaging/{} takes 1 parameters", e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.telesign;
 
 import junit.framework.TestCase;
+import okhttp3.ConnectionPool;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -416,4 +417,62 @@ public class RestClientTest extends TestCase {
         assertFalse(resp.ok);
         assertNotNull(resp.json);
     }
+
+    public void testResourceTemplate() {
+
+        assertEquals("/v1/messaging", RestClient.resourceTemplate("/v1/messaging"));
+        assertEquals("/v1/messaging/{}", RestClient.resourceTemplate("/v1/messaging/0123456789ABCDEF0123456789ABCDEF"));
+        assertEquals("/v1/phoneid/{}", RestClient.resourceTemplate("/v1/phoneid/18005555555"));
+        assertEquals("/intelligence/phone", RestClient.resourceTemplate("/intelligence/phone"));
+    }
+
+    public void testWarmUp() throws Exception {
+
+        for (int i = 0; i < 8; i++) {
+            this.mockServer.enqueue(new MockResponse().setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        }
+
+        RestClient client = new RestClient(this.customerId,
+                this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""), null, null, null);
+
+        assertFalse("client should not be warm before warmUp", client.isWarm());
+        assertTrue("warmUp should succeed", client.warmUp(8, 100));
+        assertTrue("client should be warm after warmUp", client.isWarm());
+        assertEquals("connection count is not as expected", 8, client.getConnectionCount());
+        assertEquals("every connection should be idle", 8, client.getIdleConnectionCount());
+
+        RecordedRequest request = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals("method is not as expected", "HEAD", request.getMethod());
+        assertEquals("path is not as expected", "/", request.getPath());
+    }
+
+    public void testWarmUpProbePathAndPool() throws Exception {
+
+        for (int i = 0; i < 14; i++) {
+            this.mockServer.enqueue(new MockResponse().setResponseCode(404).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        }
+
+        RestClient client = new RestClient(this.customerId,
+                this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""), null, null, null);
+
+        assertTrue("warmUp should succeed whatever the status", client.warmUp(6, 1, "/health"));
+        assertEquals("path is not as expected", "/health", this.mockServer.takeRequest(1, TimeUnit.SECONDS).getPath());
+
+        ConnectionPool previous = client.httpClient().connectionPool();
+        assertEquals("connection count is not as expected", 6, previous.connectionCount());
+        assertTrue("warmUp should succeed", client.warmUp(8, 1, "/health"));
+        assertEquals("the replaced pool should be emptied", 0, previous.connectionCount());
+        assertEquals("connection count is not as expected", 8, client.getConnectionCount());
+    }
+
+    public void testWarmUpUnreachable() throws Exception {
+
+        RestClient client = new RestClient(this.customerId, this.apiKey, "http://127.0.0.1:1", 1, 1, 1,
+                null, null, null, null, null, null);
+
+        assertFalse("warmUp should fail without a server", client.warmUp(2, 1));
+        assertFalse("client should not be warm", client.isWarm());
+    }
 }
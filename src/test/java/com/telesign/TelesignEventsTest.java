@@ -0,0 +1,150 @@
+package com.telesign;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TelesignEventsTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        mockServer = new MockWebServer();
+        mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    private List<RecordedEvent> record(String eventName, Runnable calls) throws Exception {
+        File file = File.createTempFile("telesign", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName);
+            recording.start();
+            calls.run();
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals(eventName)) {
+                events.add(event);
+            }
+        }
+        file.delete();
+        return events;
+    }
+
+    public void testCallIsRecorded() throws Exception {
+        if (!FlightRecorder.isAvailable()) {
+            return;
+        }
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200)
+                .setBody("{\"reference_id\": \"0123456789ABCDEF0123456789ABCDEF\"}"));
+        final MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+
+        List<RecordedEvent> events = record("com.telesign.Call", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.message("15555555555", "Test Message Content", "ARN", null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        assertEquals("one call should be recorded", 1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("POST", event.getString("method"));
+        assertEquals("/v1/messaging", event.getString("resource"));
+        assertEquals(200, event.getInt("statusCode"));
+        assertTrue("bytes sent should be recorded", event.getLong("bytesSent") > 0);
+        assertTrue("bytes received should be recorded", event.getLong("bytesReceived") > 0);
+        assertTrue("signing time should be recorded", event.getLong("signingTime") > 0);
+        assertNull(event.getString("error"));
+    }
+
+    public void testBytesReceivedAreCountedBeforeDecoding() throws Exception {
+        if (!FlightRecorder.isAvailable()) {
+            return;
+        }
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200)
+                .setHeader("Content-Type", "application/json; charset=ISO-8859-1")
+                .setBody(new Buffer().writeString("{\"status\": \"délivré\"}", StandardCharsets.ISO_8859_1)));
+        final MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+
+        List<RecordedEvent> events = record("com.telesign.Call", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.status("0123456789ABCDEF0123456789ABCDEF", null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        assertEquals("one call should be recorded", 1, events.size());
+        assertEquals("bytes received should be counted before decoding", 21, events.get(0).getLong("bytesReceived"));
+    }
+
+    public void testFailedCallIsRecorded() throws Exception {
+        if (!FlightRecorder.isAvailable()) {
+            return;
+        }
+
+        final MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        this.mockServer.shutdown();
+
+        List<RecordedEvent> events = record("com.telesign.Call", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    client.status("0123456789ABCDEF0123456789ABCDEF", null);
+                    fail("the call should fail");
+                } catch (Exception e) {
+                    // Expected.
+                }
+            }
+        });
+
+        assertEquals("one call should be recorded", 1, events.size());
+        assertEquals("GET", events.get(0).getString("method"));
+        assertEquals("/v1/messaging/{}", events.get(0).getString("resource"));
+        assertEquals(0, events.get(0).getInt("statusCode"));
+        assertNotNull("the error should be recorded", events.get(0).getString("error"));
+    }
+
+    public void testNothingIsRecordedWhenDisabled() throws Exception {
+
+        assertNull("no call should be recorded without a recording",
+                TelesignEvents.begin("POST", "/v1/messaging"));
+    }
+}
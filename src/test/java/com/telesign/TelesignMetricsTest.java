@@ -0,0 +1,125 @@
+package com.telesign;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+public class TelesignMetricsTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        mockServer = new MockWebServer();
+        mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    private MessagingClient newClient(TelesignMetrics metrics) {
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        client.setMetrics(metrics);
+        return client;
+    }
+
+    public void testCallsAreCountedByResourceAndStatusClass() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setResponseCode(503).setBody("{}"));
+
+        TelesignMetrics metrics = new TelesignMetrics();
+        MessagingClient client = newClient(metrics);
+        client.message("15555555555", "Test Message Content", "ARN", null);
+        client.message("15555555555", "Test Message Content", "ARN", null);
+        client.status("0123456789ABCDEF0123456789ABCDEF", null);
+
+        assertEquals(2, metrics.getCount("/v1/messaging", "2xx"));
+        assertEquals(1, metrics.getCount("/v1/messaging/{}", "5xx"));
+        assertEquals(0, metrics.getCount("/v1/messaging/{}", "2xx"));
+        assertEquals("no call should be left in flight", 0, metrics.getInFlight());
+    }
+
+    public void testFailedCallIsCountedAsError() throws Exception {
+
+        TelesignMetrics metrics = new TelesignMetrics();
+        MessagingClient client = newClient(metrics);
+        this.mockServer.shutdown();
+
+        try {
+            client.message("15555555555", "Test Message Content", "ARN", null);
+            fail("the call should fail");
+        } catch (IOException e) {
+            // Expected.
+        }
+
+        assertEquals(1, metrics.getCount("/v1/messaging", "error"));
+        assertEquals("no call should be left in flight", 0, metrics.getInFlight());
+    }
+
+    public void testWriteToPrometheusText() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+
+        TelesignMetrics metrics = new TelesignMetrics();
+        newClient(metrics).message("15555555555", "Test Message Content", "ARN", null);
+
+        StringBuilder text = new StringBuilder();
+        metrics.writeTo(text);
+        String labels = "product=\"messaging\",resource=\"/v1/messaging\",status_class=\"2xx\"";
+
+        assertTrue(text.toString(), text.toString().contains("# TYPE telesign_requests_total counter\n"));
+        assertTrue(text.toString(), text.toString().contains("telesign_requests_total{" + labels + "} 1\n"));
+        assertTrue(text.toString(), text.toString().contains(
+                "telesign_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 1\n"));
+        assertTrue(text.toString(), text.toString().contains(
+                "telesign_request_duration_seconds_count{" + labels + "} 1\n"));
+        assertTrue(text.toString(), text.toString().contains("telesign_requests_in_flight 0\n"));
+        assertTrue(text.toString(), text.toString().contains("telesign_connections 1\n"));
+    }
+
+    public void testServe() throws Exception {
+
+        TelesignMetrics metrics = new TelesignMetrics();
+        HttpServer server = metrics.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        try {
+            Request request = new Request.Builder()
+                    .url("http://127.0.0.1:" + server.getAddress().getPort() + "/metrics").build();
+            try (Response response = new OkHttpClient().newCall(request).execute()) {
+                assertEquals(200, response.code());
+                assertTrue(response.header("Content-Type").startsWith("text/plain; version=0.0.4"));
+                assertTrue(response.body().string().contains("telesign_requests_in_flight 0\n"));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    public void testProduct() {
+
+        assertEquals("messaging", TelesignMetrics.product("/v1/messaging/{}"));
+        assertEquals("phoneid", TelesignMetrics.product("/v1/phoneid/{}"));
+        assertEquals("score", TelesignMetrics.product("/v1/score/{}"));
+        assertEquals("", TelesignMetrics.product("/"));
+    }
+}
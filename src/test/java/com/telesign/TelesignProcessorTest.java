@@ -0,0 +1,247 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TelesignProcessorTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                MockResponse response = new MockResponse()
+                        .setBody(String.format("{\"path\":\"%s\"}", path));
+                if (path.endsWith("/15555550001")) {
+                    response.setHeadersDelay(300, TimeUnit.MILLISECONDS);
+                }
+                return response;
+            }
+        });
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testOrderedResultsFollowInputOrder() throws Exception {
+
+        PhoneIdClient client = new PhoneIdClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        List<String> numbers = Arrays.asList("15555550001", "15555550002", "15555550003");
+
+        CollectingSubscriber<String> results = run(TelesignProcessor.phoneIds(client, 3, true), numbers);
+
+        assertNull("stream should complete", results.error);
+        assertEquals("result count is not as expected", 3, results.results.size());
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals("result order is not as expected", numbers.get(i), results.results.get(i).getElement());
+            assertTrue("result should be ok", results.results.get(i).isOk());
+        }
+    }
+
+    public void testUnorderedResultsFollowCompletionOrder() throws Exception {
+
+        PhoneIdClient client = new PhoneIdClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        List<String> numbers = Arrays.asList("15555550001", "15555550002", "15555550003");
+
+        CollectingSubscriber<String> results = run(TelesignProcessor.phoneIds(client, 3, false), numbers);
+
+        assertEquals("result count is not as expected", 3, results.results.size());
+        assertEquals("slow result should be last", "15555550001", results.results.get(2).getElement());
+    }
+
+    public void testMessagesUseElementParameters() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        Map<String, String> element = new HashMap<>();
+        element.put("phone_number", "15555550002");
+        element.put("message", "Your code is 123456");
+        element.put("message_type", "OTP");
+
+        CollectingSubscriber<Map<String, String>> results = run(TelesignProcessor.messages(client, 1, true),
+                Collections.singletonList(element));
+
+        assertTrue("result should be ok", results.results.get(0).isOk());
+        String body = this.mockServer.takeRequest(1, TimeUnit.SECONDS).getBody().readUtf8();
+        assertTrue("body is not as expected", body.contains("phone_number=15555550002"));
+        assertTrue("body is not as expected", body.contains("message=Your+code+is+123456"));
+        assertTrue("body is not as expected", body.contains("message_type=OTP"));
+        assertEquals("element should not be modified", 3, element.size());
+    }
+
+    public void testFailedElementDoesNotCancelStream() throws Exception {
+
+        TelesignProcessor<Integer> processor = new TelesignProcessor<>(new TelesignProcessor.Operation<Integer>() {
+            @Override
+            public RestClient.TelesignResponse apply(Integer element) throws IOException {
+                throw new IOException("failed " + element);
+            }
+        }, 2, true);
+
+        CollectingSubscriber<Integer> results = run(processor, Arrays.asList(1, 2, 3));
+
+        assertNull("stream should complete", results.error);
+        assertEquals("result count is not as expected", 3, results.results.size());
+        assertEquals("error is not as expected", "failed 2", results.results.get(1).getError().getMessage());
+        assertNull("failed result should have no response", results.results.get(1).getResponse());
+    }
+
+    public void testDemandIsBoundedByConcurrency() throws Exception {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        TelesignProcessor<Integer> processor = new TelesignProcessor<>(new TelesignProcessor.Operation<Integer>() {
+            @Override
+            public RestClient.TelesignResponse apply(Integer element) throws IOException {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.set(Math.max(maxInFlight.get(), current));
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                throw new IOException("failed");
+            }
+        }, 4, false);
+
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            elements.add(i);
+        }
+        ListPublisher<Integer> publisher = new ListPublisher<>(elements);
+        CollectingSubscriber<Integer> results = new CollectingSubscriber<>(1);
+        publisher.subscribe(processor);
+        processor.subscribe(results);
+
+        // Without further downstream demand, no more than maxConcurrency elements beyond those delivered are requested.
+        Thread.sleep(200);
+        assertEquals("upstream demand is not as expected", 1 + 4, publisher.requested.get());
+        assertEquals("only the requested result should be delivered", 1, results.results.size());
+
+        results.subscription.request(Long.MAX_VALUE);
+        assertTrue("stream should complete", results.done.await(5, TimeUnit.SECONDS));
+        assertEquals("result count is not as expected", 20, results.results.size());
+        assertTrue("calls in flight should not exceed maxConcurrency", maxInFlight.get() <= 4);
+    }
+
+    private <T> CollectingSubscriber<T> run(TelesignProcessor<T> processor, List<T> elements) throws Exception {
+        CollectingSubscriber<T> results = new CollectingSubscriber<>(Long.MAX_VALUE);
+        new ListPublisher<>(elements).subscribe(processor);
+        processor.subscribe(results);
+        assertTrue("stream should terminate", results.done.await(5, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private static class ListPublisher<T> implements Publisher<T> {
+
+        private final List<T> elements;
+        final AtomicInteger requested = new AtomicInteger();
+
+        ListPublisher(List<T> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super T> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private int next;
+                private long demand;
+                private boolean emitting;
+
+                @Override
+                public synchronized void request(long n) {
+                    requested.addAndGet((int) Math.min(n, Integer.MAX_VALUE));
+                    this.demand += n;
+                    if (this.emitting) {
+                        return;
+                    }
+                    this.emitting = true;
+                    while (this.demand > 0 && this.next < elements.size()) {
+                        this.demand--;
+                        subscriber.onNext(elements.get(this.next++));
+                    }
+                    if (this.next == elements.size()) {
+                        this.next++;
+                        subscriber.onComplete();
+                    }
+                    this.emitting = false;
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+
+    private static class CollectingSubscriber<T> implements Subscriber<TelesignProcessor.Result<T>> {
+
+        private final long initialDemand;
+        final List<TelesignProcessor.Result<T>> results = Collections.synchronizedList(
+                new ArrayList<TelesignProcessor.Result<T>>());
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Subscription subscription;
+        volatile Throwable error;
+
+        CollectingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.initialDemand);
+        }
+
+        @Override
+        public void onNext(TelesignProcessor.Result<T> result) {
+            this.results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.error = throwable;
+            this.done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            this.done.countDown();
+        }
+    }
+}
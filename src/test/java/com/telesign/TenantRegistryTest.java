@@ -0,0 +1,117 @@
+package com.telesign;
+
+import junit.framework.TestCase;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TenantRegistryTest extends TestCase {
+
+    private MockWebServer mockServer;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.mockServer = new MockWebServer();
+        this.mockServer.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.mockServer.shutdown();
+    }
+
+    public void testRegister() {
+
+        TenantRegistry registry = new TenantRegistry();
+        TenantRegistry.Tenant tenant = registry.register("acme", "AAAAAAAA-1111", this.apiKey);
+
+        assertSame("handle is not as expected", tenant, registry.get("acme"));
+        assertEquals("size is not as expected", 1, registry.size());
+
+        TenantRegistry.Tenant updated = registry.register("acme", "AAAAAAAA-2222", this.apiKey);
+        assertSame("re-registering should keep the handle", tenant, updated);
+        assertEquals("customer id is not as expected", "AAAAAAAA-2222",
+                tenant.getCredentialProvider().getCurrent().getCustomerId());
+        assertNull("replaced credentials should not overlap", tenant.getCredentialProvider().getPrevious());
+
+        assertSame("removed handle is not as expected", tenant, registry.remove("acme"));
+        assertNull("tenant should be removed", registry.get("acme"));
+    }
+
+    public void testTenantsShareTransport() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+        this.mockServer.enqueue(new MockResponse().setBody("{}"));
+
+        MessagingClient transport = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        TenantRegistry registry = new TenantRegistry();
+        registry.register("acme", "AAAAAAAA-1111", this.apiKey);
+        registry.register("globex", "BBBBBBBB-2222", this.apiKey);
+
+        MessagingClient acme = new MessagingClient(transport, registry.get("acme"));
+        MessagingClient globex = new MessagingClient(transport, registry.get("globex"));
+        acme.status("FakeReferenceId", null);
+        globex.status("FakeReferenceId", null);
+
+        RecordedRequest first = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        RecordedRequest second = this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+        assertTrue("request should be signed for the first tenant",
+                first.getHeader("Authorization").startsWith("TSA AAAAAAAA-1111:"));
+        assertTrue("request should be signed for the second tenant",
+                second.getHeader("Authorization").startsWith("TSA BBBBBBBB-2222:"));
+        assertEquals("tenants should reuse the shared connection", 1, second.getSequenceNumber());
+        assertEquals("connection count is not as expected", 1, transport.getConnectionCount());
+        assertSame("tenant is not as expected", registry.get("acme"), acme.getTenant());
+    }
+
+    public void testConcurrencyCap() throws Exception {
+
+        this.mockServer.enqueue(new MockResponse().setBody("{}").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        MessagingClient transport = new MessagingClient(this.customerId, this.apiKey,
+                this.mockServer.url("").toString().replaceAll("/$", ""));
+        TenantRegistry registry = new TenantRegistry();
+        TenantRegistry.Tenant tenant = registry.register("acme", "AAAAAAAA-1111", this.apiKey);
+        tenant.setConcurrencyCap(1, 0, 0, TimeUnit.MILLISECONDS);
+        final MessagingClient acme = new MessagingClient(transport, tenant);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    started.countDown();
+                    acme.status("FakeReferenceId", null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        slow.start();
+        started.await();
+        this.mockServer.takeRequest(1, TimeUnit.SECONDS);
+
+        assertEquals("in flight is not as expected", 1, tenant.getInFlight());
+        try {
+            acme.status("FakeReferenceId", null);
+            fail("request over the tenant's cap should be rejected");
+        } catch (Bulkhead.BulkheadFullException e) {
+            // expected
+        }
+
+        slow.join();
+        assertEquals("slot should be released", 0, tenant.getInFlight());
+    }
+}
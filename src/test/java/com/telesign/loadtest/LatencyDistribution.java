@@ -0,0 +1,90 @@
+package com.telesign.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of simulated upstream latencies used by the StandInServer.
+ */
+public abstract class LatencyDistribution {
+
+    /**
+     * Draws the next latency sample.
+     *
+     * @param random
+     *            The random source to draw from.
+     * @return The latency in nanoseconds, never negative.
+     */
+    public abstract long sampleNanos(Random random);
+
+    /**
+     * @return A distribution that never adds latency.
+     */
+    public static LatencyDistribution none() {
+        return fixed(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param latency
+     *            The latency every response is delayed by.
+     * @param unit
+     *            The unit of latency.
+     * @return A distribution that always returns the same latency.
+     */
+    public static LatencyDistribution fixed(long latency, TimeUnit unit) {
+        final long nanos = unit.toNanos(latency);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * @param min
+     *            The lowest latency.
+     * @param max
+     *            The highest latency.
+     * @param unit
+     *            The unit of min and max.
+     * @return A distribution uniformly spread between min and max.
+     */
+    public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+        final long minNanos = unit.toNanos(min);
+        final long spanNanos = unit.toNanos(max) - minNanos;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return minNanos + (long) (random.nextDouble() * spanNanos);
+            }
+        };
+    }
+
+    /**
+     * Log-normal latencies, the usual shape of a real network service: most responses cluster around the
+     * median with a long right tail.
+     *
+     * @param median
+     *            The median (p50) latency.
+     * @param p99
+     *            The 99th percentile latency, must be greater than the median.
+     * @param unit
+     *            The unit of median and p99.
+     * @return A log-normal distribution matching the given median and p99.
+     */
+    public static LatencyDistribution logNormal(long median, long p99, TimeUnit unit) {
+        if (p99 <= median) {
+            throw new IllegalArgumentException("p99 must be greater than the median");
+        }
+        final double mu = Math.log(unit.toNanos(median));
+        // 2.326 is the z-score of the 99th percentile of the standard normal distribution.
+        final double sigma = (Math.log(unit.toNanos(p99)) - mu) / 2.326;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+        };
+    }
+}
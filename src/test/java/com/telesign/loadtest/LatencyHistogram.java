@@ -0,0 +1,95 @@
+package com.telesign.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free log-linear histogram of non-negative long values, typically latencies in nanoseconds.
+ * <p>
+ * Values below 128 are recorded exactly; above that every power of two is split into 64 linear sub-buckets, which
+ * bounds the relative error of any reported percentile to under 1.6%.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            The value to record, negative values are recorded as 0.
+     */
+    public void recordValue(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(indexOf(value));
+        this.totalCount.incrementAndGet();
+
+        long max = this.maxValue.get();
+        while (value > max && !this.maxValue.compareAndSet(max, value)) {
+            max = this.maxValue.get();
+        }
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getTotalCount() {
+        return this.totalCount.get();
+    }
+
+    /**
+     * @return The largest recorded value.
+     */
+    public long getMaxValue() {
+        return this.maxValue.get();
+    }
+
+    /**
+     * @param percentile
+     *            The percentile to look up, between 0 and 100.
+     * @return The highest value equivalent to the recorded value at the given percentile, or 0 when empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = this.totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += this.counts.get(i);
+            if (cumulative >= rank) {
+                return Math.min(highestEquivalentValue(i), this.maxValue.get());
+            }
+        }
+        return this.maxValue.get();
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
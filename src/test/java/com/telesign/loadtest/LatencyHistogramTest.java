@@ -0,0 +1,51 @@
+package com.telesign.loadtest;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testSmallValuesAreExact() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.recordValue(i);
+        }
+
+        assertEquals("total count is not as expected", 100, histogram.getTotalCount());
+        assertEquals("p50 is not as expected", 50, histogram.getValueAtPercentile(50));
+        assertEquals("p99 is not as expected", 99, histogram.getValueAtPercentile(99));
+        assertEquals("max is not as expected", 100, histogram.getMaxValue());
+    }
+
+    public void testLargeValuesWithinRelativeError() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordValue(TimeUnit.MICROSECONDS.toNanos(i * 100));
+        }
+
+        long expectedP999 = TimeUnit.MICROSECONDS.toNanos(99900);
+        long actualP999 = histogram.getValueAtPercentile(99.9);
+
+        assertTrue("p99.9 is below the recorded value", actualP999 >= expectedP999);
+        assertTrue("p99.9 is outside the relative error", actualP999 <= expectedP999 * 1.016);
+    }
+
+    public void testBucketBoundaries() {
+
+        for (long value : new long[]{0, 127, 128, 129, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue("value above its bucket", value <= LatencyHistogram.highestEquivalentValue(index));
+            if (index > 0) {
+                assertTrue("value below its bucket", value > LatencyHistogram.highestEquivalentValue(index - 1));
+            }
+        }
+    }
+
+    public void testEmpty() {
+
+        assertEquals("empty histogram should report 0", 0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,316 @@
+package com.telesign.loadtest;
+
+import com.telesign.MessagingClient;
+import com.telesign.PhoneIdClient;
+import com.telesign.RestClient;
+import com.telesign.ScoreClient;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives MessagingClient.message, PhoneIdClient.phoneid and ScoreClient.score at a target rate and reports latency
+ * percentiles, throughput, connection counts and allocation rate per operation.
+ * <p>
+ * Latencies are corrected for coordinated omission: every request has an intended start time derived from the
+ * target rate, and its latency is measured from that time rather than from when it was actually sent, so a stall
+ * in the client or server is charged to every request that should have been sent during it.
+ * <p>
+ * In CLOSED mode a fixed number of workers each send their next request as soon as the previous one completes (or
+ * at their next scheduled slot when a target rate is set). In OPEN mode requests are released at the target rate
+ * regardless of how many are still outstanding, which is how production traffic behaves.
+ * <p>
+ * Run with no restEndpoint argument to benchmark against an in-process StandInServer:
+ * <pre>
+ * LoadGenerator --mode=open --rps=500 --concurrency=64 --duration=30 --operations=message,phoneid,score
+ * </pre>
+ */
+public class LoadGenerator {
+
+    /**
+     * How requests are released.
+     */
+    public enum Mode {
+        OPEN,
+        CLOSED
+    }
+
+    /**
+     * The SDK call being measured.
+     */
+    public enum Operation {
+        MESSAGE,
+        PHONEID,
+        SCORE
+    }
+
+    private final MessagingClient messagingClient;
+    private final PhoneIdClient phoneIdClient;
+    private final ScoreClient scoreClient;
+    private final StandInServer standInServer;
+
+    /**
+     * Constructor for LoadGenerator.
+     *
+     * @param customerId
+     *            Your customer_id string associated with your account.
+     * @param apiKey
+     *            Your api_key string associated with your account.
+     * @param restEndpoint
+     *            The endpoint to send requests to.
+     * @param standInServer
+     *            (optional) The StandInServer behind restEndpoint, used to report connection counts.
+     */
+    public LoadGenerator(String customerId, String apiKey, String restEndpoint, StandInServer standInServer) {
+        this.messagingClient = new MessagingClient(customerId, apiKey, restEndpoint);
+        this.phoneIdClient = new PhoneIdClient(customerId, apiKey, restEndpoint);
+        this.scoreClient = new ScoreClient(customerId, apiKey, restEndpoint);
+        this.standInServer = standInServer;
+    }
+
+    /**
+     * The result of a single run.
+     */
+    public static class Report {
+
+        public Operation operation;
+        public Mode mode;
+        public long requests;
+        public long errors;
+        public double elapsedSeconds;
+        public LatencyHistogram latency;
+        public long connections = -1;
+        public long allocatedBytes = -1;
+
+        public double throughput() {
+            return this.requests / this.elapsedSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%-8s %-6s requests=%d errors=%d throughput=%.1f/s p50=%.2fms p99=%.2fms p99.9=%.2fms "
+                            + "max=%.2fms connections=%s alloc=%s",
+                    this.operation, this.mode, this.requests, this.errors, throughput(),
+                    millis(this.latency.getValueAtPercentile(50)), millis(this.latency.getValueAtPercentile(99)),
+                    millis(this.latency.getValueAtPercentile(99.9)), millis(this.latency.getMaxValue()),
+                    this.connections < 0 ? "n/a" : Long.toString(this.connections),
+                    this.allocatedBytes < 0 ? "n/a" : String.format(Locale.US, "%dB/op %.1fMB/s",
+                            this.allocatedBytes / Math.max(1, this.requests),
+                            this.allocatedBytes / this.elapsedSeconds / (1024 * 1024)));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    /**
+     * Runs a single operation for the given duration.
+     *
+     * @param operation
+     *            The SDK call to drive.
+     * @param mode
+     *            OPEN or CLOSED loop.
+     * @param targetRps
+     *            The target request rate; required in OPEN mode, 0 runs CLOSED mode unpaced.
+     * @param concurrency
+     *            The number of worker threads.
+     * @param duration
+     *            How long to send requests for.
+     * @param unit
+     *            The unit of duration.
+     * @return The report for the run.
+     * @throws InterruptedException if interrupted while waiting for the run to complete.
+     */
+    public Report run(final Operation operation, Mode mode, int targetRps, int concurrency, long duration,
+                      TimeUnit unit) throws InterruptedException {
+
+        if (mode == Mode.OPEN && targetRps <= 0) {
+            throw new IllegalArgumentException("OPEN mode requires a target rate");
+        }
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+        final com.sun.management.ThreadMXBean threads = allocationTracker();
+        long connectionsBefore = this.standInServer != null ? this.standInServer.getConnectionCount() : 0;
+
+        final long start = System.nanoTime();
+        final long end = start + unit.toNanos(duration);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+
+        if (mode == Mode.CLOSED) {
+            final long interval = targetRps > 0 ? TimeUnit.SECONDS.toNanos(1) * concurrency / targetRps : 0;
+            for (int w = 0; w < concurrency; w++) {
+                final long offset = interval * w / concurrency;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long intended = start + offset;
+                        while (intended < end) {
+                            if (interval > 0) {
+                                parkUntil(intended);
+                            } else {
+                                intended = System.nanoTime();
+                            }
+                            measure(operation, intended, histogram, requests, errors, allocated, threads);
+                            intended = interval > 0 ? intended + interval : System.nanoTime();
+                        }
+                    }
+                });
+            }
+        } else {
+            long interval = TimeUnit.SECONDS.toNanos(1) / targetRps;
+            for (long intended = start; intended < end; intended += interval) {
+                parkUntil(intended);
+                final long scheduled = intended;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        measure(operation, scheduled, histogram, requests, errors, allocated, threads);
+                    }
+                });
+            }
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        Report report = new Report();
+        report.operation = operation;
+        report.mode = mode;
+        report.requests = requests.sum();
+        report.errors = errors.sum();
+        report.elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        report.latency = histogram;
+        if (this.standInServer != null) {
+            report.connections = this.standInServer.getConnectionCount() - connectionsBefore;
+        }
+        if (threads != null) {
+            report.allocatedBytes = allocated.sum();
+        }
+        return report;
+    }
+
+    private void measure(Operation operation, long intendedStart, LatencyHistogram histogram, LongAdder requests,
+                         LongAdder errors, LongAdder allocated, com.sun.management.ThreadMXBean threads) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+        boolean ok;
+        try {
+            ok = invoke(operation).ok;
+        } catch (Exception e) {
+            ok = false;
+        }
+        histogram.recordValue(System.nanoTime() - intendedStart);
+        if (threads != null) {
+            allocated.add(threads.getThreadAllocatedBytes(threadId) - allocatedBefore);
+        }
+        requests.increment();
+        if (!ok) {
+            errors.increment();
+        }
+    }
+
+    private RestClient.TelesignResponse invoke(Operation operation) throws Exception {
+        switch (operation) {
+            case MESSAGE:
+                return this.messagingClient.message("18005555555", "Your code is 123456", "OTP", null);
+            case PHONEID:
+                return this.phoneIdClient.phoneid("18005555555", null);
+            case SCORE:
+                return this.scoreClient.score("18005555555", "create", null);
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationTracker() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean tracker = (com.sun.management.ThreadMXBean) threads;
+            if (tracker.isThreadAllocatedMemorySupported()) {
+                tracker.setThreadAllocatedMemoryEnabled(true);
+                return tracker;
+            }
+        }
+        return null;
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Command line entry point, see the class documentation for the supported options.
+     *
+     * @param args
+     *            --mode, --rps, --concurrency, --duration (seconds), --warmup (seconds), --operations,
+     *            --restEndpoint, --customerId and --apiKey.
+     * @throws Exception if the run fails.
+     */
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+
+        String customerId = option(options, "customerId", "FFFFFFFF-EEEE-DDDD-1234-AB1234567890");
+        String apiKey = option(options, "apiKey",
+                "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==");
+        Mode mode = Mode.valueOf(option(options, "mode", "closed").toUpperCase(Locale.US));
+        int rps = Integer.parseInt(option(options, "rps", "0"));
+        int concurrency = Integer.parseInt(option(options, "concurrency", "16"));
+        int duration = Integer.parseInt(option(options, "duration", "10"));
+        int warmup = Integer.parseInt(option(options, "warmup", "2"));
+
+        List<Operation> operations = new ArrayList<>();
+        for (String name : option(options, "operations", "message,phoneid,score").split(",")) {
+            operations.add(Operation.valueOf(name.trim().toUpperCase(Locale.US)));
+        }
+
+        StandInServer standInServer = null;
+        String restEndpoint = options.get("restEndpoint");
+        if (restEndpoint == null) {
+            standInServer = new StandInServer(customerId, apiKey);
+            standInServer.setLatency(LatencyDistribution.logNormal(20, 120, TimeUnit.MILLISECONDS));
+            standInServer.start();
+            restEndpoint = standInServer.restEndpoint();
+        }
+
+        try {
+            LoadGenerator generator = new LoadGenerator(customerId, apiKey, restEndpoint, standInServer);
+            for (Operation operation : operations) {
+                if (warmup > 0) {
+                    generator.run(operation, mode, rps, concurrency, warmup, TimeUnit.SECONDS);
+                }
+                System.out.println(generator.run(operation, mode, rps, concurrency, duration, TimeUnit.SECONDS));
+            }
+        } finally {
+            if (standInServer != null) {
+                standInServer.shutdown();
+            }
+        }
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,50 @@
+package com.telesign.loadtest;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class LoadGeneratorTest extends TestCase {
+
+    private StandInServer server;
+    private LoadGenerator generator;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        String customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        String apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.server = new StandInServer(customerId, apiKey);
+        this.server.start();
+        this.generator = new LoadGenerator(customerId, apiKey, this.server.restEndpoint(), this.server);
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.server.shutdown();
+    }
+
+    public void testOpenLoop() throws Exception {
+
+        LoadGenerator.Report report = this.generator.run(LoadGenerator.Operation.MESSAGE, LoadGenerator.Mode.OPEN,
+                200, 4, 500, TimeUnit.MILLISECONDS);
+
+        assertEquals("request count is not as expected", 100, report.requests);
+        assertEquals("no request should have failed", 0, report.errors);
+        assertEquals("every request should be recorded", 100, report.latency.getTotalCount());
+        assertTrue("at least one connection should be opened", report.connections >= 1);
+        assertTrue("connections should be reused", report.connections <= 4);
+    }
+
+    public void testClosedLoop() throws Exception {
+
+        LoadGenerator.Report report = this.generator.run(LoadGenerator.Operation.SCORE, LoadGenerator.Mode.CLOSED,
+                0, 2, 300, TimeUnit.MILLISECONDS);
+
+        assertTrue("requests should have been sent", report.requests > 0);
+        assertEquals("no request should have failed", 0, report.errors);
+        assertEquals("server should have seen every request", report.requests, this.server.getRequestCount());
+    }
+}
@@ -0,0 +1,77 @@
+package com.telesign.loadtest;
+
+import com.telesign.MessagingClient;
+import com.telesign.PhoneIdClient;
+import com.telesign.RestClient;
+import com.telesign.ScoreClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A smoke test of the SDK against a local StandInServer, meant to be compiled into a native image together with the
+ * SDK (see the nativeSmokeTest Gradle task) to check that signing, form and JSON request bodies and response parsing
+ * work without reflection metadata beyond what the SDK ships. It runs on the JVM too, as NativeSmokeTest.
+ */
+public class NativeSmoke {
+
+    private static final String CUSTOMER_ID = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+    private static final String API_KEY =
+            "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+    public static void main(String[] args) throws Exception {
+        try {
+            run();
+        } catch (Exception | AssertionError e) {
+            System.err.println("native smoke test failed: " + e);
+            System.exit(1);
+        }
+        System.out.println("native smoke test passed");
+    }
+
+    /**
+     * Sends a message, a status request, a phoneid request with addons and a score request to a stand-in server.
+     *
+     * @throws Exception if a request fails or a response is not as expected.
+     */
+    public static void run() throws Exception {
+        StandInServer server = new StandInServer(CUSTOMER_ID, API_KEY);
+        server.start();
+        try {
+            MessagingClient messagingClient = new MessagingClient(CUSTOMER_ID, API_KEY, server.restEndpoint());
+            RestClient.TelesignResponse message = messagingClient.message("18005555555", "Your code is 12345",
+                    "OTP", null);
+            check(message, "message");
+            String referenceId = message.json.get("reference_id").getAsString();
+            check(messagingClient.status(referenceId, null), "status");
+
+            Map<String, Object> addons = new HashMap<>();
+            addons.put("contact", new HashMap<String, String>());
+            Map<String, Object> params = new HashMap<>();
+            params.put("addons", addons);
+            params.put("account_lifecycle_event", "create");
+            PhoneIdClient phoneIdClient = new PhoneIdClient(CUSTOMER_ID, API_KEY, server.restEndpoint());
+            RestClient.TelesignResponse phoneid = phoneIdClient.phoneid("18005555555", params);
+            check(phoneid, "phoneid");
+            if (!phoneid.json.has("phone_type")) {
+                throw new AssertionError("phoneid response has no phone_type: " + phoneid.body);
+            }
+
+            ScoreClient scoreClient = new ScoreClient(CUSTOMER_ID, API_KEY, server.restEndpoint());
+            check(scoreClient.score("18005555555", "create", null), "score");
+
+            if (server.getRejectedSignatureCount() != 0) {
+                throw new AssertionError(server.getRejectedSignatureCount() + " requests had a bad signature");
+            }
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static void check(RestClient.TelesignResponse response, String name) {
+        if (!response.ok || response.json == null) {
+            throw new AssertionError(String.format("%s request failed with status %d: %s", name,
+                    response.statusCode, response.body));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.telesign.loadtest;
+
+import junit.framework.TestCase;
+
+public class NativeSmokeTest extends TestCase {
+
+    public void testSmokeRunsOnTheJvm() throws Exception {
+
+        NativeSmoke.run();
+    }
+}
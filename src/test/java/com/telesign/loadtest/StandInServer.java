@@ -0,0 +1,337 @@
+package com.telesign.loadtest;
+
+import com.telesign.RestClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the TeleSign REST API, used to run throughput and resilience benchmarks of the SDK
+ * entirely offline.
+ * <p>
+ * The server implements the messaging, voice, phoneid and intelligence resources, verifies the TSA signature of
+ * every request against the configured credentials, and returns payloads shaped like the real API. Latency,
+ * error rate and 429 throttling can be configured to simulate a degraded upstream.
+ */
+public class StandInServer {
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
+    private final String customerId;
+    private final String apiKey;
+    private final MockWebServer server = new MockWebServer();
+
+    private volatile LatencyDistribution latency = LatencyDistribution.none();
+    private volatile double errorRate = 0.0;
+    private volatile TokenBucket throttle = null;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong rejectedSignatureCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+
+    /**
+     * Constructor for StandInServer.
+     *
+     * @param customerId
+     *            The customer_id requests must be signed with.
+     * @param apiKey
+     *            The api_key requests must be signed with.
+     */
+    public StandInServer(String customerId, String apiKey) {
+        this.customerId = customerId;
+        this.apiKey = apiKey;
+        this.server.setDispatcher(new TelesignDispatcher());
+    }
+
+    /**
+     * @param latency
+     *            The distribution every response is delayed by.
+     */
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param errorRate
+     *            The fraction of otherwise valid requests, between 0 and 1, answered with a 503.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param requestsPerSecond
+     *            The sustained rate above which requests are answered with a 429, or 0 to disable throttling.
+     * @param burst
+     *            The number of requests that may be accepted at once above the sustained rate.
+     */
+    public void setThrottle(int requestsPerSecond, int burst) {
+        this.throttle = requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond, burst) : null;
+    }
+
+    /**
+     * Starts the server on a free local port.
+     *
+     * @throws IOException if the server could not be started.
+     */
+    public void start() throws IOException {
+        this.server.start();
+    }
+
+    /**
+     * Stops the server.
+     *
+     * @throws IOException if the server could not be stopped.
+     */
+    public void shutdown() throws IOException {
+        this.server.shutdown();
+    }
+
+    /**
+     * @return The restEndpoint to pass to a client to target this server.
+     */
+    public String restEndpoint() {
+        return this.server.url("").toString().replaceAll("/$", "");
+    }
+
+    /**
+     * @return The number of requests received.
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /**
+     * @return The number of connections opened by clients.
+     */
+    public long getConnectionCount() {
+        return this.connectionCount.get();
+    }
+
+    /**
+     * @return The number of requests rejected because of a bad signature.
+     */
+    public long getRejectedSignatureCount() {
+        return this.rejectedSignatureCount.get();
+    }
+
+    /**
+     * @return The number of requests answered with a 429.
+     */
+    public long getThrottledCount() {
+        return this.throttledCount.get();
+    }
+
+    /**
+     * @return The number of requests answered with an injected 503.
+     */
+    public long getInjectedErrorCount() {
+        return this.injectedErrorCount.get();
+    }
+
+    private class TelesignDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            // MockWebServer records every request before dispatching it; drain it here so a long benchmark does
+            // not accumulate them all in memory.
+            server.takeRequest(0, TimeUnit.MILLISECONDS);
+
+            requestCount.incrementAndGet();
+            if (request.getSequenceNumber() == 0) {
+                connectionCount.incrementAndGet();
+            }
+
+            Random random = ThreadLocalRandom.current();
+            MockResponse response = respond(request, random);
+            long delayNanos = latency.sampleNanos(random);
+            if (delayNanos > 0) {
+                response.setHeadersDelay(delayNanos, TimeUnit.NANOSECONDS);
+            }
+            return response;
+        }
+
+        private MockResponse respond(RecordedRequest request, Random random) {
+            if (!isSignatureValid(request)) {
+                rejectedSignatureCount.incrementAndGet();
+                return error(401, -30006, "Invalid Signature.");
+            }
+
+            TokenBucket throttle = StandInServer.this.throttle;
+            if (throttle != null && !throttle.tryAcquire()) {
+                throttledCount.incrementAndGet();
+                return error(429, -40007, "Too Many Requests.").setHeader("Retry-After", "1");
+            }
+
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                injectedErrorCount.incrementAndGet();
+                return error(503, -90001, "System Unavailable. Please try again later.");
+            }
+
+            String method = request.getMethod();
+            String[] segments = request.getRequestUrl().encodedPath().substring(1).split("/");
+
+            if (segments.length == 2 && "v1".equals(segments[0]) && "messaging".equals(segments[1])
+                    && "POST".equals(method)) {
+                return ok(transaction(290, "Message in progress"));
+            }
+            if (segments.length == 3 && "v1".equals(segments[0]) && "messaging".equals(segments[1])
+                    && "GET".equals(method)) {
+                return ok(transaction(segments[2], 200, "Delivered to handset"));
+            }
+            if (segments.length == 2 && "v1".equals(segments[0]) && "voice".equals(segments[1])
+                    && "POST".equals(method)) {
+                return ok(transaction(103, "Call in progress"));
+            }
+            if (segments.length == 3 && "v1".equals(segments[0]) && "voice".equals(segments[1])
+                    && "GET".equals(method)) {
+                return ok(transaction(segments[2], 130, "Call answered"));
+            }
+            if (segments.length == 3 && "v1".equals(segments[0]) && "phoneid".equals(segments[1])
+                    && "POST".equals(method)) {
+                return ok(phoneid(segments[2], random));
+            }
+            if (segments.length == 2 && "intelligence".equals(segments[0]) && "phone".equals(segments[1])
+                    && "POST".equals(method)) {
+                return ok(score(random));
+            }
+            if (segments.length == 2 && "intelligence".equals(segments[0]) && "email".equals(segments[1])
+                    && "POST".equals(method)) {
+                return ok(score(random));
+            }
+            return error(404, -10001, "Resource not found.");
+        }
+    }
+
+    private boolean isSignatureValid(RecordedRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null) {
+            return false;
+        }
+
+        String expected;
+        try {
+            if (authorization.startsWith(RestClient.AUTH_BASIC + " ")) {
+                expected = RestClient.AUTH_BASIC + " " + Base64.getEncoder().encodeToString(
+                        (this.customerId + ":" + this.apiKey).getBytes());
+            } else {
+                String contentType = request.getHeader("Content-Type");
+                Map<String, String> headers = RestClient.generateTelesignHeaders(this.customerId, this.apiKey,
+                        request.getMethod(), request.getRequestUrl().encodedPath(),
+                        request.getBody().clone().readUtf8(), request.getHeader("Date"),
+                        request.getHeader("x-ts-nonce"), null, contentType == null ? "" : contentType,
+                        request.getHeader("x-ts-auth-method"));
+                expected = headers.get("Authorization");
+            }
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+
+        return expected.equals(authorization);
+    }
+
+    private static MockResponse ok(String body) {
+        return new MockResponse().setHeader("Content-Type", JSON_CONTENT_TYPE).setBody(body);
+    }
+
+    private static MockResponse error(int httpCode, int code, String description) {
+        return new MockResponse().setResponseCode(httpCode).setHeader("Content-Type", JSON_CONTENT_TYPE)
+                .setBody(String.format("{\"status\":{\"updated_on\":\"%s\",\"code\":%d,\"description\":\"%s\"}}",
+                        now(), code, description));
+    }
+
+    private static String transaction(int code, String description) {
+        return transaction(UUID.randomUUID().toString().replace("-", "").toUpperCase(Locale.US), code, description);
+    }
+
+    private static String transaction(String referenceId, int code, String description) {
+        return String.format("{\"reference_id\":\"%s\",\"external_id\":null,"
+                        + "\"status\":{\"updated_on\":\"%s\",\"code\":%d,\"description\":\"%s\"},"
+                        + "\"additional_info\":{\"message_parts_count\":1}}",
+                referenceId, now(), code, description);
+    }
+
+    private static String phoneid(String phoneNumber, Random random) {
+        String phoneType = random.nextInt(10) == 0 ? "VOIP" : "MOBILE";
+        return String.format("{\"reference_id\":\"%s\","
+                        + "\"status\":{\"updated_on\":\"%s\",\"code\":300,\"description\":\"Transaction successfully completed\"},"
+                        + "\"numbering\":{\"original\":{\"complete_phone_number\":\"%s\",\"country_code\":\"1\","
+                        + "\"phone_number\":\"%s\"},\"cleansing\":{\"call\":{\"cleansed_code\":100,"
+                        + "\"country_code\":\"1\",\"phone_number\":\"%s\",\"min_length\":10,\"max_length\":10},"
+                        + "\"sms\":{\"cleansed_code\":100,\"country_code\":\"1\",\"phone_number\":\"%s\","
+                        + "\"min_length\":10,\"max_length\":10}}},"
+                        + "\"phone_type\":{\"code\":\"%s\",\"description\":\"%s\"},"
+                        + "\"location\":{\"city\":\"Los Angeles\",\"state\":\"CA\",\"zip\":\"90210\","
+                        + "\"country\":{\"name\":\"United States\",\"iso2\":\"US\",\"iso3\":\"USA\"},"
+                        + "\"time_zone\":{\"name\":\"America/Los_Angeles\",\"utc_offset_min\":\"-8\","
+                        + "\"utc_offset_max\":\"-8\"}},"
+                        + "\"carrier\":{\"name\":\"Example Wireless\"},\"blocklisting\":{\"blocked\":false}}",
+                UUID.randomUUID().toString().replace("-", "").toUpperCase(Locale.US), now(), phoneNumber,
+                phoneNumber, phoneNumber, phoneNumber, "VOIP".equals(phoneType) ? "5" : "2", phoneType);
+    }
+
+    private static String score(Random random) {
+        int score = random.nextInt(1000);
+        String level = score < 400 ? "low" : score < 700 ? "medium-low" : score < 900 ? "medium-high" : "high";
+        String recommendation = score < 700 ? "allow" : score < 900 ? "flag" : "block";
+        return String.format("{\"reference_id\":\"%s\","
+                        + "\"status\":{\"updated_on\":\"%s\",\"code\":300,\"description\":\"Transaction successfully completed\"},"
+                        + "\"risk\":{\"level\":\"%s\",\"recommendation\":\"%s\",\"score\":%d},"
+                        + "\"risk_insights\":{\"status\":800,\"category\":[10010],\"a2p\":[],\"p2p\":[],"
+                        + "\"number_type\":[],\"ip\":[],\"email\":[]}}",
+                UUID.randomUUID().toString().replace("-", "").toUpperCase(Locale.US), now(), level, recommendation,
+                score);
+    }
+
+    private static String now() {
+        SimpleDateFormat iso8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSSSS'Z'", Locale.US);
+        iso8601.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return iso8601.format(new Date());
+    }
+
+    /**
+     * A token bucket refilled continuously at a fixed rate.
+     */
+    private static class TokenBucket {
+
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int requestsPerSecond, int burst) {
+            this.ratePerNano = requestsPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.tokens = this.capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.ratePerNano);
+            this.lastRefill = now;
+            if (this.tokens < 1) {
+                return false;
+            }
+            this.tokens -= 1;
+            return true;
+        }
+    }
+}
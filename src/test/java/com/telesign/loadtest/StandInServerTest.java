@@ -0,0 +1,94 @@
+package com.telesign.loadtest;
+
+import com.telesign.MessagingClient;
+import com.telesign.PhoneIdClient;
+import com.telesign.RestClient;
+import com.telesign.ScoreClient;
+import junit.framework.TestCase;
+
+public class StandInServerTest extends TestCase {
+
+    private StandInServer server;
+
+    private String customerId;
+    private String apiKey;
+
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.customerId = "FFFFFFFF-EEEE-DDDD-1234-AB1234567890";
+        this.apiKey = "EXAMPLE----TE8sTgg45yusumoN6BYsBVkh+yRJ5czgsnCehZaOYldPJdmFh6NeX8kunZ2zU1YWaUw/0wV6xfw==";
+
+        this.server = new StandInServer(this.customerId, this.apiKey);
+        this.server.start();
+    }
+
+    public void tearDown() throws Exception {
+        super.tearDown();
+
+        this.server.shutdown();
+    }
+
+    public void testSignedRequestsAreAnswered() throws Exception {
+
+        MessagingClient messagingClient = new MessagingClient(this.customerId, this.apiKey,
+                this.server.restEndpoint());
+
+        RestClient.TelesignResponse message = messagingClient.message("18005555555", "Test Message Content",
+                "ARN", null);
+        assertEquals("HTTP Status code mismatch", 200, message.statusCode);
+        String referenceId = message.json.get("reference_id").getAsString();
+
+        RestClient.TelesignResponse status = messagingClient.status(referenceId, null);
+        assertEquals("HTTP Status code mismatch", 200, status.statusCode);
+        assertEquals("reference_id is not as expected", referenceId, status.json.get("reference_id").getAsString());
+
+        PhoneIdClient phoneIdClient = new PhoneIdClient(this.customerId, this.apiKey, this.server.restEndpoint());
+        RestClient.TelesignResponse phoneid = phoneIdClient.phoneid("18005555555", null);
+        assertEquals("HTTP Status code mismatch", 200, phoneid.statusCode);
+        assertTrue(phoneid.json.has("phone_type"));
+
+        ScoreClient scoreClient = new ScoreClient(this.customerId, this.apiKey, this.server.restEndpoint());
+        RestClient.TelesignResponse score = scoreClient.score("18005555555", "create", null);
+        assertEquals("HTTP Status code mismatch", 200, score.statusCode);
+        assertTrue(score.json.getAsJsonObject("risk").has("level"));
+
+        assertEquals("no request should have been rejected", 0, this.server.getRejectedSignatureCount());
+    }
+
+    public void testBadSignatureIsRejected() throws Exception {
+
+        MessagingClient client = new MessagingClient(this.customerId,
+                "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA==",
+                this.server.restEndpoint());
+
+        RestClient.TelesignResponse response = client.message("18005555555", "Test Message Content", "ARN", null);
+
+        assertEquals("HTTP Status code mismatch", 401, response.statusCode);
+        assertEquals("rejected count is not as expected", 1, this.server.getRejectedSignatureCount());
+    }
+
+    public void testThrottling() throws Exception {
+
+        this.server.setThrottle(1, 1);
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, this.server.restEndpoint());
+
+        assertEquals("HTTP Status code mismatch", 200,
+                client.message("18005555555", "Test Message Content", "ARN", null).statusCode);
+        RestClient.TelesignResponse throttled = client.message("18005555555", "Test Message Content", "ARN", null);
+        assertEquals("HTTP Status code mismatch", 429, throttled.statusCode);
+        assertEquals("Retry-After header is not as expected", "1", throttled.headers.get("retry-after").get(0));
+    }
+
+    public void testErrorRate() throws Exception {
+
+        this.server.setErrorRate(1.0);
+
+        MessagingClient client = new MessagingClient(this.customerId, this.apiKey, this.server.restEndpoint());
+
+        assertEquals("HTTP Status code mismatch", 503,
+                client.message("18005555555", "Test Message Content", "ARN", null).statusCode);
+        assertEquals("injected error count is not as expected", 1, this.server.getInjectedErrorCount());
+    }
+}